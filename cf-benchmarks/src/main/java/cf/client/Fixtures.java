@@ -0,0 +1,105 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Builds Cloud Controller responses from the recorded resources in {@code src/main/resources/fixtures}. A page repeats
+ * a recorded resource with a fresh guid for each result so the decoders see realistic, but distinct, resources.
+ */
+final class Fixtures {
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Returns the contents of a fixture.
+	 *
+	 * @param name the name of the fixture without the {@code .json} extension, {@code app} for example.
+	 */
+	static String read(String name) {
+		try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name + ".json")) {
+			if (in == null) {
+				throw new IllegalArgumentException("No fixture named " + name);
+			}
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns the entity of a recorded resource.
+	 */
+	static byte[] entity(String name) {
+		try {
+			return JsonCodec.mapper().writeValueAsBytes(JsonCodec.mapper().readTree(read(name)).get("entity"));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Builds one page of a paginated result.
+	 *
+	 * @param name the name of the recorded resource each result is copied from.
+	 * @param path the path of the collection, {@code /v2/apps} for example, used to build {@code next_url}.
+	 * @param page the page number, starting at 1.
+	 * @param totalPages the number of pages in the result.
+	 * @param resultsPerPage the number of resources on each page.
+	 */
+	static byte[] page(String name, String path, int page, int totalPages, int resultsPerPage) {
+		final String resource = read(name);
+		final String guid = recordedGuid(resource);
+		final StringBuilder json = new StringBuilder()
+				.append("{\"total_results\":").append(totalPages * resultsPerPage)
+				.append(",\"total_pages\":").append(totalPages)
+				.append(",\"prev_url\":").append(page > 1 ? link(path, page - 1, resultsPerPage) : "null")
+				.append(",\"next_url\":").append(page < totalPages ? link(path, page + 1, resultsPerPage) : "null")
+				.append(",\"resources\":[");
+		for (int i = 0; i < resultsPerPage; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(resource.replace(guid, new UUID(page, i).toString()));
+		}
+		return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String recordedGuid(String resource) {
+		try {
+			return JsonCodec.mapper().readTree(resource).path("metadata").path("guid").asText();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String link(String path, int page, int resultsPerPage) {
+		return "\"" + path + "?order-direction=asc&page=" + page + "&results-per-page=" + resultsPerPage + "\"";
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Binds a single recorded entity into its model class with the shared, cached reader from {@link JsonCodec} and with
+ * {@link ObjectMapper#readValue(byte[], Class)}.
+ */
+@State(Scope.Benchmark)
+public class ModelBindingBenchmark {
+
+	@Param({"app", "service_instance", "app_usage_event"})
+	public String fixture;
+
+	private byte[] entity;
+	private Class<?> type;
+
+	@Setup
+	public void setup() {
+		entity = Fixtures.entity(fixture);
+		type = ResourceDecoderBenchmark.modelType(fixture);
+	}
+
+	@Benchmark
+	public Object cachedReader() throws IOException {
+		return JsonCodec.read(entity, type);
+	}
+
+	@Benchmark
+	public Object mapperReadValue() throws IOException {
+		return JsonCodec.mapper().readValue(entity, type);
+	}
+}
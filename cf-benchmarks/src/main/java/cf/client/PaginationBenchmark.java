@@ -0,0 +1,130 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.AppUsageEvent;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads every app usage event of a paginated result from a local HTTP server that replays recorded pages, measuring
+ * the whole client path: requests, paging and decoding.
+ *
+ * <p>{@code paged} follows {@code next_url} on the iterating thread, {@code prefetch} fetches the next page in the
+ * background while the current page is consumed, {@code parallel} fetches several pages at once and {@code streaming}
+ * decodes one resource at a time straight off each response.</p>
+ */
+@State(Scope.Benchmark)
+public class PaginationBenchmark {
+
+	private static final String V2_APP_USAGE_EVENTS = "/v2/app_usage_events";
+	private static final Pattern PAGE = Pattern.compile("[?&]page=(\\d+)");
+
+	@Param({"paged", "prefetch", "parallel", "streaming"})
+	public String mode;
+
+	@Param({"10"})
+	public int totalPages;
+
+	@Param({"100"})
+	public int resultsPerPage;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private CloseableHttpClient httpClient;
+	private DefaultCloudController cloudController;
+	private final Token token = Token.parseAuthorization("bearer benchmark");
+
+	@Setup
+	public void setup() throws IOException {
+		final byte[][] pages = new byte[totalPages][];
+		for (int page = 1; page <= totalPages; page++) {
+			pages[page - 1] = Fixtures.page("app_usage_event", V2_APP_USAGE_EVENTS, page, totalPages, resultsPerPage);
+		}
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext(V2_APP_USAGE_EVENTS, exchange -> {
+			final String query = exchange.getRequestURI().getRawQuery();
+			final Matcher matcher = PAGE.matcher(query == null ? "" : "?" + query);
+			final byte[] page = pages[matcher.find() ? Integer.parseInt(matcher.group(1)) - 1 : 0];
+			exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+			exchange.sendResponseHeaders(200, page.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(page);
+			}
+		});
+		server.start();
+
+		httpClient = HttpClients.custom().setMaxConnPerRoute(16).setMaxConnTotal(16).build();
+		cloudController = new DefaultCloudController(httpClient, "http://127.0.0.1:" + server.getAddress().getPort());
+		executor = Executors.newCachedThreadPool();
+		switch (mode) {
+			case "prefetch":
+				cloudController.setExecutor(executor);
+				cloudController.setPrefetchDepth(2);
+				break;
+			case "parallel":
+				cloudController.setExecutor(executor);
+				cloudController.setParallelPaging(true);
+				cloudController.setMaxConcurrentRequests(4);
+				break;
+			default:
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		httpClient.close();
+		executor.shutdownNow();
+		server.stop(0);
+		((ExecutorService) server.getExecutor()).shutdownNow();
+	}
+
+	@Benchmark
+	public int readAll(Blackhole blackhole) {
+		final Iterable<Resource<AppUsageEvent>> events = "streaming".equals(mode)
+				? cloudController.streamAppUsageEvents(token, V2_APP_USAGE_EVENTS)
+				: cloudController.getAppUsageEvents(token, V2_APP_USAGE_EVENTS);
+		int count = 0;
+		for (Iterator<Resource<AppUsageEvent>> i = events.iterator(); i.hasNext(); ) {
+			blackhole.consume(i.next());
+			count++;
+		}
+		// A client that drops pages would otherwise look faster
+		if (count != totalPages * resultsPerPage) {
+			throw new IllegalStateException("Read " + count + " events, expected " + totalPages * resultsPerPage);
+		}
+		return count;
+	}
+}
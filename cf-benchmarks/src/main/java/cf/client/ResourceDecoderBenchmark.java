@@ -0,0 +1,82 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.AppUsageEvent;
+import cf.client.model.Application;
+import cf.client.model.ServiceInstance;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Decodes a page of recorded resources, both with {@link ResourceDecoder} and the way pages used to be decoded, by
+ * reading the page into a tree and binding each entity from the tree.
+ */
+@State(Scope.Benchmark)
+public class ResourceDecoderBenchmark {
+
+	@Param({"app", "service_instance", "app_usage_event"})
+	public String fixture;
+
+	@Param({"50", "100"})
+	public int resultsPerPage;
+
+	private byte[] page;
+	private Class<?> type;
+	private final ResourceDecoder decoder = new ResourceDecoder();
+
+	@Setup
+	public void setup() {
+		page = Fixtures.page(fixture, "/v2/" + fixture + "s", 1, 2, resultsPerPage);
+		type = modelType(fixture);
+	}
+
+	@Benchmark
+	public ResourceDecoder.Page<?> readPage() throws IOException {
+		return decoder.readPage(new ByteArrayInputStream(page), type);
+	}
+
+	@Benchmark
+	public void readTreeThenBind(Blackhole blackhole) throws IOException {
+		final JsonNode tree = JsonCodec.readTree(new ByteArrayInputStream(page));
+		for (JsonNode resource : tree.get("resources")) {
+			blackhole.consume(resource.get("metadata").get("guid").asText());
+			blackhole.consume(JsonCodec.read(resource.get("entity"), type));
+		}
+	}
+
+	static Class<?> modelType(String fixture) {
+		switch (fixture) {
+			case "app":
+				return Application.class;
+			case "service_instance":
+				return ServiceInstance.class;
+			case "app_usage_event":
+				return AppUsageEvent.class;
+			default:
+				throw new IllegalArgumentException("No model class for fixture " + fixture);
+		}
+	}
+}
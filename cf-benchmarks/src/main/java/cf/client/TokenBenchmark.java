@@ -0,0 +1,48 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses a recorded UAA token response and the timestamps found in resource metadata.
+ */
+@State(Scope.Benchmark)
+public class TokenBenchmark {
+
+	private final byte[] token = Fixtures.read("token").getBytes(StandardCharsets.UTF_8);
+
+	@Benchmark
+	public Token parseJson() {
+		return Token.parseJson(new ByteArrayInputStream(token));
+	}
+
+	@Benchmark
+	public long parseIsoTimestamp() {
+		return Timestamps.parse("2015-07-27T22:43:33Z");
+	}
+
+	@Benchmark
+	public long parseUpdatedTimestamp() {
+		return Timestamps.parse("2015-07-28 09:12:01 +0000");
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.AppUsageEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Tails the Cloud Controller's app usage events, delivering each new event to a {@link Listener} exactly in the order
+ * the Cloud Controller reports them.
+ *
+ * <p>The tailer polls {@code /v2/app_usage_events?after_guid=} starting from the guid of the last event delivered and
+ * persists that guid to a cursor file, so a restarted tailer resumes where it left off rather than re-reading every
+ * event. Events are delivered synchronously on the polling thread so a slow listener simply slows the tailer down. If
+ * the listener throws an exception, the cursor is left on the last event that was delivered successfully and the
+ * failed event is delivered again on the next poll.</p>
+ */
+public class AppUsageEventTailer implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AppUsageEventTailer.class);
+
+	private static final String V2_APP_USAGE_EVENTS = "/v2/app_usage_events";
+
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	public static final long DEFAULT_POLL_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+	private final CloudController cloudController;
+	private final TokenProvider token;
+	private final Path cursorFile;
+	private final Listener listener;
+
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+	private volatile long pollInterval = DEFAULT_POLL_INTERVAL;
+
+	private volatile String cursor;
+	private volatile ScheduledFuture<?> scheduledPoll;
+	private volatile boolean closed;
+
+	/**
+	 * @param cloudController the Cloud Controller to read events from.
+	 * @param token provides the token used to authenticate each poll.
+	 * @param cursorFile the file the guid of the last event delivered is persisted to. If the file exists, the tailer
+	 *                   resumes after the event it names, otherwise the tailer starts from the oldest event.
+	 * @param listener receives the events.
+	 */
+	public AppUsageEventTailer(CloudController cloudController, TokenProvider token, Path cursorFile, Listener listener) {
+		this.cloudController = cloudController;
+		this.token = token;
+		this.cursorFile = cursorFile;
+		this.listener = listener;
+		this.cursor = readCursor(cursorFile);
+	}
+
+	/**
+	 * Sets the number of events requested per page. The cursor file is also updated every {@code batchSize} events.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Sets how long to wait between polls once all the available events have been delivered.
+	 */
+	public void setPollInterval(long pollInterval, TimeUnit unit) {
+		this.pollInterval = unit.toMillis(pollInterval);
+	}
+
+	/**
+	 * Returns the guid of the last event delivered or {@code null} if no events have been delivered.
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * Starts polling for events on the given executor.
+	 */
+	public synchronized void start(ScheduledExecutorService executorService) {
+		if (scheduledPoll != null) {
+			throw new IllegalStateException("Tailer has already been started");
+		}
+		if (closed) {
+			throw new IllegalStateException("Tailer has been closed");
+		}
+		scheduledPoll = executorService.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					poll();
+				} catch (Exception e) {
+					LOGGER.error("Error polling app usage events after guid " + cursor, e);
+				}
+			}
+		}, 0, pollInterval, TimeUnit.MILLISECONDS);
+		if (closed) {
+			// Closed while the poll was being scheduled
+			scheduledPoll.cancel(false);
+		}
+	}
+
+	/**
+	 * Delivers every event after the cursor to the listener, following pages until the Cloud Controller has no more
+	 * events.
+	 *
+	 * @return the number of events delivered.
+	 */
+	public synchronized int poll() {
+		final int batchSize = this.batchSize;
+		String url = V2_APP_USAGE_EVENTS + "?results-per-page=" + batchSize;
+		if (cursor != null) {
+			url += "&after_guid=" + cursor;
+		}
+		LOGGER.debug("Polling app usage events after guid {}", cursor);
+		int delivered = 0;
+		String persisted = cursor;
+		RuntimeException failure = null;
+		try (Stream<Resource<AppUsageEvent>> events = cloudController.streamAppUsageEvents(token.get(), url).stream()) {
+			for (Iterator<Resource<AppUsageEvent>> i = events.iterator(); i.hasNext(); ) {
+				final Resource<AppUsageEvent> event = i.next();
+				try {
+					listener.onEvent(event);
+				} catch (Exception e) {
+					throw new RuntimeException("Listener failed on app usage event " + event.getGuidString(), e);
+				}
+				cursor = event.getGuidString();
+				delivered++;
+				if (delivered % batchSize == 0) {
+					writeCursor(cursor);
+					persisted = cursor;
+				}
+			}
+		} catch (RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			if (cursor != null && !cursor.equals(persisted)) {
+				try {
+					writeCursor(cursor);
+				} catch (RuntimeException e) {
+					// Don't hide the exception that ended the poll
+					if (failure == null) {
+						throw e;
+					}
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		LOGGER.debug("Delivered {} app usage event(s)", delivered);
+		return delivered;
+	}
+
+	/**
+	 * Stops polling. Returns without waiting for a poll that is in progress, which is allowed to finish.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		final ScheduledFuture<?> scheduledPoll = this.scheduledPoll;
+		if (scheduledPoll != null) {
+			scheduledPoll.cancel(false);
+		}
+	}
+
+	private static String readCursor(Path cursorFile) {
+		if (!Files.exists(cursorFile)) {
+			return null;
+		}
+		try {
+			final String cursor = new String(Files.readAllBytes(cursorFile), StandardCharsets.UTF_8).trim();
+			return cursor.isEmpty() ? null : cursor;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes the cursor to a temporary file and moves it over the cursor file so a crash never leaves a partially
+	 * written cursor behind.
+	 */
+	private void writeCursor(String cursor) {
+		try {
+			final Path parent = cursorFile.toAbsolutePath().getParent();
+			final Path temp = Files.createTempFile(parent, cursorFile.getFileName().toString(), ".tmp");
+			try {
+				Files.write(temp, cursor.getBytes(StandardCharsets.UTF_8));
+				Files.move(temp, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Receives app usage events from an {@link AppUsageEventTailer}.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called for each app usage event in order. The next event isn't delivered until this method returns.
+		 *
+		 * @throws Exception to stop the current poll. The event is delivered again on the next poll.
+		 */
+		void onEvent(Resource<AppUsageEvent> event) throws Exception;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.ApplicationInstance;
+import cf.client.model.ApplicationInstanceStats;
+import cf.client.model.Info;
+import cf.client.model.Organization;
+import cf.client.model.PrivateDomain;
+import cf.client.model.Service;
+import cf.client.model.ServiceBinding;
+import cf.client.model.ServiceInstance;
+import cf.client.model.ServicePlan;
+import cf.client.model.SharedDomain;
+import cf.client.model.Space;
+import cf.client.model.User;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous counterpart to the lookup methods of {@link CloudController}. Each method returns immediately with a
+ * {@link CompletableFuture} that completes once the Cloud Controller has responded, which makes it easy to resolve
+ * chains of related resources, such as app to space to organization, for many resources concurrently.
+ */
+public interface AsyncCloudController {
+
+	/**
+	 * Returns information about the cloud controller this interface is associated with.
+	 */
+	CompletableFuture<Info> getInfo();
+
+	CompletableFuture<Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, UUID applicationGuid);
+
+	CompletableFuture<Map<String, ApplicationInstance>> getApplicationInstances(Token token, UUID applicationGuid);
+
+	CompletableFuture<Application> getApplication(Token token, UUID applicationGuid);
+
+	CompletableFuture<Service> getService(Token token, UUID serviceGuid);
+
+	CompletableFuture<ServicePlan> getServicePlan(Token token, UUID servicePlanGuid);
+
+	CompletableFuture<ServiceInstance> getServiceInstance(Token token, UUID instanceGuid);
+
+	CompletableFuture<ServiceBinding> getServiceBinding(Token token, UUID serviceBindingGuid);
+
+	CompletableFuture<Space> getSpace(Token token, UUID spaceGuid);
+
+	CompletableFuture<Organization> getOrganization(Token token, UUID organizationGuid);
+
+	CompletableFuture<User> getUser(Token token, UUID userId);
+
+	CompletableFuture<PrivateDomain> getPrivateDomain(Token token, UUID privateDomainGuid);
+
+	CompletableFuture<SharedDomain> getSharedDomain(Token token, UUID sharedDomainGuid);
+
+}
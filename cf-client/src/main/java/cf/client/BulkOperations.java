@@ -0,0 +1,148 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.Service;
+import cf.client.model.ServiceAuthToken;
+import cf.client.model.ServicePlan;
+import org.apache.http.HttpStatus;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Creates and deletes many Cloud Controller resources at once, such as deleting every binding of a tenant being
+ * off-boarded, reporting the outcome of each item rather than stopping at the first failure.
+ *
+ * <p>Items are processed by up to {@link #setMaxConcurrentRequests(int) maxConcurrentRequests} tasks on the executor,
+ * which keep the {@link RateLimiter} priority of the calling thread. Without an executor, items are processed one at
+ * a time on the calling thread. Equal items are processed once.</p>
+ *
+ * <p>The outcome of each item is reported as {@link PartialResults}, keyed by the item. Use
+ * {@link #isConflict(RuntimeException)} and {@link #isNotFound(RuntimeException)} to tell apart the errors that
+ * usually mean there's nothing left to do.</p>
+ */
+public class BulkOperations {
+
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+	private final CloudController cloudController;
+	private final Executor executor;
+
+	private volatile int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+	/**
+	 * @param cloudController the Cloud Controller the operations are made against.
+	 * @param executor the executor the operations are run on, {@code null} to run them on the calling thread.
+	 */
+	public BulkOperations(CloudController cloudController, Executor executor) {
+		this.cloudController = cloudController;
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the maximum number of operations in flight at a time.
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException("Max concurrent requests must be at least 1.");
+		}
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	public PartialResults<Service, UUID> createServices(Token token, Collection<Service> services) {
+		return apply(services, service -> cloudController.createService(token, service));
+	}
+
+	public PartialResults<ServicePlan, UUID> createServicePlans(Token token, Collection<ServicePlan> servicePlans) {
+		return apply(servicePlans, servicePlan -> cloudController.createServicePlan(token, servicePlan));
+	}
+
+	public PartialResults<ServiceAuthToken, UUID> createAuthTokens(Token token, Collection<ServiceAuthToken> authTokens) {
+		return apply(authTokens, authToken -> cloudController.createAuthToken(token, authToken));
+	}
+
+	public PartialResults<UUID, Void> deleteServices(Token token, Collection<UUID> serviceGuids) {
+		return apply(serviceGuids, serviceGuid -> {
+			cloudController.deleteService(token, serviceGuid);
+			return null;
+		});
+	}
+
+	public PartialResults<UUID, Void> deleteServiceAuthTokens(Token token, Collection<UUID> authTokenGuids) {
+		return apply(authTokenGuids, authTokenGuid -> {
+			cloudController.deleteServiceAuthToken(token, authTokenGuid);
+			return null;
+		});
+	}
+
+	public PartialResults<UUID, Void> deleteServiceBindings(Token token, Collection<UUID> serviceBindingGuids) {
+		return apply(serviceBindingGuids, serviceBindingGuid -> {
+			cloudController.deleteServiceBinding(token, serviceBindingGuid);
+			return null;
+		});
+	}
+
+	public PartialResults<UUID, Void> deleteServiceInstances(Token token, Collection<UUID> instanceGuids) {
+		return apply(instanceGuids, instanceGuid -> {
+			cloudController.deleteServiceInstance(token, instanceGuid);
+			return null;
+		});
+	}
+
+	/**
+	 * Applies an arbitrary operation to each distinct item.
+	 *
+	 * @param items the items.
+	 * @param operation the operation, which may be applied to several items concurrently.
+	 * @return the result or error of each item, in the order of {@code items}.
+	 */
+	public <I, R> PartialResults<I, R> apply(Collection<I> items, Function<I, R> operation) {
+		return PartialResults.collect(items, operation, executor, maxConcurrentRequests);
+	}
+
+	/**
+	 * Returns {@code true} if the Cloud Controller rejected an operation because it conflicts with an existing
+	 * resource: a {@code 409 Conflict}, or a {@code 400 Bad Request} whose error code ends in {@code Taken} such as
+	 * {@code CF-ServicePlanNameTaken}.
+	 */
+	public static boolean isConflict(RuntimeException e) {
+		if (!(e instanceof UnexpectedResponseException)) {
+			return false;
+		}
+		final UnexpectedResponseException response = (UnexpectedResponseException) e;
+		if (response.getStatusCode() == HttpStatus.SC_CONFLICT) {
+			return true;
+		}
+		if (response.getStatusCode() == HttpStatus.SC_BAD_REQUEST) {
+			final String errorCode = response.getErrorCode();
+			return errorCode != null && errorCode.endsWith("Taken");
+		}
+		return false;
+	}
+
+	/**
+	 * Returns {@code true} if an operation failed with a {@code 404 Not Found}, which usually means a delete has nothing
+	 * left to do.
+	 */
+	public static boolean isNotFound(RuntimeException e) {
+		return e instanceof UnexpectedResponseException
+				&& ((UnexpectedResponseException) e).getStatusCode() == HttpStatus.SC_NOT_FOUND;
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.Organization;
+import cf.client.model.PrivateDomain;
+import cf.client.model.Service;
+import cf.client.model.ServiceBinding;
+import cf.client.model.ServiceInstance;
+import cf.client.model.ServicePlan;
+import cf.client.model.SharedDomain;
+import cf.client.model.Space;
+import cf.client.model.User;
+
+import cf.common.JsonObject;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caches the resources returned by the single resource lookups of a {@link CloudController}, such as
+ * {@link #getSpace(Token, UUID)} and {@link #getServicePlan(Token, UUID)}, keyed by resource type and guid.
+ *
+ * <p>Entries expire after a time to live that may be set per resource type and the least recently used entries are
+ * evicted once the cache is full. Updates and deletes made through this cloud controller invalidate the affected
+ * entry; changes made by anyone else are only seen once the entry expires or is invalidated explicitly.</p>
+ *
+ * <p>Each lookup returns its own copy of a cached resource, so a caller modifying the resource it gets doesn't change
+ * what other callers see.</p>
+ *
+ * <p>Cached resources are shared between tokens, so a cache should only be used by callers that are allowed to see
+ * the same resources, typically a single client such as a service broker.</p>
+ */
+public class CachingCloudController extends DelegatingCloudController {
+
+	private final ExpiringCache<Key, Object> cache;
+
+	private final long defaultTimeToLive;
+	private final Map<Class<?>, Long> timesToLive = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate the cloud controller whose resources are cached.
+	 * @param maxEntries the maximum number of resources held in the cache.
+	 * @param timeToLive the default time a resource is cached for.
+	 * @param unit the unit of {@code timeToLive}.
+	 */
+	public CachingCloudController(CloudController delegate, int maxEntries, long timeToLive, TimeUnit unit) {
+		super(delegate);
+		this.cache = new ExpiringCache<>(maxEntries);
+		this.defaultTimeToLive = unit.toMillis(timeToLive);
+	}
+
+	/**
+	 * Sets the time resources of the given type are cached for, overriding the default time to live. A time to live of
+	 * 0 disables caching of the type.
+	 *
+	 * @param type the model class of the resource, {@code ServicePlan.class} for example.
+	 * @param timeToLive the time resources of the type are cached for.
+	 * @param unit the unit of {@code timeToLive}.
+	 */
+	public void setTimeToLive(Class<?> type, long timeToLive, TimeUnit unit) {
+		timesToLive.put(type, unit.toMillis(timeToLive));
+	}
+
+	/**
+	 * Removes a resource from the cache.
+	 *
+	 * @param type the model class of the resource.
+	 * @param guid the guid of the resource.
+	 */
+	public void invalidate(Class<?> type, UUID guid) {
+		cache.invalidate(new Key(type, guid));
+	}
+
+	/**
+	 * Removes every resource from the cache.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	public long getEvictions() {
+		return cache.getEvictions();
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	@Override
+	public Application getApplication(Token token, UUID applicationGuid) {
+		return lookup(Application.class, applicationGuid, () -> super.getApplication(token, applicationGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public Application updateApplication(Token token, UUID applicationGuid, Application application) {
+		return change(Application.class, applicationGuid, () -> super.updateApplication(token, applicationGuid, application));
+	}
+
+	@Override
+	public Service getService(Token token, UUID serviceGuid) {
+		return lookup(Service.class, serviceGuid, () -> super.getService(token, serviceGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public void deleteService(Token token, UUID serviceGuid) {
+		change(Service.class, serviceGuid, () -> super.deleteService(token, serviceGuid));
+	}
+
+	@Override
+	public Service updateService(Token token, UUID serviceGuid, Service service) {
+		return change(Service.class, serviceGuid, () -> super.updateService(token, serviceGuid, service));
+	}
+
+	@Override
+	public ServicePlan getServicePlan(Token token, UUID servicePlanGuid) {
+		return lookup(ServicePlan.class, servicePlanGuid, () -> super.getServicePlan(token, servicePlanGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public ServicePlan updateServicePlan(Token token, UUID servicePlanGuid, ServicePlan servicePlan) {
+		return change(ServicePlan.class, servicePlanGuid, () -> super.updateServicePlan(token, servicePlanGuid, servicePlan));
+	}
+
+	@Override
+	public ServiceInstance getServiceInstance(Token token, UUID instanceGuid) {
+		return lookup(ServiceInstance.class, instanceGuid, () -> super.getServiceInstance(token, instanceGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public ServiceInstance updateServiceInstance(Token token, UUID serviceInstanceGuid, ServiceInstance serviceInstance) {
+		return change(ServiceInstance.class, serviceInstanceGuid, () -> super.updateServiceInstance(token, serviceInstanceGuid, serviceInstance));
+	}
+
+	@Override
+	public void deleteServiceInstance(Token token, UUID instanceGuid) {
+		change(ServiceInstance.class, instanceGuid, () -> super.deleteServiceInstance(token, instanceGuid));
+	}
+
+	@Override
+	public void purgeServiceInstance(Token token, UUID instanceGuid) {
+		change(ServiceInstance.class, instanceGuid, () -> super.purgeServiceInstance(token, instanceGuid));
+	}
+
+	@Override
+	public ServiceBinding getServiceBinding(Token token, UUID serviceBindingGuid) {
+		return lookup(ServiceBinding.class, serviceBindingGuid, () -> super.getServiceBinding(token, serviceBindingGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public void deleteServiceBinding(Token token, UUID serviceBindingGuid) {
+		change(ServiceBinding.class, serviceBindingGuid, () -> super.deleteServiceBinding(token, serviceBindingGuid));
+	}
+
+	@Override
+	public Space getSpace(Token token, UUID spaceGuid) {
+		return lookup(Space.class, spaceGuid, () -> super.getSpace(token, spaceGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public Organization getOrganization(Token token, UUID organizationGuid) {
+		return lookup(Organization.class, organizationGuid, () -> super.getOrganization(token, organizationGuid), CachingCloudController::copy);
+	}
+
+	@Override
+	public User getUser(Token token, UUID userId) {
+		return lookup(User.class, userId, () -> super.getUser(token, userId), CachingCloudController::copy);
+	}
+
+	@Override
+	public PrivateDomain getPrivateDomain(Token token, UUID privateDomainGuid) {
+		return lookup(PrivateDomain.class, privateDomainGuid, () -> super.getPrivateDomain(token, privateDomainGuid), UnaryOperator.identity());
+	}
+
+	@Override
+	public SharedDomain getSharedDomain(Token token, UUID sharedDomainGuid) {
+		return lookup(SharedDomain.class, sharedDomainGuid, () -> super.getSharedDomain(token, sharedDomainGuid), UnaryOperator.identity());
+	}
+
+	/**
+	 * Makes a change to a resource, invalidating its cache entry both before and after the change. Invalidating
+	 * afterwards keeps a lookup that raced with the change from caching what it read, and is done even if the change
+	 * fails since a failed request may still have been applied.
+	 */
+	private <T> T change(Class<?> type, UUID guid, Supplier<T> change) {
+		invalidate(type, guid);
+		try {
+			return change.get();
+		} finally {
+			invalidate(type, guid);
+		}
+	}
+
+	private void change(Class<?> type, UUID guid, Runnable change) {
+		change(type, guid, () -> {
+			change.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Returns a copy of the cached resource or loads and caches a copy of it, so that a caller modifying the resource
+	 * it gets doesn't modify the cached resource. A resource loaded while its entry was invalidated isn't cached, as
+	 * it may predate the change that invalidated it.
+	 */
+	private <T> T lookup(Class<T> type, UUID guid, Supplier<T> loader, UnaryOperator<T> copy) {
+		final long timeToLive = timesToLive.getOrDefault(type, defaultTimeToLive);
+		if (timeToLive <= 0) {
+			return loader.get();
+		}
+		final Key key = new Key(type, guid);
+		final Object cached = cache.get(key);
+		if (cached != null) {
+			return copy.apply(type.cast(cached));
+		}
+		final long generation = cache.generation();
+		final T resource = loader.get();
+		if (resource != null) {
+			cache.putUnlessInvalidated(key, copy.apply(resource), timeToLive, TimeUnit.MILLISECONDS, generation);
+		}
+		return resource;
+	}
+
+	private static Application copy(Application application) {
+		return copyOther(application, new Application(application.getName(), application.getSpaceGuid(),
+				application.getMemory(), application.getInstances(), application.getDiskQuota(), application.getStateString()));
+	}
+
+	private static Service copy(Service service) {
+		final JsonNode extra = service.getExtra();
+		return copyOther(service, new Service(service.getLabel(), service.getProvider(), service.getUrl(),
+				service.getDescription(), service.getVersion(), service.getInfoUrl(), service.isActive(),
+				service.getUniqueId(), extra == null ? null : extra.toString()));
+	}
+
+	private static ServicePlan copy(ServicePlan servicePlan) {
+		return copyOther(servicePlan, new ServicePlan(servicePlan.getName(), servicePlan.getDescription(),
+				servicePlan.getServiceGuid(), servicePlan.isFree(), servicePlan.getUniqueId(), servicePlan.isPublicPlan()));
+	}
+
+	private static ServiceInstance copy(ServiceInstance instance) {
+		return copyOther(instance, new ServiceInstance(instance.getName(), copy(instance.getCredentials()),
+				instance.getServicePlanGuid(), instance.getSpaceGuid(), copy(instance.getGatewayData())));
+	}
+
+	private static ServiceBinding copy(ServiceBinding binding) {
+		return copyOther(binding, new ServiceBinding(binding.getAppGuid(), binding.getServiceInstanceGuid(),
+				copy(binding.getCredentials()), copy(binding.getGatewayData()), binding.getGatewayName()));
+	}
+
+	private static Space copy(Space space) {
+		return copyOther(space, new Space(space.getName(), space.getOrganizationGuid()));
+	}
+
+	private static Organization copy(Organization organization) {
+		return copyOther(organization, new Organization(organization.getName()));
+	}
+
+	private static User copy(User user) {
+		return copyOther(user, new User(user.getAdmin(), user.getActive(), user.getDefaultSpaceGuid(), user.getUsername()));
+	}
+
+	/**
+	 * Copies the properties the model doesn't bind to fields, which a caller could otherwise change with
+	 * {@link JsonObject#set(String, Object)}.
+	 */
+	private static <T extends JsonObject> T copyOther(JsonObject from, T to) {
+		for (Map.Entry<String, Object> property : from.any().entrySet()) {
+			to.set(property.getKey(), copyValue(property.getValue()));
+		}
+		return to;
+	}
+
+	private static Object copyValue(Object value) {
+		if (value instanceof Map) {
+			final Map<Object, Object> copy = new LinkedHashMap<>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				copy.put(entry.getKey(), copyValue(entry.getValue()));
+			}
+			return copy;
+		}
+		if (value instanceof List) {
+			final List<Object> copy = new ArrayList<>();
+			for (Object element : (List<?>) value) {
+				copy.add(copyValue(element));
+			}
+			return copy;
+		}
+		if (value instanceof JsonNode) {
+			return copy((JsonNode) value);
+		}
+		return value;
+	}
+
+	private static JsonNode copy(JsonNode node) {
+		return node == null ? null : node.deepCopy();
+	}
+
+	private static class Key {
+		private final Class<?> type;
+		private final UUID guid;
+
+		private Key(Class<?> type, UUID guid) {
+			this.type = type;
+			this.guid = guid;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key key = (Key) o;
+			return type.equals(key.type) && guid.equals(key.guid);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * type.hashCode() + guid.hashCode();
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.UaaUser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of {@link Uaa#getUser(Token, String)} and {@link Uaa#getUsers(Token, Collection)} lookups, including
+ * lookups of users that don't exist, keyed by the user name ignoring case as UAA does.
+ *
+ * <p>Found and not found results are cached for separate times to live, typically a short one for users that weren't
+ * found so that newly created users are seen quickly. The least recently used entries are evicted once the cache is
+ * full. Creating a user through this UAA invalidates any cached lookup of that user.</p>
+ *
+ * <p>Cached users are shared between tokens, so a cache should only be used by callers that are allowed to see the
+ * same users.</p>
+ */
+public class CachingUaa implements Uaa {
+
+	private final Uaa delegate;
+
+	private final ExpiringCache<String, Optional<UaaUser>> cache;
+	private final long foundTimeToLive;
+	private final long notFoundTimeToLive;
+
+	/**
+	 * @param delegate the UAA whose user lookups are cached.
+	 * @param maxEntries the maximum number of users held in the cache.
+	 * @param foundTimeToLive the time a user that was found is cached for.
+	 * @param notFoundTimeToLive the time a user that wasn't found is remembered as not existing, 0 to not cache users
+	 *                           that weren't found.
+	 * @param unit the unit of the times to live.
+	 */
+	public CachingUaa(Uaa delegate, int maxEntries, long foundTimeToLive, long notFoundTimeToLive, TimeUnit unit) {
+		this.delegate = delegate;
+		this.cache = new ExpiringCache<>(maxEntries);
+		this.foundTimeToLive = unit.toMillis(foundTimeToLive);
+		this.notFoundTimeToLive = unit.toMillis(notFoundTimeToLive);
+	}
+
+	public Uaa getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * Removes a user from the cache.
+	 */
+	public void invalidate(String username) {
+		cache.invalidate(key(username));
+	}
+
+	/**
+	 * Removes every user from the cache.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public long getHits() {
+		return cache.getHits();
+	}
+
+	public long getMisses() {
+		return cache.getMisses();
+	}
+
+	public long getEvictions() {
+		return cache.getEvictions();
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	@Override
+	public UaaUser getUser(Token token, String username) {
+		final Optional<UaaUser> cached = cache.get(key(username));
+		if (cached != null) {
+			return cached.orElse(null);
+		}
+		final long generation = cache.generation();
+		final UaaUser user = delegate.getUser(token, username);
+		cacheUser(username, user, generation);
+		return user;
+	}
+
+	@Override
+	public Map<String, UaaUser> getUsers(Token token, Collection<String> usernames) {
+		final Map<String, UaaUser> users = new LinkedHashMap<>();
+		final List<String> misses = new ArrayList<>();
+		for (String username : usernames) {
+			final Optional<UaaUser> cached = cache.get(key(username));
+			if (cached == null) {
+				misses.add(username);
+			} else if (cached.isPresent()) {
+				users.put(username, cached.get());
+			}
+		}
+		if (!misses.isEmpty()) {
+			final long generation = cache.generation();
+			final Map<String, UaaUser> found = delegate.getUsers(token, misses);
+			for (String username : misses) {
+				final UaaUser user = found.get(username);
+				cacheUser(username, user, generation);
+				if (user != null) {
+					users.put(username, user);
+				}
+			}
+		}
+		return users;
+	}
+
+	@Override
+	public UUID createUser(Token token, String username, String password, String origin) {
+		try {
+			return delegate.createUser(token, username, password, origin);
+		} finally {
+			invalidate(username);
+		}
+	}
+
+	@Override
+	public Token getUserToken(String client, String username, String password) {
+		return delegate.getUserToken(client, username, password);
+	}
+
+	@Override
+	public Token getClientToken(String client, String clientSecret) {
+		return delegate.getClientToken(client, clientSecret);
+	}
+
+	@Override
+	public TokenContents checkToken(String client, String clientSecret, Token token) {
+		return delegate.checkToken(client, clientSecret, token);
+	}
+
+	/**
+	 * Caches the result of a lookup unless a user was invalidated while it was made, since the lookup may then have
+	 * missed a user created at the same time.
+	 */
+	private void cacheUser(String username, UaaUser user, long generation) {
+		final long timeToLive = user == null ? notFoundTimeToLive : foundTimeToLive;
+		if (timeToLive > 0) {
+			cache.putUnlessInvalidated(key(username), Optional.ofNullable(user), timeToLive, TimeUnit.MILLISECONDS, generation);
+		}
+	}
+
+	/**
+	 * UAA matches user names case insensitively, so every spelling of a name shares a cache entry.
+	 */
+	private static String key(String username) {
+		return username.toLowerCase(Locale.ENGLISH);
+	}
+}
@@ -17,6 +17,7 @@
 package cf.client;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
 
@@ -24,6 +25,7 @@ import cf.client.model.AppUsageEvent;
 import cf.client.model.Application;
 import cf.client.model.ApplicationInstance;
 import cf.client.model.ApplicationInstanceStats;
+import cf.client.model.ApplicationStats;
 import cf.client.model.Event;
 import cf.client.model.Info;
 import cf.client.model.Organization;
@@ -73,6 +75,36 @@ public interface CloudController {
 	Map<String, ApplicationInstanceStats> getApplicationInstanceStats(Token token, UUID applicationGuid); 
 
 	Map<String, ApplicationInstance> getApplicationInstances(Token token, UUID applicationGuid);
+
+	/**
+	 * Returns an application's instances and the stats of each instance from a single request. Prefer this over calling
+	 * both {@link #getApplicationInstances(Token, UUID)} and {@link #getApplicationInstanceStats(Token, UUID)}, which
+	 * each request the same stats.
+	 *
+	 * <p>The default implementation calls both.</p>
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param applicationGuid the guid of the application.
+	 */
+	default ApplicationStats getApplicationStats(Token token, UUID applicationGuid) {
+		return new ApplicationStats(getApplicationInstances(token, applicationGuid), getApplicationInstanceStats(token, applicationGuid));
+	}
+
+	/**
+	 * Returns the instance stats of many applications. The stats of each application are requested concurrently, up to
+	 * the client's concurrent request limit, and an application whose stats can't be fetched, because it's stopped or
+	 * has been deleted for example, doesn't fail the others.
+	 *
+	 * <p>The default implementation fetches the stats of one application at a time.</p>
+	 *
+	 * @param token the token used to authenticate the requests.
+	 * @param applicationGuids the guids of the applications.
+	 * @return the stats of each application keyed by application guid, along with the error of each application whose
+	 *         stats couldn't be fetched.
+	 */
+	default PartialResults<UUID, Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, Collection<UUID> applicationGuids) {
+		return PartialResults.collect(applicationGuids, applicationGuid -> getApplicationInstanceStats(token, applicationGuid));
+	}
 	
 	/**
 	 * Get an application
@@ -91,6 +123,19 @@ public interface CloudController {
 	 */
 	RestCollection<Application> getApplications(Token token);
 
+	/**
+	 * Returns the applications with the given guids. The guids are looked up in batches using {@code guid IN}
+	 * queries rather than one request per application. The default implementation looks up one application at a time
+	 * with {@link #getApplication(Token, UUID)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param applicationGuids the guids of the applications to look up.
+	 * @return the applications found, keyed by guid. Guids that weren't found are not in the map.
+	 */
+	default Map<UUID, Resource<Application>> getApplications(Token token, Collection<UUID> applicationGuids) {
+		return Resource.lookupEach(applicationGuids, "/v2/apps", applicationGuid -> getApplication(token, applicationGuid));
+	}
+
 	
 	RestCollection<Application> getApplication(Token token, ApplicationQueryAttribute queryAttribute, String queryValue);
 
@@ -117,6 +162,50 @@ public interface CloudController {
 	
 	RestCollection<AppUsageEvent> getAppUsageEvents(Token token,String url);
 	RestCollection<AppUsageEvent> getAppUsageEvents(Token token);
+
+	/**
+	 * Returns all the events, decoding them one at a time as they are read off the wire.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @return a collection that re-issues the query each time it is iterated.
+	 */
+	default StreamingRestCollection<Event> streamEvents(Token token) {
+		return streamEvents(token, "/v2/events");
+	}
+
+	/**
+	 * Returns the events found at the given url, decoding them one at a time as they are read off the wire. The
+	 * default implementation reads the events a page at a time with {@link #getEvents(Token, String)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param url the url of the events query, including any query parameters.
+	 * @return a collection that re-issues the query each time it is iterated.
+	 */
+	default StreamingRestCollection<Event> streamEvents(Token token, String url) {
+		return StreamingRestCollection.paged(url, () -> getEvents(token, url));
+	}
+
+	/**
+	 * Returns all the app usage events, decoding them one at a time as they are read off the wire.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @return a collection that re-issues the query each time it is iterated.
+	 */
+	default StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token) {
+		return streamAppUsageEvents(token, "/v2/app_usage_events");
+	}
+
+	/**
+	 * Returns the app usage events found at the given url, decoding them one at a time as they are read off the wire.
+	 * The default implementation reads the events a page at a time with {@link #getAppUsageEvents(Token, String)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param url the url of the app usage events query, including any query parameters such as {@code after_guid}.
+	 * @return a collection that re-issues the query each time it is iterated.
+	 */
+	default StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token, String url) {
+		return StreamingRestCollection.paged(url, () -> getAppUsageEvents(token, url));
+	}
 	
 	
 	UUID createService(Token token, Service service);
@@ -234,6 +323,18 @@ public interface CloudController {
 	 * @return all the spaces for the given org guid
 	 */	
 	RestCollection<Space> getSpaces(Token token);
+
+	/**
+	 * Returns the spaces with the given guids, looked up in batches. The default implementation looks up one space at a
+	 * time with {@link #getSpace(Token, UUID)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param spaceGuids the guids of the spaces to look up.
+	 * @return the spaces found, keyed by guid. Guids that weren't found are not in the map.
+	 */
+	default Map<UUID, Resource<Space>> getSpaces(Token token, Collection<UUID> spaceGuids) {
+		return Resource.lookupEach(spaceGuids, "/v2/spaces", spaceGuid -> getSpace(token, spaceGuid));
+	}
 	
 	/**
 	 * Returns the managers of an organization.
@@ -376,6 +477,34 @@ public interface CloudController {
 	 */
 	RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue);
 
+	/**
+	 * Returns a list of service instances with their related resources, such as their {@code space} and
+	 * {@code service_plan}, inlined. The default implementation ignores {@code inlineRelations} and returns the service
+	 * instances without any related resources.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param queryAttribute the attribute to query on or {@code null} to return all the service instances.
+	 * @param queryValue the expected value of the attribute
+	 * @param inlineRelations the relations to inline.
+	 * @return a filtered list of service instances
+	 * @see Resource#getRelated(String, Class)
+	 */
+	default RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return getServiceInstances(token, queryAttribute, queryValue);
+	}
+
+	/**
+	 * Returns the service instances with the given guids, looked up in batches. The default implementation looks up one
+	 * service instance at a time with {@link #getServiceInstance(Token, UUID)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param instanceGuids the guids of the service instances to look up.
+	 * @return the service instances found, keyed by guid. Guids that weren't found are not in the map.
+	 */
+	default Map<UUID, Resource<ServiceInstance>> getServiceInstances(Token token, Collection<UUID> instanceGuids) {
+		return Resource.lookupEach(instanceGuids, "/v2/service_instances", instanceGuid -> getServiceInstance(token, instanceGuid));
+	}
+
 	/**
 	 * Returns all the service bindings.
 	 *
@@ -394,6 +523,34 @@ public interface CloudController {
 	 */
 	RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue);
 
+	/**
+	 * Returns a list of service bindings with their related resources, such as their {@code app} and
+	 * {@code service_instance}, inlined. The default implementation ignores {@code inlineRelations} and returns the
+	 * service bindings without any related resources.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param queryAttribute the attribute to query on or {@code null} to return all the service bindings.
+	 * @param queryValue the expected value of the attribute
+	 * @param inlineRelations the relations to inline.
+	 * @return a filtered list of service bindings.
+	 * @see Resource#getRelated(String, Class)
+	 */
+	default RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return getServiceBindings(token, queryAttribute, queryValue);
+	}
+
+	/**
+	 * Returns the service bindings with the given guids, looked up in batches. The default implementation looks up one
+	 * service binding at a time with {@link #getServiceBinding(Token, UUID)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param serviceBindingGuids the guids of the service bindings to look up.
+	 * @return the service bindings found, keyed by guid. Guids that weren't found are not in the map.
+	 */
+	default Map<UUID, Resource<ServiceBinding>> getServiceBindings(Token token, Collection<UUID> serviceBindingGuids) {
+		return Resource.lookupEach(serviceBindingGuids, "/v2/service_bindings", serviceBindingGuid -> getServiceBinding(token, serviceBindingGuid));
+	}
+
 	/**
 	 * Returns a service binding.
 	 * @param token
@@ -562,6 +719,21 @@ public interface CloudController {
 	 */
 	RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue);
 
+	/**
+	 * Find routes with their related resources, such as their {@code space}, {@code domain} and {@code apps}, inlined.
+	 * The default implementation ignores {@code inlineRelations} and returns the routes without any related resources.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param queryAttribute the attribute to query on or {@code null} to return all the routes.
+	 * @param queryValue the expected value of the attribute
+	 * @param inlineRelations the relations to inline.
+	 * @return a filtered list of routes.
+	 * @see Resource#getRelatedList(String, Class)
+	 */
+	default RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return getRoutes(token, queryAttribute, queryValue);
+	}
+
 	public interface QueryAttribute {}
 
 	public enum ServiceQueryAttribute implements QueryAttribute {
@@ -0,0 +1,538 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.Event;
+import cf.client.model.Organization;
+import cf.client.model.ServiceInstance;
+import cf.client.model.Space;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory mirror of the organizations, spaces, applications and service instances known to a Cloud Controller.
+ *
+ * <p>{@link #sync()} lists every resource into indexed tables, by guid and by parent space, organization or service
+ * plan, so queries such as "every service instance of a plan in a space" are answered without making a request.
+ * {@link #poll()} keeps the mirror current by reading {@code /v2/events} newer than the last event seen and
+ * re-fetching, in bulk, each resource an event refers to. A resource the Cloud Controller no longer returns is dropped
+ * from the mirror along with its children.</p>
+ *
+ * <p>Events aren't a perfect record of every change, so {@link #start(ScheduledExecutorService, long, long, TimeUnit)}
+ * also re-syncs the whole mirror periodically, and on the poll following a failed poll. Reads never block; a full sync
+ * builds new tables and swaps them in at once while incremental updates are applied to the current tables in place.</p>
+ */
+public class CloudControllerMirror implements Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CloudControllerMirror.class);
+
+	private static final String V2_EVENTS = "/v2/events";
+
+	public static final int DEFAULT_EVENT_BATCH_SIZE = 100;
+
+	private final CloudController cloudController;
+	private final TokenProvider token;
+
+	private volatile Executor executor;
+	private volatile int eventBatchSize = DEFAULT_EVENT_BATCH_SIZE;
+
+	private volatile Tables tables = new Tables();
+	private volatile long lastSync;
+
+	// Access to the following fields needs to be done holding this mirror's monitor.
+	private String eventCursor;
+	private final Set<String> eventsAtCursor = new HashSet<>();
+	private boolean stale = true;
+	private ScheduledFuture<?> scheduledPoll;
+	private ScheduledFuture<?> scheduledSync;
+
+	/**
+	 * @param cloudController the Cloud Controller to mirror.
+	 * @param token provides a token with read access to every resource to be mirrored, usually an admin token.
+	 */
+	public CloudControllerMirror(CloudController cloudController, TokenProvider token) {
+		this.cloudController = cloudController;
+		this.token = token;
+	}
+
+	/**
+	 * Sets the executor used to list organizations, spaces, applications and service instances in parallel during a
+	 * full sync.
+	 *
+	 * <p>The executor must not be the one used by the {@link DefaultCloudController} for prefetching pages. Each
+	 * listing waits on pages prefetched on that executor, so sharing a bounded executor between the two can deadlock
+	 * once every thread is listing. The cloud controller's own executor is rejected, and if the cloud controller is
+	 * later given this executor the resources are listed in turn on the syncing thread instead.</p>
+	 *
+	 * @param executor the executor, {@code null} to list each type of resource in turn on the syncing thread.
+	 */
+	public void setExecutor(Executor executor) {
+		if (executor != null && DefaultCloudController.usesExecutor(cloudController, executor)) {
+			throw new IllegalArgumentException("The mirror requires an executor other than the cloud controller's own executor.");
+		}
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the number of events requested per page when polling.
+	 */
+	public void setEventBatchSize(int eventBatchSize) {
+		if (eventBatchSize < 1) {
+			throw new IllegalArgumentException("Event batch size must be at least 1");
+		}
+		this.eventBatchSize = eventBatchSize;
+	}
+
+	/**
+	 * Syncs the mirror and then keeps it current on the given executor.
+	 *
+	 * @param executorService the executor that polls and syncs the mirror.
+	 * @param pollInterval how long to wait between polls of {@code /v2/events}.
+	 * @param syncInterval how long to wait between full syncs.
+	 */
+	public synchronized void start(ScheduledExecutorService executorService, long pollInterval, long syncInterval, TimeUnit unit) {
+		if (scheduledPoll != null) {
+			throw new IllegalStateException("Mirror has already been started");
+		}
+		scheduledPoll = executorService.scheduleWithFixedDelay(() -> {
+			try {
+				poll();
+			} catch (Exception e) {
+				LOGGER.error("Error polling Cloud Controller events", e);
+			}
+		}, 0, pollInterval, unit);
+		scheduledSync = executorService.scheduleWithFixedDelay(() -> {
+			try {
+				sync();
+			} catch (Exception e) {
+				LOGGER.error("Error syncing Cloud Controller mirror", e);
+			}
+		}, syncInterval, syncInterval, unit);
+	}
+
+	/**
+	 * Stops polling and syncing. A poll or sync that is in progress is allowed to finish.
+	 */
+	@Override
+	public synchronized void close() {
+		if (scheduledPoll != null) {
+			scheduledPoll.cancel(false);
+			scheduledSync.cancel(false);
+		}
+	}
+
+	/**
+	 * Lists every organization, space, application and service instance and replaces the contents of the mirror.
+	 * Events are polled from the newest event that existed before the sync started so no change made during the sync
+	 * is missed.
+	 */
+	public synchronized void sync() {
+		final Token token = this.token.get();
+		final Resource<Event> newestEvent = newestEvent(token);
+
+		final long start = System.currentTimeMillis();
+		final Tables tables = new Tables();
+		final CompletableFuture<?> organizations = list(() -> cloudController.getOrganizations(token), tables.organizations);
+		final CompletableFuture<?> spaces = list(() -> cloudController.getSpaces(token), tables.spaces);
+		final CompletableFuture<?> applications = list(() -> cloudController.getApplications(token), tables.applications);
+		final CompletableFuture<?> serviceInstances = list(() -> cloudController.getServiceInstances(token), tables.serviceInstances);
+		DefaultCloudController.join(CompletableFuture.allOf(organizations, spaces, applications, serviceInstances));
+
+		this.tables = tables;
+		lastSync = System.currentTimeMillis();
+		eventCursor = newestEvent == null ? null : newestEvent.getEntity().getTimestamp();
+		eventsAtCursor.clear();
+		if (newestEvent != null) {
+			eventsAtCursor.add(newestEvent.getGuidString());
+		}
+		stale = false;
+		LOGGER.debug("Synced {} organization(s), {} space(s), {} application(s) and {} service instance(s) in {}ms",
+				tables.organizations.size(), tables.spaces.size(), tables.applications.size(), tables.serviceInstances.size(), lastSync - start);
+	}
+
+	/**
+	 * Applies every event newer than the last event seen to the mirror. Syncs the mirror instead if it hasn't been
+	 * synced yet or the previous poll failed.
+	 *
+	 * @return the number of events applied.
+	 */
+	public synchronized int poll() {
+		if (stale) {
+			sync();
+			return 0;
+		}
+		stale = true;
+		final Token token = this.token.get();
+		String url = V2_EVENTS + "?order-direction=asc&results-per-page=" + eventBatchSize;
+		if (eventCursor != null) {
+			// Events are only timestamped to the second so ask for the cursor's second again and skip what's been seen.
+			url += "&q=timestamp%3E%3D" + eventCursor;
+		}
+		final Changes changes = new Changes();
+		int applied = 0;
+		for (Iterator<Resource<Event>> i = cloudController.getEvents(token, url).iterator(); i.hasNext(); ) {
+			final Resource<Event> event = i.next();
+			if (event == null) {
+				break;
+			}
+			final String timestamp = event.getEntity().getTimestamp();
+			if (timestamp.equals(eventCursor)) {
+				if (!eventsAtCursor.add(event.getGuidString())) {
+					continue;
+				}
+			} else {
+				eventCursor = timestamp;
+				eventsAtCursor.clear();
+				eventsAtCursor.add(event.getGuidString());
+			}
+			changes.add(event.getEntity());
+			applied++;
+			if (changes.size() >= eventBatchSize) {
+				changes.apply(token);
+			}
+		}
+		changes.apply(token);
+		stale = false;
+		LOGGER.debug("Applied {} Cloud Controller event(s)", applied);
+		return applied;
+	}
+
+	/**
+	 * Returns the time, in milliseconds since the epoch, the mirror was last fully synced or {@code 0} if it hasn't
+	 * been synced.
+	 */
+	public long getLastSync() {
+		return lastSync;
+	}
+
+	public Resource<Organization> getOrganization(UUID organizationGuid) {
+		return tables.organizations.get(organizationGuid);
+	}
+
+	public Collection<Resource<Organization>> getOrganizations() {
+		return tables.organizations.values();
+	}
+
+	public Resource<Space> getSpace(UUID spaceGuid) {
+		return tables.spaces.get(spaceGuid);
+	}
+
+	public Collection<Resource<Space>> getSpaces() {
+		return tables.spaces.values();
+	}
+
+	public List<Resource<Space>> getSpaces(UUID organizationGuid) {
+		final Tables tables = this.tables;
+		return tables.spaces.get(tables.spacesByOrganization.get(organizationGuid));
+	}
+
+	public Resource<Application> getApplication(UUID applicationGuid) {
+		return tables.applications.get(applicationGuid);
+	}
+
+	public Collection<Resource<Application>> getApplications() {
+		return tables.applications.values();
+	}
+
+	public List<Resource<Application>> getApplications(UUID spaceGuid) {
+		final Tables tables = this.tables;
+		return tables.applications.get(tables.applicationsBySpace.get(spaceGuid));
+	}
+
+	public Resource<ServiceInstance> getServiceInstance(UUID serviceInstanceGuid) {
+		return tables.serviceInstances.get(serviceInstanceGuid);
+	}
+
+	public Collection<Resource<ServiceInstance>> getServiceInstances() {
+		return tables.serviceInstances.values();
+	}
+
+	public List<Resource<ServiceInstance>> getServiceInstances(UUID spaceGuid) {
+		final Tables tables = this.tables;
+		return tables.serviceInstances.get(tables.serviceInstancesBySpace.get(spaceGuid));
+	}
+
+	public List<Resource<ServiceInstance>> getServiceInstancesOfPlan(UUID servicePlanGuid) {
+		final Tables tables = this.tables;
+		return tables.serviceInstances.get(tables.serviceInstancesByPlan.get(servicePlanGuid));
+	}
+
+	/**
+	 * Returns the service instances of a service plan in a space.
+	 */
+	public List<Resource<ServiceInstance>> getServiceInstances(UUID spaceGuid, UUID servicePlanGuid) {
+		final List<Resource<ServiceInstance>> serviceInstances = new ArrayList<>();
+		for (Resource<ServiceInstance> serviceInstance : getServiceInstances(spaceGuid)) {
+			if (servicePlanGuid.equals(serviceInstance.getEntity().getServicePlanGuid())) {
+				serviceInstances.add(serviceInstance);
+			}
+		}
+		return serviceInstances;
+	}
+
+	private Resource<Event> newestEvent(Token token) {
+		// Only the first page is wanted, so stream it rather than let a prefetching iterator page through every event
+		try (StreamingRestCollection.ResourceIterator<Event> events = cloudController.streamEvents(token, V2_EVENTS + "?order-direction=desc&results-per-page=1").iterator()) {
+			return events.hasNext() ? events.next() : null;
+		}
+	}
+
+	private <T> CompletableFuture<?> list(Supplier<RestCollection<T>> query, Table<T> table) {
+		final Runnable list = () -> {
+			for (Resource<T> resource : query.get()) {
+				table.put(resource);
+			}
+		};
+		final Executor executor = this.executor;
+		if (executor == null || DefaultCloudController.usesExecutor(cloudController, executor)) {
+			list.run();
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.runAsync(list, executor);
+	}
+
+	/**
+	 * The guids of the resources named by a batch of events, re-fetched together once the batch is full.
+	 */
+	private class Changes {
+		private boolean organizations;
+		private final Set<UUID> spaces = new HashSet<>();
+		private final Set<UUID> applications = new HashSet<>();
+		private final Set<UUID> serviceInstances = new HashSet<>();
+
+		void add(Event event) {
+			if (event.getActee_type() == null) {
+				return;
+			}
+			final UUID actee;
+			try {
+				actee = UUID.fromString(event.getActee());
+			} catch (IllegalArgumentException | NullPointerException e) {
+				return;
+			}
+			switch (event.getActee_type()) {
+				case "organization":
+					organizations = true;
+					break;
+				case "space":
+					spaces.add(actee);
+					break;
+				case "app":
+					applications.add(actee);
+					break;
+				case "service_instance":
+					serviceInstances.add(actee);
+					break;
+				default:
+					// Not mirrored
+			}
+		}
+
+		int size() {
+			return spaces.size() + applications.size() + serviceInstances.size() + (organizations ? 1 : 0);
+		}
+
+		void apply(Token token) {
+			final Tables tables = CloudControllerMirror.this.tables;
+			if (organizations) {
+				final Set<UUID> removed = new HashSet<>(tables.organizations.guids());
+				for (Resource<Organization> organization : cloudController.getOrganizations(token)) {
+					tables.organizations.put(organization);
+					removed.remove(organization.getGuid());
+				}
+				for (UUID organizationGuid : removed) {
+					tables.removeOrganization(organizationGuid);
+				}
+			}
+			if (!spaces.isEmpty()) {
+				tables.spaces.reconcile(spaces, cloudController.getSpaces(token, spaces), tables::removeSpace);
+			}
+			if (!applications.isEmpty()) {
+				tables.applications.reconcile(applications, cloudController.getApplications(token, applications), tables.applications::remove);
+			}
+			if (!serviceInstances.isEmpty()) {
+				tables.serviceInstances.reconcile(serviceInstances, cloudController.getServiceInstances(token, serviceInstances), tables.serviceInstances::remove);
+			}
+			organizations = false;
+			spaces.clear();
+			applications.clear();
+			serviceInstances.clear();
+		}
+	}
+
+	private static class Tables {
+		final Table<Organization> organizations = new Table<>();
+		final Index<Space> spacesByOrganization = new Index<>(Space::getOrganizationGuid);
+		final Table<Space> spaces = new Table<>(Collections.singletonList(spacesByOrganization));
+		final Index<Application> applicationsBySpace = new Index<>(Application::getSpaceGuid);
+		final Table<Application> applications = new Table<>(Collections.singletonList(applicationsBySpace));
+		final Index<ServiceInstance> serviceInstancesBySpace = new Index<>(ServiceInstance::getSpaceGuid);
+		final Index<ServiceInstance> serviceInstancesByPlan = new Index<>(ServiceInstance::getServicePlanGuid);
+		final Table<ServiceInstance> serviceInstances = new Table<>(Arrays.asList(serviceInstancesBySpace, serviceInstancesByPlan));
+
+		void removeOrganization(UUID organizationGuid) {
+			organizations.remove(organizationGuid);
+			for (UUID spaceGuid : spacesByOrganization.get(organizationGuid)) {
+				removeSpace(spaceGuid);
+			}
+		}
+
+		void removeSpace(UUID spaceGuid) {
+			spaces.remove(spaceGuid);
+			for (UUID applicationGuid : applicationsBySpace.get(spaceGuid)) {
+				applications.remove(applicationGuid);
+			}
+			for (UUID serviceInstanceGuid : serviceInstancesBySpace.get(spaceGuid)) {
+				serviceInstances.remove(serviceInstanceGuid);
+			}
+		}
+	}
+
+	/**
+	 * Resources of a single type keyed by guid along with the indexes that need to be kept up to date as resources
+	 * are added and removed.
+	 */
+	private static class Table<T> {
+		private final ConcurrentMap<UUID, Resource<T>> resources = new ConcurrentHashMap<>();
+		private final List<Index<T>> indexes;
+
+		Table() {
+			this(Collections.emptyList());
+		}
+
+		Table(List<Index<T>> indexes) {
+			this.indexes = indexes;
+		}
+
+		Resource<T> get(UUID guid) {
+			return guid == null ? null : resources.get(guid);
+		}
+
+		List<Resource<T>> get(Collection<UUID> guids) {
+			final List<Resource<T>> found = new ArrayList<>(guids.size());
+			for (UUID guid : guids) {
+				final Resource<T> resource = resources.get(guid);
+				if (resource != null) {
+					found.add(resource);
+				}
+			}
+			return found;
+		}
+
+		Collection<Resource<T>> values() {
+			return Collections.unmodifiableCollection(resources.values());
+		}
+
+		Set<UUID> guids() {
+			return resources.keySet();
+		}
+
+		int size() {
+			return resources.size();
+		}
+
+		void put(Resource<T> resource) {
+			final Resource<T> previous = resources.put(resource.getGuid(), resource);
+			for (Index<T> index : indexes) {
+				if (previous != null) {
+					index.remove(previous);
+				}
+				index.add(resource);
+			}
+		}
+
+		void remove(UUID guid) {
+			final Resource<T> previous = resources.remove(guid);
+			if (previous != null) {
+				for (Index<T> index : indexes) {
+					index.remove(previous);
+				}
+			}
+		}
+
+		/**
+		 * Stores the resources that were fetched and removes each requested resource that wasn't found.
+		 */
+		void reconcile(Collection<UUID> requested, Map<UUID, Resource<T>> fetched, Consumer<UUID> remove) {
+			for (UUID guid : requested) {
+				final Resource<T> resource = fetched.get(guid);
+				if (resource == null) {
+					remove.accept(guid);
+				} else {
+					put(resource);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Maps a parent guid, such as a resource's space guid, to the guids of the resources that have it.
+	 */
+	private static class Index<T> {
+		private final Function<T, UUID> key;
+		private final ConcurrentMap<UUID, Set<UUID>> entries = new ConcurrentHashMap<>();
+
+		Index(Function<T, UUID> key) {
+			this.key = key;
+		}
+
+		Set<UUID> get(UUID key) {
+			final Set<UUID> guids = key == null ? null : entries.get(key);
+			return guids == null ? Collections.<UUID>emptySet() : guids;
+		}
+
+		void add(Resource<T> resource) {
+			final UUID key = this.key.apply(resource.getEntity());
+			if (key != null) {
+				entries.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(resource.getGuid());
+			}
+		}
+
+		void remove(Resource<T> resource) {
+			final UUID key = this.key.apply(resource.getEntity());
+			if (key != null) {
+				entries.computeIfPresent(key, (k, guids) -> {
+					guids.remove(resource.getGuid());
+					return guids.isEmpty() ? null : guids;
+				});
+			}
+		}
+	}
+}
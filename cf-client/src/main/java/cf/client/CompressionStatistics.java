@@ -0,0 +1,82 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes of responses as they were received and after they were decompressed. Responses that weren't
+ * compressed count the same towards both, so the difference between {@link #getCompressedBytes()} and
+ * {@link #getUncompressedBytes()} is the bandwidth saved by compression.
+ */
+public class CompressionStatistics {
+
+	private final AtomicLong responses = new AtomicLong();
+	private final AtomicLong compressedResponses = new AtomicLong();
+	private final AtomicLong compressedBytes = new AtomicLong();
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+	private final AtomicLong clientDecompressedResponses = new AtomicLong();
+
+	void responseRead(boolean compressed, long bytesReceived, long bytesDecoded) {
+		responses.incrementAndGet();
+		if (compressed) {
+			compressedResponses.incrementAndGet();
+		}
+		compressedBytes.addAndGet(bytesReceived);
+		uncompressedBytes.addAndGet(bytesDecoded);
+	}
+
+	void responseDecompressedByClient() {
+		clientDecompressedResponses.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of response bodies read.
+	 */
+	public long getResponses() {
+		return responses.get();
+	}
+
+	/**
+	 * Returns the number of response bodies that were compressed.
+	 */
+	public long getCompressedResponses() {
+		return compressedResponses.get();
+	}
+
+	/**
+	 * Returns the number of bytes received, before decompression.
+	 */
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	/**
+	 * Returns the number of bytes read after decompression.
+	 */
+	public long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+
+	/**
+	 * Returns the number of responses that the {@code HttpClient} had already decompressed, and so aren't counted by the
+	 * other statistics. Build the client with {@code HttpClientBuilder.disableContentCompression()} to count them.
+	 */
+	public long getClientDecompressedResponses() {
+		return clientDecompressedResponses.get();
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Negotiates gzip or deflate compressed responses and decompresses them as they're read.
+ *
+ * <p>Decompression is done here rather than by the {@link org.apache.http.client.HttpClient} so that the bytes
+ * received can be counted before they're decompressed. If the client decompresses responses itself, which clients
+ * built with {@code HttpClientBuilder} do unless {@code disableContentCompression()} is called, responses arrive
+ * here already decompressed. They are left alone and only counted as
+ * {@link CompressionStatistics#getClientDecompressedResponses() decompressed by the client}, since the bytes received
+ * are no longer known.</p>
+ */
+final class ContentCompression {
+
+	private static final String ACCEPT_ENCODING = "gzip,deflate";
+
+	private ContentCompression() {
+	}
+
+	/**
+	 * Asks for a compressed response to a {@code GET} request.
+	 */
+	static void acceptCompressed(HttpUriRequest request) {
+		if ("GET".equals(request.getMethod())) {
+			request.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+		}
+	}
+
+	private static boolean isDecompressedByClient(HttpEntity entity) {
+		final HttpEntity received = InstrumentedRequests.unwrap(entity);
+		return received instanceof GzipDecompressingEntity || received instanceof DeflateDecompressingEntity;
+	}
+
+	/**
+	 * Replaces the entity of a response with one that decompresses the content, if the content is compressed, and
+	 * counts the bytes read once the content is closed.
+	 */
+	static HttpResponse decompress(HttpResponse response, CompressionStatistics statistics) {
+		final HttpEntity entity = response.getEntity();
+		if (entity == null) {
+			return response;
+		}
+		final Header contentEncoding = entity.getContentEncoding();
+		final String encoding = contentEncoding == null ? "identity" : contentEncoding.getValue().trim().toLowerCase();
+		final boolean compressed;
+		switch (encoding) {
+			case "gzip":
+			case "x-gzip":
+			case "deflate":
+				compressed = true;
+				break;
+			case "identity":
+				if (isDecompressedByClient(entity)) {
+					statistics.responseDecompressedByClient();
+					return response;
+				}
+				compressed = false;
+				break;
+			default:
+				// Leave encodings we don't understand to the caller
+				return response;
+		}
+		if (compressed) {
+			response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+			response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+			response.removeHeaders(HttpHeaders.CONTENT_MD5);
+		}
+		response.setEntity(new HttpEntityWrapper(entity) {
+			// The content is requested again when the response is closed, it must only be decompressed and counted once.
+			private InputStream content;
+
+			@Override
+			public InputStream getContent() throws IOException {
+				if (content == null) {
+					final CountingInputStream received = new CountingInputStream(super.getContent());
+					if (!compressed) {
+						received.onClose(() -> statistics.responseRead(false, received.getBytes(), received.getBytes()));
+						content = received;
+					} else {
+						final CountingInputStream decoded = new CountingInputStream(encoding.equals("deflate")
+								? inflate(received)
+								: new GZIPInputStream(received));
+						decoded.onClose(() -> statistics.responseRead(true, received.getBytes(), decoded.getBytes()));
+						content = decoded;
+					}
+				}
+				return content;
+			}
+
+			@Override
+			public long getContentLength() {
+				return compressed ? -1 : super.getContentLength();
+			}
+
+			@Override
+			public Header getContentEncoding() {
+				return compressed ? null : super.getContentEncoding();
+			}
+		});
+		return response;
+	}
+
+	/**
+	 * Returns a stream that inflates {@code deflate} content. The content should be zlib wrapped but some servers send
+	 * raw deflate data so the first two bytes are checked for a zlib header.
+	 */
+	private static InputStream inflate(InputStream in) throws IOException {
+		final PushbackInputStream pushback = new PushbackInputStream(in, 2);
+		final byte[] header = new byte[2];
+		int read = 0;
+		while (read < header.length) {
+			final int n = pushback.read(header, read, header.length - read);
+			if (n < 0) {
+				break;
+			}
+			read += n;
+		}
+		pushback.unread(header, 0, read);
+		final boolean zlib = read == 2 && (header[0] & 0x0f) == 8 && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+		final Inflater inflater = new Inflater(!zlib);
+		return new InflaterInputStream(pushback, inflater) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					inflater.end();
+				}
+			}
+		};
+	}
+}
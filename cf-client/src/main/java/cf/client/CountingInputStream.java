@@ -0,0 +1,86 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a stream and runs a callback, once, when the stream is closed.
+ */
+class CountingInputStream extends FilterInputStream {
+
+	private long bytes;
+	private Runnable onClose;
+
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * Sets the callback run the first time the stream is closed.
+	 */
+	void onClose(Runnable onClose) {
+		this.onClose = onClose;
+	}
+
+	/**
+	 * Returns the number of bytes read, or skipped, so far.
+	 */
+	long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int b = super.read();
+		if (b >= 0) {
+			bytes++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		final int read = super.read(b, off, len);
+		if (read > 0) {
+			bytes += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		final long skipped = super.skip(n);
+		bytes += skipped;
+		return skipped;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			final Runnable onClose = this.onClose;
+			if (onClose != null) {
+				this.onClose = null;
+				onClose.run();
+			}
+		}
+	}
+}
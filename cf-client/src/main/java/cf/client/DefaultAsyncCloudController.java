@@ -0,0 +1,156 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.ApplicationInstance;
+import cf.client.model.ApplicationInstanceStats;
+import cf.client.model.Info;
+import cf.client.model.Organization;
+import cf.client.model.PrivateDomain;
+import cf.client.model.Service;
+import cf.client.model.ServiceBinding;
+import cf.client.model.ServiceInstance;
+import cf.client.model.ServicePlan;
+import cf.client.model.SharedDomain;
+import cf.client.model.Space;
+import cf.client.model.User;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Implements {@link AsyncCloudController} by running the blocking requests of a {@link CloudController} on an
+ * {@link Executor}. This is not non-blocking I/O: every request in flight occupies an executor thread until the Cloud
+ * Controller has responded, so the number of requests in flight at once is bounded by the executor.
+ *
+ * <p>The executor must not be the one used by a {@link DefaultCloudController} for prefetching pages and for fanning out
+ * requests. A request run here may itself wait on tasks queued on that executor, so sharing a bounded executor between
+ * the two can deadlock once every thread is waiting. The constructor rejects an executor that is the cloud controller's
+ * own, and each request fails with an {@link IllegalStateException} if the cloud controller has since been given this
+ * executor. The cloud controller is looked up through {@link DelegatingCloudController} decorators; a shared executor
+ * behind any other decorator goes undetected.</p>
+ */
+public class DefaultAsyncCloudController implements AsyncCloudController {
+
+	private final CloudController cloudController;
+	private final Executor executor;
+
+	/**
+	 * @param cloudController the cloud controller requests are made with.
+	 * @param executor the executor requests are run on, which must not be the cloud controller's own executor.
+	 */
+	public DefaultAsyncCloudController(CloudController cloudController, Executor executor) {
+		if (cloudController == null || executor == null) {
+			throw new IllegalArgumentException("A cloud controller and an executor are required.");
+		}
+		if (DefaultCloudController.usesExecutor(cloudController, executor)) {
+			throw new IllegalArgumentException("The asynchronous API requires an executor other than the cloud controller's own executor.");
+		}
+		this.cloudController = cloudController;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<Info> getInfo() {
+		return supply(cloudController::getInfo);
+	}
+
+	@Override
+	public CompletableFuture<Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, UUID applicationGuid) {
+		return supply(() -> cloudController.getApplicationInstanceStats(token, applicationGuid));
+	}
+
+	@Override
+	public CompletableFuture<Map<String, ApplicationInstance>> getApplicationInstances(Token token, UUID applicationGuid) {
+		return supply(() -> cloudController.getApplicationInstances(token, applicationGuid));
+	}
+
+	@Override
+	public CompletableFuture<Application> getApplication(Token token, UUID applicationGuid) {
+		return supply(() -> cloudController.getApplication(token, applicationGuid));
+	}
+
+	@Override
+	public CompletableFuture<Service> getService(Token token, UUID serviceGuid) {
+		return supply(() -> cloudController.getService(token, serviceGuid));
+	}
+
+	@Override
+	public CompletableFuture<ServicePlan> getServicePlan(Token token, UUID servicePlanGuid) {
+		return supply(() -> cloudController.getServicePlan(token, servicePlanGuid));
+	}
+
+	@Override
+	public CompletableFuture<ServiceInstance> getServiceInstance(Token token, UUID instanceGuid) {
+		return supply(() -> cloudController.getServiceInstance(token, instanceGuid));
+	}
+
+	@Override
+	public CompletableFuture<ServiceBinding> getServiceBinding(Token token, UUID serviceBindingGuid) {
+		return supply(() -> cloudController.getServiceBinding(token, serviceBindingGuid));
+	}
+
+	@Override
+	public CompletableFuture<Space> getSpace(Token token, UUID spaceGuid) {
+		return supply(() -> cloudController.getSpace(token, spaceGuid));
+	}
+
+	@Override
+	public CompletableFuture<Organization> getOrganization(Token token, UUID organizationGuid) {
+		return supply(() -> cloudController.getOrganization(token, organizationGuid));
+	}
+
+	@Override
+	public CompletableFuture<User> getUser(Token token, UUID userId) {
+		return supply(() -> cloudController.getUser(token, userId));
+	}
+
+	@Override
+	public CompletableFuture<PrivateDomain> getPrivateDomain(Token token, UUID privateDomainGuid) {
+		return supply(() -> cloudController.getPrivateDomain(token, privateDomainGuid));
+	}
+
+	@Override
+	public CompletableFuture<SharedDomain> getSharedDomain(Token token, UUID sharedDomainGuid) {
+		return supply(() -> cloudController.getSharedDomain(token, sharedDomainGuid));
+	}
+
+	private <T> CompletableFuture<T> supply(Supplier<T> request) {
+		// The cloud controller's executor may have been changed since this instance was created
+		if (DefaultCloudController.usesExecutor(cloudController, executor)) {
+			return failed(new IllegalStateException("The asynchronous API requires an executor other than the cloud controller's own executor."));
+		}
+		try {
+			return CompletableFuture.supplyAsync(request, executor);
+		} catch (RejectedExecutionException e) {
+			// The executor has been shut down or is saturated
+			return failed(e);
+		}
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable cause) {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(cause);
+		return future;
+	}
+
+}
@@ -17,18 +17,21 @@
 package cf.client;
 
 import cf.client.model.*;
-import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
@@ -37,11 +40,20 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author Mike Heath
@@ -69,99 +81,328 @@ public class DefaultCloudController implements CloudController {
 	private static final String V2_EVENTS = "/v2/events";
 	private static final String V2_APP_USAGE_EVENTS = "/v2/app_usage_events";
 
+	private static final int GUID_LENGTH = 36;
+	// Keeps guid queries well under the URI length limits of the Cloud Controller and any proxies in front of it.
+	private static final int MAX_GUID_QUERY_LENGTH = 1800;
+
+	private static final Pattern PAGE_PARAMETER = Pattern.compile("([?&]page=)\\d+");
+
 	private final HttpClient httpClient;
 	private final URI target;
 
-	private final ObjectMapper mapper;
+	private final ResourceDecoder decoder;
+	private final ResourceDecoder relationsDecoder;
+
+	// Each reference holds the fetch in progress or the fetched value, see #singleFlight
+	private final AtomicReference<CompletableFuture<Info>> info = new AtomicReference<>();
+	private final AtomicReference<CompletableFuture<Uaa>> uaa = new AtomicReference<>();
 
-	private final Object lock = new Object();
+	private volatile Executor executor;
+	private volatile int prefetchDepth;
+	private volatile boolean parallelPaging;
+	private volatile int maxConcurrentRequests = 4;
+	private volatile RateLimiter rateLimiter;
+	private volatile RequestMetrics requestMetrics;
+	private volatile boolean contentCompression = true;
+	private final CompressionStatistics compressionStatistics = new CompressionStatistics();
 
-	// Access to the following fields needs to be done holding the #lock monitor
-	private Info info;
-	private Uaa uaa;
+	// Access to the map needs to be done holding the map's monitor.
+	private volatile Map<URI, ValidatedResource> validatedResources;
 
 	public DefaultCloudController(HttpClient httpClient, URI target) {
 		this.httpClient = httpClient;
 		this.target = target;
 
-		mapper = new ObjectMapper();
-		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		decoder = new ResourceDecoder();
+		relationsDecoder = new ResourceDecoder(true);
 	}
 
 	public DefaultCloudController(HttpClient httpClient, String uri) {
 		this(httpClient, URI.create(uri));
 	}
 	
+	/**
+	 * Sets the executor used for fetching result pages in the background. Without an executor all pages are fetched
+	 * on the thread iterating over a {@link RestCollection}.
+	 *
+	 * @param executor the executor used for background requests, may be {@code null}.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Returns {@code true} if {@code executor} is the executor of the {@link DefaultCloudController} behind
+	 * {@code cloudController}, looking through any {@link DelegatingCloudController} decorators. Other decorators
+	 * can't be looked through.
+	 */
+	static boolean usesExecutor(CloudController cloudController, Executor executor) {
+		while (cloudController instanceof DelegatingCloudController) {
+			cloudController = ((DelegatingCloudController) cloudController).getDelegate();
+		}
+		return cloudController instanceof DefaultCloudController && ((DefaultCloudController) cloudController).getExecutor() == executor;
+	}
+
+	/**
+	 * Sets the number of result pages to fetch ahead of the page currently being iterated over. Pages are only
+	 * prefetched when an executor has been set. A depth of 0, the default, disables prefetching.
+	 *
+	 * @param prefetchDepth the maximum number of pages buffered ahead of the current page.
+	 */
+	public void setPrefetchDepth(int prefetchDepth) {
+		if (prefetchDepth < 0) {
+			throw new IllegalArgumentException("Prefetch depth can not be negative.");
+		}
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	/**
+	 * Enables fetching all the pages of a result in parallel. Once the first page of a result has been received, the
+	 * remaining pages are requested directly using the {@code page} parameter and the {@code total_pages} count of the
+	 * first page, rather than by following each page's {@code next_url}. Pages are still returned in order. Requires an
+	 * executor; at most {@link #setMaxConcurrentRequests(int) maxConcurrentRequests} pages are fetched or buffered at
+	 * a time.
+	 *
+	 * @param parallelPaging {@code true} to fetch pages in parallel.
+	 */
+	public void setParallelPaging(boolean parallelPaging) {
+		this.parallelPaging = parallelPaging;
+	}
+
+	/**
+	 * Sets the maximum number of requests a single operation issues concurrently. Defaults to 4.
+	 *
+	 * @param maxConcurrentRequests the maximum number of concurrent requests per operation.
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException("Max concurrent requests must be at least 1.");
+		}
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/**
+	 * Rate limits every request made to the Cloud Controller. Requests are made as interactive requests unless they're
+	 * made inside {@link RateLimiter#background(Supplier)}; pages fetched in the background and
+	 * concurrent lookups keep the priority of the calling thread.
+	 *
+	 * @param rateLimiter the rate limiter, {@code null} to disable rate limiting.
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * Reports the latency, status code and bytes read of every request made to the Cloud Controller, and to the UAA
+	 * returned by {@link #getUaa()}, along with the number of pages fetched by each paginated query.
+	 *
+	 * @param requestMetrics the metrics to report to, {@code null} to disable instrumentation.
+	 * @see RequestStatistics
+	 */
+	public void setRequestMetrics(RequestMetrics requestMetrics) {
+		this.requestMetrics = requestMetrics;
+		final DefaultUaa uaa = currentUaa();
+		if (uaa != null) {
+			uaa.setRequestMetrics(requestMetrics);
+		}
+	}
+
+	/**
+	 * Asks for gzip or deflate compressed responses to every {@code GET} request made to the Cloud Controller, and to
+	 * the UAA returned by {@link #getUaa()}, and decompresses them as they're read. Enabled by default.
+	 *
+	 * <p>Responses that the {@code HttpClient} decompresses itself are passed through untouched and aren't counted in
+	 * the byte statistics. To count them, build the client with {@code disableContentCompression()}.</p>
+	 *
+	 * @see #getCompressionStatistics()
+	 */
+	public void setContentCompression(boolean contentCompression) {
+		this.contentCompression = contentCompression;
+		final DefaultUaa uaa = currentUaa();
+		if (uaa != null) {
+			uaa.setContentCompression(contentCompression);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes received, and the number of bytes they decompressed to, for the responses read from
+	 * the Cloud Controller and the UAA returned by {@link #getUaa()}.
+	 */
+	public CompressionStatistics getCompressionStatistics() {
+		return compressionStatistics;
+	}
+
+	/**
+	 * Enables conditional requests for single resources. The {@code ETag} and {@code Last-Modified} headers of up to
+	 * {@code size} responses are remembered per URI and sent back as {@code If-None-Match} and
+	 * {@code If-Modified-Since} when the resource is fetched again. When the Cloud Controller responds with
+	 * {@code 304 Not Modified} the resource returned by the previous request is returned again without being parsed or
+	 * bound, so callers receive the same instance and must not modify it. A size of 0, the default, disables
+	 * conditional requests.
+	 *
+	 * @param size the maximum number of responses remembered, least recently used responses are discarded first.
+	 */
+	public void setConditionalRequestCacheSize(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Conditional request cache size can not be negative.");
+		}
+		if (size == 0) {
+			validatedResources = null;
+			return;
+		}
+		validatedResources = new LinkedHashMap<URI, ValidatedResource>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<URI, ValidatedResource> eldest) {
+				return size() > size;
+			}
+		};
+	}
+
+	/**
+	 * Returns an asynchronous view of this cloud controller whose requests run on the given executor. Each request in
+	 * flight blocks one of the executor's threads. The executor must not be the one set with
+	 * {@link #setExecutor(Executor)}, see {@link DefaultAsyncCloudController}.
+	 *
+	 * @param executor the executor requests are run on.
+	 * @return an asynchronous view of this cloud controller.
+	 * @throws IllegalArgumentException if the executor is this cloud controller's own executor.
+	 */
+	public AsyncCloudController async(Executor executor) {
+		return new DefaultAsyncCloudController(this, executor);
+	}
+
 	@Override
 	public URI getTarget() {
 		return target;
 	}
 
+	/**
+	 * Periodically re-fetches {@code /v2/info} in the background so that changes, such as a new UAA endpoint, are picked
+	 * up without restarting. If a refresh fails, the previously fetched info continues to be used.
+	 *
+	 * @param scheduler the executor the refreshes run on.
+	 * @param interval the time between refreshes.
+	 * @param unit the unit of {@code interval}.
+	 * @return the scheduled refresh, cancel it to stop refreshing.
+	 */
+	public ScheduledFuture<?> scheduleInfoRefresh(ScheduledExecutorService scheduler, long interval, TimeUnit unit) {
+		return scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					refreshInfo();
+				} catch (Exception e) {
+					LOGGER.warn("Error refreshing Cloud Controller info", e);
+				}
+			}
+		}, interval, interval, unit);
+	}
+
 	@Override
 	public Info getInfo() {
-		synchronized (lock) {
-			if (info == null) {
-				fetchInfo();
-			}
-			return info;
-		}
+		return singleFlight(info, this::fetchInfo);
 	}
 
 	@Override
 	public Uaa getUaa() {
-		synchronized (lock) {
-			if (uaa == null) {
-				uaa = new DefaultUaa(httpClient, getInfo().getAuthorizationEndpoint());
-			}
+		return singleFlight(uaa, () -> {
+			final DefaultUaa uaa = new DefaultUaa(httpClient, getInfo().getAuthorizationEndpoint(), compressionStatistics);
+			uaa.setRequestMetrics(requestMetrics);
+			uaa.setContentCompression(contentCompression);
 			return uaa;
+		});
+	}
+
+	/**
+	 * Returns the UAA client created by {@link #getUaa()} or {@code null} if it hasn't been created yet.
+	 */
+	private DefaultUaa currentUaa() {
+		final CompletableFuture<Uaa> uaa = this.uaa.get();
+		return uaa != null && uaa.isDone() && !uaa.isCompletedExceptionally() ? (DefaultUaa) uaa.join() : null;
+	}
+
+	private void refreshInfo() {
+		final Info refreshed = fetchInfo();
+		final CompletableFuture<Info> previous = info.getAndSet(CompletableFuture.completedFuture(refreshed));
+		final Info previousInfo = previous == null ? null : previous.getNow(null);
+		if (previousInfo != null && !Objects.equals(previousInfo.getAuthorizationEndpoint(), refreshed.getAuthorizationEndpoint())) {
+			LOGGER.info("UAA endpoint changed to {}", refreshed.getAuthorizationEndpoint());
+			uaa.set(null);
 		}
 	}
 
-	@Override
-	public Map<String, ApplicationInstance> getApplicationInstances(Token token, UUID applicationGuid) {
-		final JsonNode jsonNode = fetchResource(token, V2_APPS + "/" + applicationGuid.toString() + "/stats");
-		final Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
-		final Map<String, ApplicationInstance> instances = new HashMap<>();
-		while (fields.hasNext()) {
-			final Map.Entry<String, JsonNode> field = fields.next();
-			try {
-				instances.put(field.getKey(), mapper.readValue(field.getValue().traverse(), ApplicationInstance.class));
-			} catch (IOException e) {
-				throw new RuntimeException(e);
+	/**
+	 * Returns the value held by {@code reference}, fetching it if it hasn't been fetched yet. Only one caller fetches
+	 * the value, any other callers wait for that fetch to complete. Once fetched the value is returned without locking.
+	 * If the fetch fails, the failure is reported to every waiting caller and the next caller fetches again.
+	 */
+	private static <T> T singleFlight(AtomicReference<CompletableFuture<T>> reference, Supplier<T> fetch) {
+		while (true) {
+			final CompletableFuture<T> current = reference.get();
+			if (current != null) {
+				return join(current);
+			}
+			final CompletableFuture<T> fetching = new CompletableFuture<>();
+			if (reference.compareAndSet(null, fetching)) {
+				try {
+					final T value = fetch.get();
+					fetching.complete(value);
+					return value;
+				} catch (RuntimeException | Error e) {
+					reference.compareAndSet(fetching, null);
+					fetching.completeExceptionally(e);
+					throw e;
+				}
 			}
 		}
-		return instances;
 	}
-	
-	
+
+	@Override
+	public Map<String, ApplicationInstance> getApplicationInstances(Token token, UUID applicationGuid) {
+		return readInstances(fetchApplicationStats(token, applicationGuid), ApplicationInstance.class);
+	}
+
 	@Override
 	public Map<String, ApplicationInstanceStats> getApplicationInstanceStats(Token token, UUID applicationGuid) {
-		final JsonNode jsonNode = fetchResource(token, V2_APPS + "/" + applicationGuid.toString() + "/stats");
+		return readInstances(fetchApplicationStats(token, applicationGuid), ApplicationInstanceStats.class);
+	}
+
+	@Override
+	public ApplicationStats getApplicationStats(Token token, UUID applicationGuid) {
+		final JsonNode jsonNode = fetchApplicationStats(token, applicationGuid);
+		return new ApplicationStats(readInstances(jsonNode, ApplicationInstance.class), readInstances(jsonNode, ApplicationInstanceStats.class));
+	}
+
+	@Override
+	public PartialResults<UUID, Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, Collection<UUID> applicationGuids) {
+		return PartialResults.collect(applicationGuids, applicationGuid -> getApplicationInstanceStats(token, applicationGuid), executor, maxConcurrentRequests);
+	}
+
+	private JsonNode fetchApplicationStats(Token token, UUID applicationGuid) {
+		return fetchResource(token, V2_APPS + "/" + applicationGuid.toString() + "/stats");
+	}
+
+	private static <T> Map<String, T> readInstances(JsonNode jsonNode, Class<T> type) {
 		final Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
-		final Map<String, ApplicationInstanceStats> instanceStats = new HashMap<>();
+		final Map<String, T> instances = new HashMap<>();
 		while (fields.hasNext()) {
 			final Map.Entry<String, JsonNode> field = fields.next();
 			try {
-				instanceStats.put(field.getKey(), mapper.readValue(field.getValue().traverse(), ApplicationInstanceStats.class));
+				instances.put(field.getKey(), JsonCodec.read(field.getValue(), type));
 			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
 		}
-		return instanceStats;
+		return instances;
 	}
-	
-	
 
-	
-	
 	@Override
 	public Application getApplication(Token token, UUID applicationGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_APPS +"/"+ applicationGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), Application.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_APPS + "/" + applicationGuid.toString(), Application.class);
 	}
 	
 	@Override
@@ -186,11 +427,16 @@ public class DefaultCloudController implements CloudController {
 		return new RestCollection<>(iterator.getSize(), iterator);
 	}
 	
+	@Override
+	public Map<UUID, Resource<Application>> getApplications(Token token, Collection<UUID> applicationGuids) {
+		return getResourcesByGuid(token, V2_APPS, Application.class, applicationGuids);
+	}
+
 	@Override
 	public Application updateApplication(Token token, UUID applicationGuid, Application application) {
 		JsonNode jsonNode = putJsonToUri(token, application, V2_APPS, applicationGuid);
 		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), Application.class);
+			return JsonCodec.read(jsonNode.get("entity"), Application.class);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -199,14 +445,14 @@ public class DefaultCloudController implements CloudController {
 	@Override
 	public UUID createService(Token token, Service service) {
 		try {
-			final String requestString = mapper.writeValueAsString(service);
+			final String requestString = JsonCodec.write(service);
 			final HttpPost post = new HttpPost(target.resolve(V2_SERVICES));
 			post.addHeader(token.toAuthorizationHeader());
 			post.setEntity(new StringEntity(requestString, ContentType.APPLICATION_JSON));
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response, 201);
-				final JsonNode json = mapper.readTree(response.getEntity().getContent());
+				final JsonNode json = JsonCodec.readTree(response.getEntity().getContent());
 				return UUID.fromString(json.get("metadata").get("guid").asText());
 			} finally {
 				HttpClientUtils.closeQuietly(response);
@@ -245,22 +491,12 @@ public class DefaultCloudController implements CloudController {
 	
 	@Override
 	public Service getService(Token token, UUID serviceGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_SERVICES +"/"+ serviceGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), Service.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_SERVICES + "/" + serviceGuid.toString(), Service.class);
 	}
 
 	@Override
 	public ServicePlan getServicePlan(Token token, UUID servicePlanGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_SERVICE_PLANS +"/"+ servicePlanGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), ServicePlan.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_SERVICE_PLANS + "/" + servicePlanGuid.toString(), ServicePlan.class);
 	}
 	
 	@Override
@@ -281,12 +517,7 @@ public class DefaultCloudController implements CloudController {
 	
 	@Override
 	public ServiceInstance getServiceInstance(Token token, UUID instanceGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_SERVICE_INSTANCES +"/"+ instanceGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), ServiceInstance.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_SERVICE_INSTANCES + "/" + instanceGuid.toString(), ServiceInstance.class);
 	}
 	
 	@Override
@@ -303,12 +534,7 @@ public class DefaultCloudController implements CloudController {
 	
 	@Override
 	public Space getSpace(Token token, UUID spaceGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_SPACES +"/"+ spaceGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), Space.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_SPACES + "/" + spaceGuid.toString(), Space.class);
 	}
 	
 	@Override
@@ -322,6 +548,11 @@ public class DefaultCloudController implements CloudController {
 		return new RestCollection<>(iterator.getSize(), iterator);
 	}
 	
+	@Override
+	public Map<UUID, Resource<Space>> getSpaces(Token token, Collection<UUID> spaceGuids) {
+		return getResourcesByGuid(token, V2_SPACES, Space.class, spaceGuids);
+	}
+
 	@Override
 	public RestCollection<Space> getSpaces(Token token) {
 		final ResultIterator<Space> iterator = new ResultIterator<>(
@@ -416,7 +647,7 @@ public class DefaultCloudController implements CloudController {
 	public SecurityGroup updateSecurityGroup(Token token, UUID securityGroupGuid, SecurityGroup securityGroup) {
 		JsonNode jsonNode = putJsonToUri(token, securityGroup, V2_SECURITY_GROUPS, securityGroupGuid);
         try {
-            return mapper.readValue(jsonNode.get("entity").traverse(), SecurityGroup.class);
+            return JsonCodec.read(jsonNode.get("entity"), SecurityGroup.class);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -426,7 +657,7 @@ public class DefaultCloudController implements CloudController {
 	public SecurityGroup bindSecurityGroup(Token token, UUID securityGroupGuid, UUID spaceGuid) {
 		JsonNode jsonNode = putUri(token, null, V2_SECURITY_GROUPS + "/" + securityGroupGuid + "/spaces", spaceGuid, false);
 		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), SecurityGroup.class);
+			return JsonCodec.read(jsonNode.get("entity"), SecurityGroup.class);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -450,12 +681,7 @@ public class DefaultCloudController implements CloudController {
 
 	@Override
 	public Organization getOrganization(Token token, UUID organizationGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_ORGANIZATIONS +"/"+ organizationGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), Organization.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_ORGANIZATIONS + "/" + organizationGuid.toString(), Organization.class);
 	}
 	
 	@Override
@@ -486,6 +712,23 @@ public class DefaultCloudController implements CloudController {
 		return new RestCollection<>(iterator.getSize(), iterator);
 	}
 	
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		final ResultIterator<ServiceInstance> iterator = new ResultIterator<>(
+				token,
+				V2_SERVICE_INSTANCES,
+				ServiceInstance.class,
+				queryAttribute,
+				queryValue,
+				inlineRelations);
+		return new RestCollection<>(iterator.getSize(), iterator);
+	}
+
+	@Override
+	public Map<UUID, Resource<ServiceInstance>> getServiceInstances(Token token, Collection<UUID> instanceGuids) {
+		return getResourcesByGuid(token, V2_SERVICE_INSTANCES, ServiceInstance.class, instanceGuids);
+	}
+
 	@Override
 	public RestCollection<ServiceBinding> getServiceBindings(Token token) {
 		return getServiceBindings(token, null, null);
@@ -502,14 +745,26 @@ public class DefaultCloudController implements CloudController {
 		return new RestCollection<>(iterator.getSize(), iterator);
 	}
 	
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		final ResultIterator<ServiceBinding> iterator = new ResultIterator<>(
+				token,
+				V2_SERVICE_BINDINGS,
+				ServiceBinding.class,
+				queryAttribute,
+				queryValue,
+				inlineRelations);
+		return new RestCollection<>(iterator.getSize(), iterator);
+	}
+
+	@Override
+	public Map<UUID, Resource<ServiceBinding>> getServiceBindings(Token token, Collection<UUID> serviceBindingGuids) {
+		return getResourcesByGuid(token, V2_SERVICE_BINDINGS, ServiceBinding.class, serviceBindingGuids);
+	}
+
 	@Override
 	public ServiceBinding getServiceBinding(Token token, UUID serviceBindingGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_SERVICE_BINDINGS +"/"+ serviceBindingGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), ServiceBinding.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_SERVICE_BINDINGS + "/" + serviceBindingGuid.toString(), ServiceBinding.class);
 	}
 	
 	@Override
@@ -542,7 +797,7 @@ public class DefaultCloudController implements CloudController {
 	public Service updateService(Token token, UUID serviceGuid, Service service) {
 		JsonNode jsonNode = putJsonToUri(token, service, V2_SERVICES, serviceGuid);
 		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), Service.class);
+			return JsonCodec.read(jsonNode.get("entity"), Service.class);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -557,7 +812,7 @@ public class DefaultCloudController implements CloudController {
 	public ServicePlan updateServicePlan(Token token, UUID servicePlanGuid, ServicePlan service) {
 		JsonNode jsonNode = putJsonToUri(token, service, V2_SERVICE_PLANS, servicePlanGuid);
 		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), ServicePlan.class);
+			return JsonCodec.read(jsonNode.get("entity"), ServicePlan.class);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -586,13 +841,13 @@ public class DefaultCloudController implements CloudController {
 
 	@Override
 	public UUID createServiceInstance(Token token, String name, UUID planGuid, UUID spaceGuid) {
-		return createServiceInstance(token, name, planGuid, spaceGuid, mapper.createObjectNode());
+		return createServiceInstance(token, name, planGuid, spaceGuid, JsonCodec.createObjectNode());
 	}
 
 	@Override
 	public UUID createServiceInstance(Token token, String name, UUID planGuid, UUID spaceGuid, ObjectNode params) {
 		try {
-			final ObjectNode json = mapper.createObjectNode();
+			final ObjectNode json = JsonCodec.createObjectNode();
 			json.put("name", name);
 			json.put("service_plan_guid", planGuid.toString());
 			json.put("space_guid", spaceGuid.toString());
@@ -600,10 +855,10 @@ public class DefaultCloudController implements CloudController {
 			final HttpPost post = new HttpPost(target.resolve(V2_SERVICE_INSTANCES));
 			post.addHeader(token.toAuthorizationHeader());
 			post.setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON));
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response, 201);
-				final JsonNode jsonResponse = mapper.readTree(response.getEntity().getContent());
+				final JsonNode jsonResponse = JsonCodec.readTree(response.getEntity().getContent());
 				return UUID.fromString(jsonResponse.get("metadata").get("guid").asText());
 			} finally {
 				HttpClientUtils.closeQuietly(response);
@@ -615,17 +870,12 @@ public class DefaultCloudController implements CloudController {
 
 	@Override
 	public User getUser(Token token, UUID userId) {
-		JsonNode jsonNode = fetchResource(token, V2_USERS + "/" + userId);
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), User.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_USERS + "/" + userId, User.class);
 	}
 
 	@Override
 	public UUID createUser(Token token, UUID uaaUserGuid) {
-		final ObjectNode json = mapper.createObjectNode();
+		final ObjectNode json = JsonCodec.createObjectNode();
 		json.put("guid", uaaUserGuid.toString());
 
 		return postJsonToUri(token, json, V2_USERS);
@@ -633,7 +883,7 @@ public class DefaultCloudController implements CloudController {
 
 	@Override
 	public UUID createUserProvidedServiceInstance(Token token, String name, UUID spaceGuid, ObjectNode params) {
-		final ObjectNode json = mapper.createObjectNode();
+		final ObjectNode json = JsonCodec.createObjectNode();
 		json.put("name", name);
 		json.put("space_guid", spaceGuid.toString());
 		json.put("credentials", params);
@@ -643,10 +893,10 @@ public class DefaultCloudController implements CloudController {
 
 		try {
 			post.setEntity(new StringEntity(json.toString(), ContentType.APPLICATION_JSON));
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response, 201);
-				final JsonNode jsonResponse = mapper.readTree(response.getEntity().getContent());
+				final JsonNode jsonResponse = JsonCodec.readTree(response.getEntity().getContent());
 				return UUID.fromString(jsonResponse.get("metadata").get("guid").asText());
 			} finally {
 				HttpClientUtils.closeQuietly(response);
@@ -660,7 +910,7 @@ public class DefaultCloudController implements CloudController {
 	public ServiceInstance updateServiceInstance(Token token, UUID serviceInstanceGuid, ServiceInstance serviceInstance) {
 		JsonNode jsonNode = putJsonToUri(token, serviceInstance, V2_SERVICE_INSTANCES, serviceInstanceGuid);
 		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), ServiceInstance.class);
+			return JsonCodec.read(jsonNode.get("entity"), ServiceInstance.class);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -689,12 +939,7 @@ public class DefaultCloudController implements CloudController {
 	
 	@Override
 	public PrivateDomain getPrivateDomain(Token token, UUID privateDomainGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_PRIVATE_DOMAINS +"/"+ privateDomainGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), PrivateDomain.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_PRIVATE_DOMAINS + "/" + privateDomainGuid.toString(), PrivateDomain.class);
 	}
 	
 	@Override
@@ -710,12 +955,7 @@ public class DefaultCloudController implements CloudController {
 	
 	@Override
 	public SharedDomain getSharedDomain(Token token, UUID sharedDomainGuid) {
-		JsonNode jsonNode = fetchResource(token, V2_SHARED_DOMAINS +"/"+ sharedDomainGuid.toString());
-		try {
-			return mapper.readValue(jsonNode.get("entity").traverse(), SharedDomain.class);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return fetchEntity(token, V2_SHARED_DOMAINS + "/" + sharedDomainGuid.toString(), SharedDomain.class);
 	}
 
 	@Override
@@ -751,6 +991,18 @@ public class DefaultCloudController implements CloudController {
 		return new RestCollection<>(iterator.getSize(), iterator);
 	}
 
+	@Override
+	public RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		final ResultIterator<Route> iterator = new ResultIterator<>(
+				token,
+				V2_ROUTES,
+				Route.class,
+				queryAttribute,
+				queryValue,
+				inlineRelations);
+		return new RestCollection<>(iterator.getSize(), iterator);
+	}
+
 	@Override
 	public RestCollection<Route> getRoutesForApp(Token token, UUID appGuid) {
 		final ResultIterator<Route> iterator = new ResultIterator<>(
@@ -820,19 +1072,39 @@ public class DefaultCloudController implements CloudController {
 				null);
 		return new RestCollection<>(iterator.getSize(), iterator);
 	}
+
+	@Override
+	public StreamingRestCollection<Event> streamEvents(Token token) {
+		return streamEvents(token, V2_EVENTS);
+	}
+
+	@Override
+	public StreamingRestCollection<Event> streamEvents(Token token, String url) {
+		return new StreamingRestCollection<>(url, () -> new StreamingResultIterator<>(token, url, Event.class));
+	}
+
+	@Override
+	public StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token) {
+		return streamAppUsageEvents(token, V2_APP_USAGE_EVENTS);
+	}
+
+	@Override
+	public StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token, String url) {
+		return new StreamingRestCollection<>(url, () -> new StreamingResultIterator<>(token, url, AppUsageEvent.class));
+	}
 	
 	
 
 	private UUID postJsonToUri(Token token, Object json, String uri) {
 		try {
-			final String requestString = mapper.writeValueAsString(json);
+			final String requestString = JsonCodec.write(json);
 			final HttpPost post = new HttpPost(target.resolve(uri));
 			post.addHeader(token.toAuthorizationHeader());
 			post.setEntity(new StringEntity(requestString, ContentType.APPLICATION_JSON));
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response, 201);
-				final JsonNode responseJson = mapper.readTree(response.getEntity().getContent());
+				final JsonNode responseJson = JsonCodec.readTree(response.getEntity().getContent());
 				return UUID.fromString(responseJson.get("metadata").get("guid").asText());
 			} finally {
 				HttpClientUtils.closeQuietly(response);
@@ -851,13 +1123,13 @@ public class DefaultCloudController implements CloudController {
 			final HttpPut put = new HttpPut(target.resolve(uri+"/"+ guid.toString()));
 			put.addHeader(token.toAuthorizationHeader());
 			if (sendJson) {
-				final String requestString = mapper.writeValueAsString(json);
+				final String requestString = JsonCodec.write(json);
 				put.setEntity(new StringEntity(requestString, ContentType.APPLICATION_JSON));
 			}
-			final HttpResponse response = httpClient.execute(put);
+			final HttpResponse response = execute(put);
 			try {
 				validateResponse(response, 201);
-				return mapper.readTree(response.getEntity().getContent());
+				return JsonCodec.readTree(response.getEntity().getContent());
 			} finally {
 				HttpClientUtils.closeQuietly(response);
 			}
@@ -870,7 +1142,7 @@ public class DefaultCloudController implements CloudController {
 		try {
 			final HttpDelete delete = new HttpDelete(target.resolve(uri));
 			delete.addHeader(token.toAuthorizationHeader());
-			final HttpResponse response = httpClient.execute(delete);
+			final HttpResponse response = execute(delete);
 			try {
 				validateResponse(response, 204);
 			} finally {
@@ -881,16 +1153,25 @@ public class DefaultCloudController implements CloudController {
 		}
 	}
 
-	private void fetchInfo() {
+	private HttpResponse execute(HttpUriRequest request) throws IOException {
+		final RateLimiter rateLimiter = this.rateLimiter;
+		if (rateLimiter != null) {
+			rateLimiter.acquire();
+		}
+		if (contentCompression) {
+			ContentCompression.acceptCompressed(request);
+		}
+		return ContentCompression.decompress(InstrumentedRequests.execute(httpClient, request, requestMetrics), compressionStatistics);
+	}
+
+	private Info fetchInfo() {
 		try {
 			final HttpGet get = new HttpGet(target.resolve("/v2/info"));
 			// TODO Standardize on error handling
 			// TODO Throw exception if non version 2 Cloud Controller
-			final HttpResponse response = httpClient.execute(get);
+			final HttpResponse response = execute(get);
 			try {
-				synchronized (lock) {
-					info = mapper.readValue(response.getEntity().getContent(), Info.class);
-				}
+				return JsonCodec.read(response.getEntity().getContent(), Info.class);
 			} finally {
 				HttpClientUtils.closeQuietly(response);
 			}
@@ -899,15 +1180,138 @@ public class DefaultCloudController implements CloudController {
 		}
 	}
 
-	private JsonNode fetchResource(Token token, String uri) {
+	/**
+	 * Looks up resources by guid using {@code q=guid IN ...} queries. The guids are split into chunks that keep each
+	 * query URI under {@link #MAX_GUID_QUERY_LENGTH} characters and the chunks are queried concurrently.
+	 */
+	private <T> Map<UUID, Resource<T>> getResourcesByGuid(Token token, String uri, Class<T> type, Collection<UUID> guids) {
+		final List<String> queries = new ArrayList<>();
+		final StringBuilder query = new StringBuilder();
+		for (UUID guid : new LinkedHashSet<>(guids)) {
+			if (query.length() > 0 && query.length() + GUID_LENGTH + 1 > MAX_GUID_QUERY_LENGTH) {
+				queries.add(query.toString());
+				query.setLength(0);
+			}
+			query.append(query.length() == 0 ? uri + "?q=guid%20IN%20" : ",").append(guid);
+		}
+		if (query.length() > 0) {
+			queries.add(query.toString());
+		}
+		final List<List<Resource<T>>> chunks = invokeAll(queries, chunkUri -> {
+			// Pages are fetched on this thread, rather than the executor, so chunks never wait on each other.
+			final ResultIterator<T> iterator = new ResultIterator<>(token, chunkUri, type, null);
+			final List<Resource<T>> resources = new ArrayList<>();
+			while (iterator.hasNext()) {
+				resources.add(iterator.next());
+			}
+			return resources;
+		});
+		final Map<UUID, Resource<T>> resources = new LinkedHashMap<>();
+		for (List<Resource<T>> chunk : chunks) {
+			for (Resource<T> resource : chunk) {
+				resources.put(resource.getGuid(), resource);
+			}
+		}
+		return resources;
+	}
+
+	private ValidatedResource getValidatedResource(URI uri) {
+		final Map<URI, ValidatedResource> validatedResources = this.validatedResources;
+		if (validatedResources == null) {
+			return null;
+		}
+		synchronized (validatedResources) {
+			return validatedResources.get(uri);
+		}
+	}
+
+	private void putValidatedResource(URI uri, HttpResponse response, JsonNode json, Object bindingKey, Object bound) {
+		final Map<URI, ValidatedResource> validatedResources = this.validatedResources;
+		if (validatedResources == null) {
+			return;
+		}
+		final Header entityTag = response.getFirstHeader(HttpHeaders.ETAG);
+		final Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+		synchronized (validatedResources) {
+			if (entityTag == null && lastModified == null) {
+				validatedResources.remove(uri);
+			} else {
+				final ValidatedResource resource = new ValidatedResource(
+						entityTag == null ? null : entityTag.getValue(),
+						lastModified == null ? null : lastModified.getValue(),
+						json);
+				resource.bindings.put(bindingKey, bound);
+				validatedResources.put(uri, resource);
+			}
+		}
+	}
+
+	private <T> ResourceDecoder.Page<T> fetchPage(Token token, String uri, Class<T> type, ResourceDecoder decoder) {
 		LOGGER.debug("GET {}", uri);
 		try {
 			final HttpGet httpGet = new HttpGet(target.resolve(uri));
 			httpGet.setHeader(token.toAuthorizationHeader());
-			final HttpResponse response = httpClient.execute(httpGet);
+			final HttpResponse response = execute(httpGet);
+			try {
+				validateResponse(response, 200);
+				return decoder.readPage(response.getEntity().getContent(), type);
+			} finally {
+				HttpClientUtils.closeQuietly(response);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private <T> T fetchEntity(Token token, String uri, Class<T> type) {
+		return fetchResource(token, uri, type, json -> {
+			try {
+				return JsonCodec.read(json.get("entity"), type);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	/**
+	 * Fetches a single resource. The returned tree may be shared with other callers and must not be modified.
+	 */
+	private JsonNode fetchResource(Token token, String uri) {
+		return fetchResource(token, uri, JsonNode.class, Function.identity());
+	}
+
+	/**
+	 * Fetches a single resource and binds it. With conditional requests enabled the bound value is remembered along
+	 * with the response's validators under {@code bindingKey}, so a {@code 304 Not Modified} returns the value bound
+	 * by an earlier request rather than binding the response again.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T fetchResource(Token token, String uri, Object bindingKey, Function<JsonNode, T> binding) {
+		LOGGER.debug("GET {}", uri);
+		try {
+			final URI resourceUri = target.resolve(uri);
+			final HttpGet httpGet = new HttpGet(resourceUri);
+			httpGet.setHeader(token.toAuthorizationHeader());
+			final ValidatedResource cached = getValidatedResource(resourceUri);
+			if (cached != null) {
+				if (cached.entityTag != null) {
+					httpGet.setHeader(HttpHeaders.IF_NONE_MATCH, cached.entityTag);
+				}
+				if (cached.lastModified != null) {
+					httpGet.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified);
+				}
+			}
+			final HttpResponse response = execute(httpGet);
 			try {
+				if (cached != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+					LOGGER.debug("GET {} not modified", uri);
+					return (T) cached.bindings.computeIfAbsent(bindingKey, key -> binding.apply(cached.json));
+				}
 				validateResponse(response, 200);
-				return mapper.readTree(response.getEntity().getContent());
+				final JsonNode json = JsonCodec.readTree(response.getEntity().getContent());
+				final T bound = binding.apply(json);
+				putValidatedResource(resourceUri, response, json, bindingKey, bound);
+				return bound;
 			} finally {
 				HttpClientUtils.closeQuietly(response);
 			}
@@ -916,100 +1320,270 @@ public class DefaultCloudController implements CloudController {
 		}
 	}
 	
-	private class ResultIterator<T> implements Iterator<Resource<T>> {
+	/**
+	 * Applies {@code task} to each input on this controller's executor, see
+	 * {@link #invokeAll(Collection, Function, Executor, int)}.
+	 */
+	private <I, R> List<R> invokeAll(Collection<I> inputs, Function<I, R> task) {
+		return invokeAll(inputs, task, executor, maxConcurrentRequests);
+	}
+
+	/**
+	 * Applies {@code task} to each input on {@code executor}, running at most {@code limit} tasks at a time, and returns
+	 * the results in the order of the inputs. Runs the tasks on the calling thread if there's no executor. Tasks keep
+	 * the {@link RateLimiter} priority of the calling thread and must not wait on other tasks submitted to the
+	 * executor.
+	 */
+	static <I, R> List<R> invokeAll(Collection<I> inputs, Function<I, R> task, Executor executor, int limit) {
+		final List<R> results = new ArrayList<>(inputs.size());
+		if (executor == null || limit < 2 || inputs.size() < 2) {
+			for (I input : inputs) {
+				results.add(task.apply(input));
+			}
+			return results;
+		}
+		final RateLimiter.Priority priority = RateLimiter.currentPriority();
+		final Deque<CompletableFuture<R>> inFlight = new ArrayDeque<>();
+		final Iterator<I> iterator = inputs.iterator();
+		try {
+			while (iterator.hasNext() || !inFlight.isEmpty()) {
+				while (iterator.hasNext() && inFlight.size() < limit) {
+					final I input = iterator.next();
+					inFlight.add(CompletableFuture.supplyAsync(() -> RateLimiter.withPriority(priority, () -> task.apply(input)), executor));
+				}
+				results.add(join(inFlight.poll()));
+			}
+		} finally {
+			for (CompletableFuture<R> future : inFlight) {
+				future.cancel(false);
+			}
+		}
+		return results;
+	}
 
-		private ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
-			@Override
-			protected SimpleDateFormat initialValue() {
-				return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z");
+	private static String queryUri(String uri, QueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		final StringBuilder query = new StringBuilder(uri);
+		if (queryAttribute != null) {
+			query.append("?q=").append(queryAttribute).append(':').append(queryValue);
+		}
+		if (inlineRelations != null) {
+			query.append(queryAttribute == null ? '?' : '&').append(inlineRelations.toQueryString());
+		}
+		return query.toString();
+	}
+
+	static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
-		};
+			throw e;
+		}
+	}
+
+	/**
+	 * A previously fetched resource along with the validators needed to make a conditional request for it and the
+	 * values it has been bound to, keyed by the type they were bound to.
+	 */
+	private static class ValidatedResource {
+		private final String entityTag;
+		private final String lastModified;
+		private final JsonNode json;
+		private final ConcurrentMap<Object, Object> bindings = new ConcurrentHashMap<>();
+
+		private ValidatedResource(String entityTag, String lastModified, JsonNode json) {
+			this.entityTag = entityTag;
+			this.lastModified = lastModified;
+			this.json = json;
+		}
+	}
+
+	private class ResultIterator<T> implements Iterator<Resource<T>> {
 
 		private final Token token;
 
 		private final int size;
 
 		private final Class<T> type;
-
+		private final ResourceDecoder pageDecoder;
+		private final RateLimiter.Priority priority = RateLimiter.currentPriority();
+		private final String endpoint;
+		private final RequestMetrics metrics = requestMetrics;
+
+		private final Executor executor;
+		private final int maxBufferedPages;
+
+		// Pages that have been requested in the background but not yet consumed, in page order. Access to the
+		// following fields needs to be done holding this iterator's monitor.
+		private final Deque<CompletableFuture<ResourceDecoder.Page<T>>> prefetchedPages = new ArrayDeque<>();
+		private boolean fetching;
 		private String nextUri;
+		// The URIs of the pages not yet requested when fetching pages in parallel, null otherwise.
+		private Deque<String> pageUris;
+
 		private Iterator<Resource<T>> iterator;
+		// The number of pages consumed, reported to the request metrics once the result has been exhausted.
+		private int pages = 1;
 
 		private ResultIterator(Token token, String uri, Class<T> type, QueryAttribute queryAttribute, String queryValue) {
-			this.type = type;
-
-			this.token = token;
-			if (queryAttribute != null) {
-				uri += "?q=" + queryAttribute + ":" + queryValue;
-			}
-			final JsonNode jsonNode = fetchResource(token, uri);
-
-			size = jsonNode.get("total_results").asInt();
+			this(token, uri, type, queryAttribute, queryValue, null);
+		}
 
-			final JsonNode nextUrlNode = jsonNode.get("next_url");
-			nextUri = nextUrlNode.isNull() ? null : nextUrlNode.asText();
+		private ResultIterator(Token token, String uri, Class<T> type, QueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+			this(inlineRelations == null ? decoder : relationsDecoder,
+					DefaultCloudController.this.executor,
+					token,
+					queryUri(uri, queryAttribute, queryValue, inlineRelations),
+					type);
+		}
 
-			parseResources((ArrayNode)jsonNode.get("resources"));
+		/**
+		 * @param executor the executor used to fetch pages in the background, {@code null} to fetch every page on the
+		 *                 iterating thread.
+		 */
+		private ResultIterator(Token token, String uri, Class<T> type, Executor executor) {
+			this(decoder, executor, token, uri, type);
 		}
 
-		private ResultIterator(Class<T> type, ArrayNode jsonNode) {
+		private ResultIterator(ResourceDecoder pageDecoder, Executor executor, Token token, String uri, Class<T> type) {
 			this.type = type;
+			this.pageDecoder = pageDecoder;
+			this.endpoint = InstrumentedRequests.endpointTemplate(uri);
 
-			this.token = null;
+			this.token = token;
+			this.executor = executor;
+			final boolean parallel = executor != null && parallelPaging;
+			if (executor == null) {
+				maxBufferedPages = 0;
+			} else {
+				maxBufferedPages = parallel ? maxConcurrentRequests : prefetchDepth;
+			}
 
-			this.size = jsonNode.size();
+			final ResourceDecoder.Page<T> page = fetchPage(token, uri, type, pageDecoder);
 
-			parseResources(jsonNode);
+			size = page.getTotalResults();
+
+			synchronized (this) {
+				nextUri = page.getNextUri();
+				if (parallel) {
+					pageUris = pageUris(page);
+				}
+			}
+			prefetch();
+
+			iterator = page.getResources().iterator();
 		}
 
-		private void parseResources(ArrayNode resourcesJsonNode) {
-			final Iterator<JsonNode> resourceNodeIterator = resourcesJsonNode.elements();
-			final ArrayList<Resource<T>> resources = new ArrayList<>();
-			while (resourceNodeIterator.hasNext()) {
-				final JsonNode node = resourceNodeIterator.next();
-				final JsonNode metadata = node.get("metadata");
-				final String guid = metadata.get("guid").asText();
-				final URI uri = URI.create(metadata.get("url").asText());
-				Date created;
-				try {
-					DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssX");					
-					ZonedDateTime dateTime = ZonedDateTime.parse(metadata.get("created_at").asText(), formatter);					
-					created = Date.from(dateTime.toInstant());
-					
-				} catch (Exception e) {
-					created = null;
+		public boolean fetchNextPage() {
+			if (pages < 0) {
+				return false;
+			}
+			final ResourceDecoder.Page<T> page;
+			if (maxBufferedPages > 0) {
+				final CompletableFuture<ResourceDecoder.Page<T>> prefetchedPage;
+				synchronized (this) {
+					// A fetched page only publishes its next_url once its completion callback has run, which may be after
+					// the page itself was handed out. The buffer being empty therefore only means the results are
+					// exhausted when no page is in flight and no further page URI is known.
+					while (prefetchedPages.isEmpty() && (pageUris == null ? fetching || nextUri != null : !pageUris.isEmpty())) {
+						if (fetching) {
+							try {
+								wait();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								throw new RuntimeException(e);
+							}
+						} else {
+							prefetch();
+						}
+					}
+					prefetchedPage = prefetchedPages.poll();
 				}
-				Date updated;
-				if(metadata.get("updated_at")==null) {
-					updated=null;
-				}else {
-				final String updatedAt = metadata.get("updated_at").asText();
-				try {
-					updated = updatedAt == null ? null : dateFormat.get().parse(updatedAt);
-				} catch (ParseException e) {
-					updated = null;
+				if (prefetchedPage == null) {
+					return exhausted();
 				}
+				prefetch();
+				page = join(prefetchedPage);
+			} else {
+				final String uri;
+				synchronized (this) {
+					uri = nextUri;
 				}
-				
-				final T entity;
-				try {
-					entity = mapper.readValue(node.get("entity").traverse(), type);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
+				if (uri == null) {
+					return exhausted();
+				}
+				page = fetchPage(token, uri, type, pageDecoder);
+				synchronized (this) {
+					nextUri = page.getNextUri();
 				}
-				resources.add(new Resource<>(entity, guid, uri, created, updated));
 			}
-			iterator = resources.iterator();
+			iterator = page.getResources().iterator();
+			pages++;
+			return true;
 		}
 
-		public boolean fetchNextPage() {
-			if (nextUri == null) {
-				return false;
+		private boolean exhausted() {
+			if (metrics != null) {
+				metrics.pagesFetched(endpoint, pages);
 			}
-			final JsonNode jsonNode = fetchResource(token, nextUri);
-			final JsonNode nextUrlNode = jsonNode.get("next_url");
-			nextUri = nextUrlNode.isNull() ? null : nextUrlNode.asText();
-			parseResources((ArrayNode)jsonNode.get("resources"));
-			return true;
+			pages = -1;
+			return false;
+		}
+
+		/**
+		 * Requests pages in the background while there is room in the prefetch buffer. When fetching pages in parallel
+		 * every page URI is known up front so several pages may be in flight at once. Otherwise the URI of a page is only
+		 * known once the previous page has arrived so at most one page is in flight at a time; each completed page
+		 * schedules the one after it until {@link #maxBufferedPages} pages are buffered.
+		 */
+		private synchronized void prefetch() {
+			if (pageUris != null) {
+				while (!pageUris.isEmpty() && prefetchedPages.size() < maxBufferedPages) {
+					final String uri = pageUris.poll();
+					prefetchedPages.add(CompletableFuture.supplyAsync(() -> RateLimiter.withPriority(priority, () -> fetchPage(token, uri, type, pageDecoder)), executor));
+				}
+				return;
+			}
+			if (fetching || nextUri == null || prefetchedPages.size() >= maxBufferedPages) {
+				return;
+			}
+			final String uri = nextUri;
+			nextUri = null;
+			fetching = true;
+			final CompletableFuture<ResourceDecoder.Page<T>> page = CompletableFuture.supplyAsync(() -> RateLimiter.withPriority(priority, () -> fetchPage(token, uri, type, pageDecoder)), executor);
+			prefetchedPages.add(page);
+			page.whenComplete((fetchedPage, throwable) -> {
+				synchronized (this) {
+					fetching = false;
+					if (fetchedPage != null) {
+						nextUri = fetchedPage.getNextUri();
+					}
+					notifyAll();
+				}
+				prefetch();
+			});
+		}
+
+		/**
+		 * Builds the URIs of pages 2 through {@code total_pages} from the first page's {@code next_url}. Returns null,
+		 * falling back to following {@code next_url}, if the response doesn't provide what's needed.
+		 */
+		private Deque<String> pageUris(ResourceDecoder.Page<T> page) {
+			final String nextUri = page.getNextUri();
+			if (nextUri == null || page.getTotalPages() == null) {
+				return null;
+			}
+			final Matcher matcher = PAGE_PARAMETER.matcher(nextUri);
+			if (!matcher.find()) {
+				return null;
+			}
+			final Deque<String> uris = new ArrayDeque<>();
+			for (int pageNumber = 2; pageNumber <= page.getTotalPages(); pageNumber++) {
+				uris.add(nextUri.substring(0, matcher.start()) + matcher.group(1) + pageNumber + nextUri.substring(matcher.end()));
+			}
+			return uris;
 		}
 
 		@Override
@@ -1039,4 +1613,127 @@ public class DefaultCloudController implements CloudController {
 		}
 
 	}
+
+	/**
+	 * Iterates over a result by decoding one resource at a time off the response of the current page. The response is
+	 * held open until the page has been consumed, at which point the page found in {@code next_url} is requested.
+	 */
+	private class StreamingResultIterator<T> implements StreamingRestCollection.ResourceIterator<T> {
+
+		private final Token token;
+		private final Class<T> type;
+
+		private final ResourceDecoder.PageFields pageFields = new ResourceDecoder.PageFields();
+		private final int totalResults;
+
+		private HttpGet request;
+		private HttpResponse response;
+		private JsonParser parser;
+
+		private Resource<T> next;
+
+		private StreamingResultIterator(Token token, String uri, Class<T> type) {
+			this.token = token;
+			this.type = type;
+			open(uri);
+			totalResults = pageFields.totalResults;
+		}
+
+		private void open(String uri) {
+			LOGGER.debug("GET {}", uri);
+			pageFields.nextUri = null;
+			try {
+				request = new HttpGet(target.resolve(uri));
+				request.setHeader(token.toAuthorizationHeader());
+				response = execute(request);
+				validateResponse(response, 200);
+				parser = decoder.createParser(response.getEntity().getContent());
+				if (!decoder.readPageFields(parser, pageFields)) {
+					// The page has no resources.
+					finishPage();
+				}
+			} catch (IOException | RuntimeException e) {
+				close();
+				throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Reads any fields following the resources of the current page and releases the page's connection.
+		 */
+		private void finishPage() throws IOException {
+			while (decoder.readPageFields(parser, pageFields)) {
+				parser.skipChildren();
+			}
+			parser.close();
+			parser = null;
+			HttpClientUtils.closeQuietly(response);
+			response = null;
+			request = null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next != null) {
+				return true;
+			}
+			try {
+				while (parser != null || pageFields.nextUri != null) {
+					if (parser == null) {
+						open(pageFields.nextUri);
+						continue;
+					}
+					if (parser.nextToken() == JsonToken.START_OBJECT) {
+						next = decoder.readResource(parser, type);
+						return true;
+					}
+					finishPage();
+				}
+				return false;
+			} catch (IOException | RuntimeException e) {
+				close();
+				throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public Resource<T> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Resource<T> resource = next;
+			next = null;
+			return resource;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int getTotalResults() {
+			return totalResults;
+		}
+
+		@Override
+		public void close() {
+			pageFields.nextUri = null;
+			if (request != null) {
+				// Abort rather than consume the rest of the response.
+				request.abort();
+				request = null;
+			}
+			if (parser != null) {
+				try {
+					parser.close();
+				} catch (IOException e) {
+					LOGGER.debug("Error closing JSON parser", e);
+				}
+				parser = null;
+			}
+			HttpClientUtils.closeQuietly(response);
+			response = null;
+		}
+	}
 }
@@ -19,6 +19,7 @@ package cf.client;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.util.*;
 
 import cf.client.model.UaaUser;
@@ -33,15 +34,13 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 /**
  * @author Mike Heath
  */
@@ -51,26 +50,59 @@ public class DefaultUaa implements Uaa {
 	private static final String OAUTH_TOKEN_URI = "/oauth/token";
 	private static final String USERS_URI = "/Users";
 
+	// Keeps user filter queries well under the URI length limits of UAA and any proxies in front of it.
+	private static final int MAX_USER_FILTER_LENGTH = 1800;
+
 	private static final Header ACCEPT_JSON = new BasicHeader("Accept","application/json;charset=utf-8");
 
 	private final HttpClient httpClient;
 	private final URI uaa;
 
-	private final ObjectMapper mapper;
+	private final CompressionStatistics compressionStatistics;
+
+	private volatile RequestMetrics requestMetrics;
+	private volatile boolean contentCompression = true;
 
 	public DefaultUaa(HttpClient httpClient, String uaaUri) {
 		this(httpClient, URI.create(uaaUri));
 	}
 
 	public DefaultUaa(HttpClient httpClient, URI uaa) {
+		this(httpClient, uaa, new CompressionStatistics());
+	}
+
+	DefaultUaa(HttpClient httpClient, URI uaa, CompressionStatistics compressionStatistics) {
 		if(uaa == null) {
 			throw new IllegalArgumentException("Null uaa url is invalid.");
 		}
 		this.httpClient = httpClient;
 		this.uaa = uaa;
+		this.compressionStatistics = compressionStatistics;
+	}
 
-		mapper = new ObjectMapper();
-		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	/**
+	 * Reports the latency, status code and bytes read of every request made to the UAA.
+	 *
+	 * @param requestMetrics the metrics to report to, {@code null} to disable instrumentation.
+	 */
+	public void setRequestMetrics(RequestMetrics requestMetrics) {
+		this.requestMetrics = requestMetrics;
+	}
+
+	/**
+	 * Asks for gzip or deflate compressed responses to {@code GET} requests and decompresses them as they're read.
+	 * Enabled by default.
+	 */
+	public void setContentCompression(boolean contentCompression) {
+		this.contentCompression = contentCompression;
+	}
+
+	/**
+	 * Returns the number of bytes received, and the number of bytes they decompressed to, for the responses read from
+	 * the UAA.
+	 */
+	public CompressionStatistics getCompressionStatistics() {
+		return compressionStatistics;
 	}
 
 	@Override
@@ -86,7 +118,7 @@ public class DefaultUaa implements Uaa {
 			final BasicNameValuePair nameValuePair = new BasicNameValuePair("grant_type", "client_credentials");
 			post.setEntity(new UrlEncodedFormEntity(Arrays.asList(nameValuePair)));
 
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response);
 				final HttpEntity entity = response.getEntity();
@@ -116,7 +148,7 @@ public class DefaultUaa implements Uaa {
 			final BasicNameValuePair scopePair = new BasicNameValuePair("scope", "");
 			post.setEntity(new UrlEncodedFormEntity(Arrays.asList(grantTypePair, usernamePair, passwordPair, scopePair)));
 
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response);
 				final HttpEntity entity = response.getEntity();
@@ -141,14 +173,14 @@ public class DefaultUaa implements Uaa {
 			final NameValuePair tokenValue = new BasicNameValuePair("token", token.getAccessToken());
 			post.setEntity(new UrlEncodedFormEntity(Arrays.asList(tokenType, tokenValue)));
 
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response);
 
 				final HttpEntity entity = response.getEntity();
 				final InputStream content = entity.getContent();
 
-				return mapper.readValue(content, TokenContents.class);
+				return JsonCodec.read(content, TokenContents.class);
 			} finally {
 				HttpClientUtils.closeQuietly(response);
 			}
@@ -165,15 +197,15 @@ public class DefaultUaa implements Uaa {
 			final HttpGet get = new HttpGet(usersUri);
 			get.setHeader(token.toAuthorizationHeader());
 
-			HttpResponse response = httpClient.execute(get);
+			HttpResponse response = execute(get);
 			try {
 				validateResponse(response);
-				JsonNode jsonNode = mapper.readTree(response.getEntity().getContent());
+				JsonNode jsonNode = JsonCodec.readTree(response.getEntity().getContent());
 				int totalResults = jsonNode.get("totalResults").asInt();
 
 				if (totalResults == 1) {
 					JsonNode userJson = jsonNode.get("resources").elements().next();
-					return mapper.readValue(userJson.traverse(), UaaUser.class);
+					return JsonCodec.read(userJson, UaaUser.class);
 				} else if (totalResults == 0) {
 				    return null;
 				} else {
@@ -187,6 +219,96 @@ public class DefaultUaa implements Uaa {
 		}
 	}
 
+	@Override
+	public Map<String, UaaUser> getUsers(Token token, Collection<String> usernames) {
+		// UAA matches user names case insensitively, so spellings that differ only by case share a filter and a result
+		final Map<String, List<String>> spellings = new LinkedHashMap<>();
+		for (String username : usernames) {
+			final List<String> requested = spellings.computeIfAbsent(username.toLowerCase(Locale.ENGLISH), key -> new ArrayList<>(1));
+			if (!requested.contains(username)) {
+				requested.add(username);
+			}
+		}
+		final Map<String, UaaUser> users = new LinkedHashMap<>();
+		final Map<String, List<String>> chunk = new LinkedHashMap<>();
+		int length = 0;
+		for (Map.Entry<String, List<String>> entry : spellings.entrySet()) {
+			final int filterLength = encode(userNameFilter(entry.getKey())).length() + 10;
+			if (!chunk.isEmpty() && length + filterLength > MAX_USER_FILTER_LENGTH) {
+				getUsers(token, chunk, users);
+				chunk.clear();
+				length = 0;
+			}
+			chunk.put(entry.getKey(), entry.getValue());
+			length += filterLength;
+		}
+		if (!chunk.isEmpty()) {
+			getUsers(token, chunk, users);
+		}
+		return users;
+	}
+
+	/**
+	 * Looks up a chunk of users with a single request.
+	 *
+	 * @param spellings the requested spellings of each user name keyed by the lower case user name.
+	 * @param users the map users that are found are added to, once for each requested spelling of their name.
+	 */
+	private void getUsers(Token token, Map<String, List<String>> spellings, Map<String, UaaUser> users) {
+		final StringBuilder filter = new StringBuilder();
+		for (String username : spellings.keySet()) {
+			if (filter.length() > 0) {
+				filter.append(" or ");
+			}
+			filter.append(userNameFilter(username));
+		}
+		try {
+			// Ask for more users than names so that a name held by users of several origins is noticed
+			final URI usersUri = uaa.resolve(USERS_URI + "?count=" + spellings.size() * 2 + "&filter=" + encode(filter.toString()));
+			final HttpGet get = new HttpGet(usersUri);
+			get.setHeader(token.toAuthorizationHeader());
+
+			final HttpResponse response = execute(get);
+			try {
+				validateResponse(response);
+				final JsonNode jsonNode = JsonCodec.readTree(response.getEntity().getContent());
+				final Map<String, JsonNode> found = new HashMap<>();
+				for (JsonNode userJson : jsonNode.path("resources")) {
+					final String username = userJson.path("userName").asText().toLowerCase(Locale.ENGLISH);
+					if (spellings.containsKey(username) && found.put(username, userJson) != null) {
+						throw new RuntimeException("Error retrieving users from uaa. Expected 1 user named " + username + " but found several");
+					}
+				}
+				final int totalResults = jsonNode.path("totalResults").asInt(found.size());
+				if (totalResults > found.size()) {
+					throw new RuntimeException("Error retrieving users from uaa. Expected at most 1 user per name but found " + totalResults + " users for " + spellings.size() + " names");
+				}
+				for (Map.Entry<String, JsonNode> user : found.entrySet()) {
+					final UaaUser uaaUser = JsonCodec.read(user.getValue(), UaaUser.class);
+					for (String username : spellings.get(user.getKey())) {
+						users.put(username, uaaUser);
+					}
+				}
+			} finally {
+				HttpClientUtils.closeQuietly(response);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String userNameFilter(String username) {
+		return "userName eq \"" + username.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public UUID createUser(Token token, String username, String password, String origin) {
 		Map<String, Object> email = new HashMap<>();
@@ -205,14 +327,14 @@ public class DefaultUaa implements Uaa {
 		user.put("userName", username);
 
 		try {
-			final String requestString = mapper.writeValueAsString(user);
+			final String requestString = JsonCodec.write(user);
 			final HttpPost post = new HttpPost(uaa.resolve(USERS_URI));
 			post.addHeader(token.toAuthorizationHeader());
 			post.setEntity(new StringEntity(requestString, ContentType.APPLICATION_JSON));
-			final HttpResponse response = httpClient.execute(post);
+			final HttpResponse response = execute(post);
 			try {
 				validateResponse(response, 201);
-				final JsonNode responseJson = mapper.readTree(response.getEntity().getContent());
+				final JsonNode responseJson = JsonCodec.readTree(response.getEntity().getContent());
 				return UUID.fromString(responseJson.get("id").asText());
 			} finally {
 				HttpClientUtils.closeQuietly(response);
@@ -222,6 +344,13 @@ public class DefaultUaa implements Uaa {
 		}
 	}
 
+	private HttpResponse execute(HttpUriRequest request) throws IOException {
+		if (contentCompression) {
+			ContentCompression.acceptCompressed(request);
+		}
+		return ContentCompression.decompress(InstrumentedRequests.execute(httpClient, request, requestMetrics), compressionStatistics);
+	}
+
 	private Header createClientCredentialsHeader(String client, String clientSecret) {
 		final String encoding = Base64.encodeBase64String((client + ":" + clientSecret).getBytes());
 		return new BasicHeader("Authorization", "Basic " + encoding);
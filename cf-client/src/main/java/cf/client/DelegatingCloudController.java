@@ -0,0 +1,482 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.AppUsageEvent;
+import cf.client.model.Application;
+import cf.client.model.ApplicationInstance;
+import cf.client.model.ApplicationInstanceStats;
+import cf.client.model.ApplicationStats;
+import cf.client.model.Event;
+import cf.client.model.Info;
+import cf.client.model.Organization;
+import cf.client.model.PrivateDomain;
+import cf.client.model.Route;
+import cf.client.model.SecurityGroup;
+import cf.client.model.Service;
+import cf.client.model.ServiceAuthToken;
+import cf.client.model.ServiceBinding;
+import cf.client.model.ServiceInstance;
+import cf.client.model.ServicePlan;
+import cf.client.model.SharedDomain;
+import cf.client.model.Space;
+import cf.client.model.User;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link CloudController} that forwards every call to another {@link CloudController}. Decorators that add
+ * behavior, such as caching, to a few methods extend this class and override only those methods.
+ */
+public class DelegatingCloudController implements CloudController {
+
+	private final CloudController delegate;
+
+	public DelegatingCloudController(CloudController delegate) {
+		if (delegate == null) {
+			throw new IllegalArgumentException("Delegate cloud controller can not be null.");
+		}
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Returns the cloud controller calls are forwarded to.
+	 */
+	public CloudController getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public Info getInfo() {
+		return delegate.getInfo();
+	}
+
+	@Override
+	public URI getTarget() {
+		return delegate.getTarget();
+	}
+
+	@Override
+	public Uaa getUaa() {
+		return delegate.getUaa();
+	}
+
+	@Override
+	public Map<String, ApplicationInstanceStats> getApplicationInstanceStats(Token token, UUID applicationGuid) {
+		return delegate.getApplicationInstanceStats(token, applicationGuid);
+	}
+
+	@Override
+	public Map<String, ApplicationInstance> getApplicationInstances(Token token, UUID applicationGuid) {
+		return delegate.getApplicationInstances(token, applicationGuid);
+	}
+
+	@Override
+	public ApplicationStats getApplicationStats(Token token, UUID applicationGuid) {
+		return delegate.getApplicationStats(token, applicationGuid);
+	}
+
+	@Override
+	public PartialResults<UUID, Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, Collection<UUID> applicationGuids) {
+		return delegate.getApplicationInstanceStats(token, applicationGuids);
+	}
+
+	@Override
+	public Application getApplication(Token token, UUID applicationGuid) {
+		return delegate.getApplication(token, applicationGuid);
+	}
+
+	@Override
+	public RestCollection<Application> getApplications(Token token) {
+		return delegate.getApplications(token);
+	}
+
+	@Override
+	public Map<UUID, Resource<Application>> getApplications(Token token, Collection<UUID> applicationGuids) {
+		return delegate.getApplications(token, applicationGuids);
+	}
+
+	@Override
+	public RestCollection<Application> getApplication(Token token, ApplicationQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getApplication(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public Application updateApplication(Token token, UUID applicationGuid, Application application) {
+		return delegate.updateApplication(token, applicationGuid, application);
+	}
+
+	@Override
+	public RestCollection<Event> getEvents(Token token, EventQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getEvents(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public RestCollection<Event> getEvents(Token token, String url) {
+		return delegate.getEvents(token, url);
+	}
+
+	@Override
+	public RestCollection<Event> getEvents(Token token) {
+		return delegate.getEvents(token);
+	}
+
+	@Override
+	public RestCollection<AppUsageEvent> getAppUsageEvents(Token token, String url) {
+		return delegate.getAppUsageEvents(token, url);
+	}
+
+	@Override
+	public RestCollection<AppUsageEvent> getAppUsageEvents(Token token) {
+		return delegate.getAppUsageEvents(token);
+	}
+
+	@Override
+	public StreamingRestCollection<Event> streamEvents(Token token) {
+		return delegate.streamEvents(token);
+	}
+
+	@Override
+	public StreamingRestCollection<Event> streamEvents(Token token, String url) {
+		return delegate.streamEvents(token, url);
+	}
+
+	@Override
+	public StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token) {
+		return delegate.streamAppUsageEvents(token);
+	}
+
+	@Override
+	public StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token, String url) {
+		return delegate.streamAppUsageEvents(token, url);
+	}
+
+	@Override
+	public UUID createService(Token token, Service service) {
+		return delegate.createService(token, service);
+	}
+
+	@Override
+	public RestCollection<Service> getServices(Token token) {
+		return delegate.getServices(token);
+	}
+
+	@Override
+	public RestCollection<Service> getServices(Token token, UUID servicePlanGuid) {
+		return delegate.getServices(token, servicePlanGuid);
+	}
+
+	@Override
+	public RestCollection<Service> getServices(Token token, ServiceQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getServices(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public Service getService(Token token, UUID serviceGuid) {
+		return delegate.getService(token, serviceGuid);
+	}
+
+	@Override
+	public void deleteService(Token token, UUID serviceGuid) {
+		delegate.deleteService(token, serviceGuid);
+	}
+
+	@Override
+	public Service updateService(Token token, UUID serviceGuid, Service service) {
+		return delegate.updateService(token, serviceGuid, service);
+	}
+
+	@Override
+	public ServicePlan getServicePlan(Token token, UUID servicePlanGuid) {
+		return delegate.getServicePlan(token, servicePlanGuid);
+	}
+
+	@Override
+	public RestCollection<ServicePlan> getServicePlans(Token token) {
+		return delegate.getServicePlans(token);
+	}
+
+	@Override
+	public UUID createServicePlan(Token token, ServicePlan servicePlan) {
+		return delegate.createServicePlan(token, servicePlan);
+	}
+
+	@Override
+	public ServicePlan updateServicePlan(Token token, UUID servicePlanGuid, ServicePlan servicePlan) {
+		return delegate.updateServicePlan(token, servicePlanGuid, servicePlan);
+	}
+
+	@Override
+	public RestCollection<ServicePlan> getServicePlans(Token token, ServicePlanQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getServicePlans(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public ServiceInstance getServiceInstance(Token token, UUID instanceGuid) {
+		return delegate.getServiceInstance(token, instanceGuid);
+	}
+
+	@Override
+	public RestCollection<Route> getServiceInstanceRoutes(Token token, UUID instanceGuid) {
+		return delegate.getServiceInstanceRoutes(token, instanceGuid);
+	}
+
+	@Override
+	public Space getSpace(Token token, UUID spaceGuid) {
+		return delegate.getSpace(token, spaceGuid);
+	}
+
+	@Override
+	public RestCollection<Space> getSpace(Token token, SpaceQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getSpace(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public RestCollection<Space> getSpaces(Token token) {
+		return delegate.getSpaces(token);
+	}
+
+	@Override
+	public Map<UUID, Resource<Space>> getSpaces(Token token, Collection<UUID> spaceGuids) {
+		return delegate.getSpaces(token, spaceGuids);
+	}
+
+	@Override
+	public RestCollection<User> getManagersInOrg(Token token, UUID orgGuid) {
+		return delegate.getManagersInOrg(token, orgGuid);
+	}
+
+	@Override
+	public RestCollection<User> getAuditorsInOrg(Token token, UUID orgGuid) {
+		return delegate.getAuditorsInOrg(token, orgGuid);
+	}
+
+	@Override
+	public RestCollection<User> getUsersInOrg(Token token, UUID orgGuid) {
+		return delegate.getUsersInOrg(token, orgGuid);
+	}
+
+	@Override
+	public RestCollection<User> getManagersInSpace(Token token, UUID spaceGuid) {
+		return delegate.getManagersInSpace(token, spaceGuid);
+	}
+
+	@Override
+	public RestCollection<User> getAuditorsInSpace(Token token, UUID spaceGuid) {
+		return delegate.getAuditorsInSpace(token, spaceGuid);
+	}
+
+	@Override
+	public RestCollection<User> getDevelopersInSpace(Token token, UUID spaceGuid) {
+		return delegate.getDevelopersInSpace(token, spaceGuid);
+	}
+
+	@Override
+	public RestCollection<SecurityGroup> getSecurityGroupsForSpace(Token token, UUID spaceGuid) {
+		return delegate.getSecurityGroupsForSpace(token, spaceGuid);
+	}
+
+	@Override
+	public SecurityGroup updateSecurityGroup(Token token, UUID securityGroupGuid, SecurityGroup securityGroup) {
+		return delegate.updateSecurityGroup(token, securityGroupGuid, securityGroup);
+	}
+
+	@Override
+	public SecurityGroup bindSecurityGroup(Token token, UUID securityGroupGuid, UUID spaceGuid) {
+		return delegate.bindSecurityGroup(token, securityGroupGuid, spaceGuid);
+	}
+
+	@Override
+	public void unbindSecurityGroup(Token token, UUID securityGroupGuid, UUID spaceGuid) {
+		delegate.unbindSecurityGroup(token, securityGroupGuid, spaceGuid);
+	}
+
+	@Override
+	public RestCollection<Space> getSpacesForSecurityGroup(Token token, UUID securityGroupGuid) {
+		return delegate.getSpacesForSecurityGroup(token, securityGroupGuid);
+	}
+
+	@Override
+	public Organization getOrganization(Token token, UUID organizationGuid) {
+		return delegate.getOrganization(token, organizationGuid);
+	}
+
+	@Override
+	public RestCollection<Organization> getOrganizations(Token token) {
+		return delegate.getOrganizations(token);
+	}
+
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token) {
+		return delegate.getServiceInstances(token);
+	}
+
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getServiceInstances(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return delegate.getServiceInstances(token, queryAttribute, queryValue, inlineRelations);
+	}
+
+	@Override
+	public Map<UUID, Resource<ServiceInstance>> getServiceInstances(Token token, Collection<UUID> instanceGuids) {
+		return delegate.getServiceInstances(token, instanceGuids);
+	}
+
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token) {
+		return delegate.getServiceBindings(token);
+	}
+
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getServiceBindings(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return delegate.getServiceBindings(token, queryAttribute, queryValue, inlineRelations);
+	}
+
+	@Override
+	public Map<UUID, Resource<ServiceBinding>> getServiceBindings(Token token, Collection<UUID> serviceBindingGuids) {
+		return delegate.getServiceBindings(token, serviceBindingGuids);
+	}
+
+	@Override
+	public ServiceBinding getServiceBinding(Token token, UUID serviceBindingGuid) {
+		return delegate.getServiceBinding(token, serviceBindingGuid);
+	}
+
+	@Override
+	public void deleteServiceBinding(Token token, UUID serviceBindingGuid) {
+		delegate.deleteServiceBinding(token, serviceBindingGuid);
+	}
+
+	@Override
+	public UUID createServiceBinding(Token token, UUID appGuid, UUID serviceInstanceGuid) {
+		return delegate.createServiceBinding(token, appGuid, serviceInstanceGuid);
+	}
+
+	@Override
+	public RestCollection<ServiceAuthToken> getAuthTokens(Token token) {
+		return delegate.getAuthTokens(token);
+	}
+
+	@Override
+	public UUID createAuthToken(Token token, ServiceAuthToken serviceAuthToken) {
+		return delegate.createAuthToken(token, serviceAuthToken);
+	}
+
+	@Override
+	public void deleteServiceAuthToken(Token token, UUID authTokenGuid) {
+		delegate.deleteServiceAuthToken(token, authTokenGuid);
+	}
+
+	@Override
+	public UUID createServiceInstance(Token token, String name, UUID planGuid, UUID spaceGuid) {
+		return delegate.createServiceInstance(token, name, planGuid, spaceGuid);
+	}
+
+	@Override
+	public UUID createServiceInstance(Token token, String name, UUID planGuid, UUID spaceGuid, ObjectNode params) {
+		return delegate.createServiceInstance(token, name, planGuid, spaceGuid, params);
+	}
+
+	@Override
+	public User getUser(Token token, UUID userId) {
+		return delegate.getUser(token, userId);
+	}
+
+	@Override
+	public UUID createUser(Token token, UUID uaaUserGuid) {
+		return delegate.createUser(token, uaaUserGuid);
+	}
+
+	@Override
+	public UUID createUserProvidedServiceInstance(Token token, String name, UUID spaceGuid, ObjectNode params) {
+		return delegate.createUserProvidedServiceInstance(token, name, spaceGuid, params);
+	}
+
+	@Override
+	public ServiceInstance updateServiceInstance(Token token, UUID serviceInstanceGuid, ServiceInstance serviceInstance) {
+		return delegate.updateServiceInstance(token, serviceInstanceGuid, serviceInstance);
+	}
+
+	@Override
+	public void deleteServiceInstance(Token token, UUID instanceGuid) {
+		delegate.deleteServiceInstance(token, instanceGuid);
+	}
+
+	@Override
+	public void purgeServiceInstance(Token token, UUID instanceGuid) {
+		delegate.purgeServiceInstance(token, instanceGuid);
+	}
+
+	@Override
+	public RestCollection<PrivateDomain> getPrivateDomains(Token token) {
+		return delegate.getPrivateDomains(token);
+	}
+
+	@Override
+	public PrivateDomain getPrivateDomain(Token token, UUID privateDomainGuid) {
+		return delegate.getPrivateDomain(token, privateDomainGuid);
+	}
+
+	@Override
+	public SharedDomain getSharedDomain(Token token, UUID sharedDomainGuid) {
+		return delegate.getSharedDomain(token, sharedDomainGuid);
+	}
+
+	@Override
+	public RestCollection<SharedDomain> getSharedDomains(Token token) {
+		return delegate.getSharedDomains(token);
+	}
+
+	@Override
+	public RestCollection<Route> getRoutes(Token token) {
+		return delegate.getRoutes(token);
+	}
+
+	@Override
+	public RestCollection<Route> getRoutesForApp(Token token, UUID appGuid) {
+		return delegate.getRoutesForApp(token, appGuid);
+	}
+
+	@Override
+	public RestCollection<Application> getAppsForRoute(Token token, UUID routeGuid) {
+		return delegate.getAppsForRoute(token, routeGuid);
+	}
+
+	@Override
+	public RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue) {
+		return delegate.getRoutes(token, queryAttribute, queryValue);
+	}
+
+	@Override
+	public RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return delegate.getRoutes(token, queryAttribute, queryValue, inlineRelations);
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size bounded, least recently used cache whose entries expire after a per entry time to live. Counts hits, misses
+ * and evictions so that callers can report on the cache's effectiveness.
+ */
+class ExpiringCache<K, V> {
+
+	private final int maxEntries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	// Access to the map and the generation needs to be done holding the map's monitor.
+	private final LinkedHashMap<K, Entry<V>> entries;
+	// Incremented every time entries are invalidated
+	private long generation;
+
+	ExpiringCache(int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("A cache must hold at least one entry.");
+		}
+		this.maxEntries = maxEntries;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > ExpiringCache.this.maxEntries) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached value for the key or {@code null} if there is no value or the value has expired.
+	 */
+	V get(K key) {
+		synchronized (entries) {
+			final Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (entry.expires - System.nanoTime() > 0) {
+					hits.incrementAndGet();
+					return entry.value;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	void put(K key, V value, long timeToLive, TimeUnit unit) {
+		final Entry<V> entry = new Entry<>(value, System.nanoTime() + unit.toNanos(timeToLive));
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Returns the number of times entries have been invalidated. Read it before loading a value and pass it to
+	 * {@link #putUnlessInvalidated(Object, Object, long, TimeUnit, long)} when storing the value.
+	 */
+	long generation() {
+		synchronized (entries) {
+			return generation;
+		}
+	}
+
+	/**
+	 * Caches a value unless an entry has been invalidated since {@code generation} was read, as the value may then have
+	 * been loaded before the change that caused the invalidation.
+	 */
+	void putUnlessInvalidated(K key, V value, long timeToLive, TimeUnit unit, long generation) {
+		final Entry<V> entry = new Entry<>(value, System.nanoTime() + unit.toNanos(timeToLive));
+		synchronized (entries) {
+			if (this.generation == generation) {
+				entries.put(key, entry);
+			}
+		}
+	}
+
+	void invalidate(K key) {
+		synchronized (entries) {
+			generation++;
+			entries.remove(key);
+		}
+	}
+
+	void invalidateAll() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+		}
+	}
+
+	int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	long getHits() {
+		return hits.get();
+	}
+
+	long getMisses() {
+		return misses.get();
+	}
+
+	long getEvictions() {
+		return evictions.get();
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expires;
+
+		private Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Asks the Cloud Controller to inline related resources into the results of a query, using the
+ * {@code inline-relations-depth} and {@code include-relations} query parameters, so that related resources don't have
+ * to be fetched one at a time. Inlined resources are available through {@link Resource#getRelated(String, Class)} and
+ * {@link Resource#getRelatedList(String, Class)}.
+ */
+public class InlineRelations {
+
+	private final int depth;
+	private final Set<String> include;
+
+	private InlineRelations(int depth, Set<String> include) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Inline relations depth must be at least 1");
+		}
+		this.depth = depth;
+		this.include = Collections.unmodifiableSet(include);
+	}
+
+	/**
+	 * Inlines every relation up to {@code depth} levels deep.
+	 */
+	public static InlineRelations depth(int depth) {
+		return new InlineRelations(depth, Collections.<String>emptySet());
+	}
+
+	/**
+	 * Limits the inlined relations to the named relations, such as {@code space} or {@code service_plan}.
+	 */
+	public InlineRelations include(String... relations) {
+		final Set<String> include = new LinkedHashSet<>(this.include);
+		include.addAll(Arrays.asList(relations));
+		return new InlineRelations(depth, include);
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	public Set<String> getInclude() {
+		return include;
+	}
+
+	String toQueryString() {
+		final StringBuilder query = new StringBuilder("inline-relations-depth=").append(depth);
+		if (!include.isEmpty()) {
+			query.append("&include-relations=").append(String.join(",", include));
+		}
+		return query.toString();
+	}
+}
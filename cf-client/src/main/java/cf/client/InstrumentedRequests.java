@@ -0,0 +1,110 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.regex.Pattern;
+
+/**
+ * Executes requests reporting their measurements to a {@link RequestMetrics}.
+ */
+final class InstrumentedRequests {
+
+	private static final Pattern GUID_SEGMENT = Pattern.compile("/[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}(?=/|$)");
+
+	private InstrumentedRequests() {
+	}
+
+	static HttpResponse execute(HttpClient httpClient, HttpUriRequest request, RequestMetrics metrics) throws IOException {
+		if (metrics == null) {
+			return httpClient.execute(request);
+		}
+		final String method = request.getMethod();
+		final String endpoint = endpointTemplate(request.getURI());
+		final long start = System.nanoTime();
+		final HttpResponse response;
+		try {
+			response = httpClient.execute(request);
+		} catch (IOException | RuntimeException e) {
+			metrics.requestFailed(method, endpoint, e, System.nanoTime() - start);
+			throw e;
+		}
+		metrics.requestCompleted(method, endpoint, response.getStatusLine().getStatusCode(), System.nanoTime() - start);
+		if (response.getEntity() != null) {
+			response.setEntity(new CountingEntity(response.getEntity(), metrics, method, endpoint));
+		}
+		return response;
+	}
+
+	/**
+	 * Returns the entity the HTTP client returned, before it was wrapped to count the bytes read.
+	 */
+	static HttpEntity unwrap(HttpEntity entity) {
+		return entity instanceof CountingEntity ? ((CountingEntity) entity).getWrappedEntity() : entity;
+	}
+
+	/**
+	 * Returns the path of the URI with guids replaced by {@code {guid}}.
+	 */
+	static String endpointTemplate(URI uri) {
+		final String path = uri.getRawPath();
+		return path == null ? "" : GUID_SEGMENT.matcher(path).replaceAll("/{guid}");
+	}
+
+	static String endpointTemplate(String uri) {
+		final int query = uri.indexOf('?');
+		return endpointTemplate(URI.create(query < 0 ? uri : uri.substring(0, query)));
+	}
+
+	private static class CountingEntity extends HttpEntityWrapper {
+		private final RequestMetrics metrics;
+		private final String method;
+		private final String endpoint;
+
+		// The content is requested again when the response is closed, it must only be counted once.
+		private CountingInputStream content;
+
+		private CountingEntity(HttpEntity entity, RequestMetrics metrics, String method, String endpoint) {
+			super(entity);
+			this.metrics = metrics;
+			this.method = method;
+			this.endpoint = endpoint;
+		}
+
+		HttpEntity getWrappedEntity() {
+			return wrappedEntity;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			if (content == null) {
+				final CountingInputStream counted = new CountingInputStream(super.getContent());
+				counted.onClose(() -> metrics.bytesRead(method, endpoint, counted.getBytes()));
+				content = counted;
+			}
+			return content;
+		}
+	}
+}
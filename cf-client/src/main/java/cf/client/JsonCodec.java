@@ -0,0 +1,93 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The JSON codec shared by the Cloud Controller and UAA clients. A single, pre-configured {@link ObjectMapper} is used
+ * for every request along with an {@link ObjectReader} per model class, so neither mappers nor deserializer lookups are
+ * repeated per call.
+ */
+final class JsonCodec {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+	private static final ObjectReader TREE_READER = MAPPER.reader(JsonNode.class);
+	private static final ObjectWriter WRITER = MAPPER.writer();
+
+	private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+	private JsonCodec() {
+	}
+
+	static ObjectMapper mapper() {
+		return MAPPER;
+	}
+
+	static ObjectReader reader(Class<?> type) {
+		ObjectReader reader = READERS.get(type);
+		if (reader == null) {
+			reader = MAPPER.reader(type);
+			final ObjectReader existing = READERS.putIfAbsent(type, reader);
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+
+	static <T> T read(InputStream json, Class<T> type) throws IOException {
+		return reader(type).readValue(json);
+	}
+
+	static <T> T read(JsonParser parser, Class<T> type) throws IOException {
+		return reader(type).readValue(parser);
+	}
+
+	static <T> T read(byte[] json, Class<T> type) throws IOException {
+		return reader(type).readValue(json);
+	}
+
+	static <T> T read(JsonNode json, Class<T> type) throws IOException {
+		return reader(type).readValue(json);
+	}
+
+	static JsonNode readTree(InputStream json) throws IOException {
+		return TREE_READER.readTree(json);
+	}
+
+	static String write(Object value) throws IOException {
+		return WRITER.writeValueAsString(value);
+	}
+
+	static ObjectNode createObjectNode() {
+		return MAPPER.createObjectNode();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The results of a request made for each of several resources, such as fetching the stats of many applications or
+ * deleting every binding of a tenant, where the request for one resource may fail without failing the others.
+ */
+public class PartialResults<K, V> {
+
+	private final Map<K, V> results;
+	private final Map<K, RuntimeException> errors;
+
+	public PartialResults(Map<K, V> results, Map<K, RuntimeException> errors) {
+		this.results = Collections.unmodifiableMap(results);
+		this.errors = Collections.unmodifiableMap(errors);
+	}
+
+	/**
+	 * Returns the results of the requests that succeeded.
+	 */
+	public Map<K, V> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the exception thrown by each request that failed.
+	 */
+	public Map<K, RuntimeException> getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Returns {@code true} if every request succeeded.
+	 */
+	public boolean isComplete() {
+		return errors.isEmpty();
+	}
+
+	/**
+	 * Makes a request for each distinct key in turn, recording a request that fails as the error of its key.
+	 */
+	static <K, V> PartialResults<K, V> collect(Collection<K> keys, Function<K, V> request) {
+		return collect(keys, request, null, 1);
+	}
+
+	/**
+	 * Makes a request for each distinct key on {@code executor}, at most {@code maxConcurrentRequests} at a time,
+	 * recording a request that fails as the error of its key rather than failing the other requests. The results and
+	 * errors iterate in the order of {@code keys}.
+	 */
+	static <K, V> PartialResults<K, V> collect(Collection<K> keys, Function<K, V> request, Executor executor, int maxConcurrentRequests) {
+		final List<K> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+		final Map<K, RuntimeException> failures = new ConcurrentHashMap<>();
+		final List<V> values = DefaultCloudController.invokeAll(distinctKeys, key -> {
+			try {
+				return request.apply(key);
+			} catch (RuntimeException e) {
+				failures.put(key, e);
+				return null;
+			}
+		}, executor, maxConcurrentRequests);
+		final Map<K, V> results = new LinkedHashMap<>();
+		final Map<K, RuntimeException> errors = new LinkedHashMap<>();
+		for (int i = 0; i < distinctKeys.size(); i++) {
+			final K key = distinctKeys.get(i);
+			final RuntimeException failure = failures.get(key);
+			if (failure == null) {
+				results.put(key, values.get(i));
+			} else {
+				errors.put(key, failure);
+			}
+		}
+		return new PartialResults<>(results, errors);
+	}
+
+	/**
+	 * Makes the request again for each key whose error is accepted by {@code retryable}, replacing the error with the
+	 * outcome of the new request.
+	 */
+	PartialResults<K, V> retry(Predicate<RuntimeException> retryable, Function<K, V> request) {
+		final Map<K, V> results = new LinkedHashMap<>(this.results);
+		final Map<K, RuntimeException> errors = new LinkedHashMap<>();
+		for (Map.Entry<K, RuntimeException> error : this.errors.entrySet()) {
+			final K key = error.getKey();
+			if (!retryable.test(error.getValue())) {
+				errors.put(key, error.getValue());
+				continue;
+			}
+			try {
+				results.put(key, request.apply(key));
+			} catch (RuntimeException e) {
+				errors.put(key, e);
+			}
+		}
+		return new PartialResults<>(results, errors);
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A token bucket rate limiter for Cloud Controller requests that favors interactive requests over background work.
+ *
+ * <p>All requests draw from a shared bucket that refills at {@code permitsPerSecond}, which should be kept under the
+ * Cloud Controller's per client rate limit. Background requests, such as reconciliation sweeps, must also draw from a
+ * smaller background bucket so they can never use the whole budget, and they wait while any interactive request is
+ * waiting for a permit. Requests are interactive unless they are made inside {@link #background(Supplier)}.</p>
+ */
+public class RateLimiter {
+
+	public enum Priority {
+		INTERACTIVE,
+		BACKGROUND
+	}
+
+	private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<Priority>() {
+		@Override
+		protected Priority initialValue() {
+			return Priority.INTERACTIVE;
+		}
+	};
+
+	private final Bucket bucket;
+	private final Bucket backgroundBucket;
+
+	// Access to the following field needs to be done holding this rate limiter's monitor.
+	private int interactiveWaiting;
+
+	private final AtomicLong[] throttledRequests = {new AtomicLong(), new AtomicLong()};
+	private final AtomicLong[] throttledNanos = {new AtomicLong(), new AtomicLong()};
+
+	/**
+	 * @param permitsPerSecond the rate requests are allowed at.
+	 * @param burst the number of requests that may be made at once after a quiet period.
+	 * @param backgroundPermitsPerSecond the rate background requests are allowed at, at most {@code permitsPerSecond}.
+	 * @param backgroundBurst the number of background requests that may be made at once after a quiet period.
+	 */
+	public RateLimiter(double permitsPerSecond, int burst, double backgroundPermitsPerSecond, int backgroundBurst) {
+		if (permitsPerSecond <= 0 || backgroundPermitsPerSecond <= 0) {
+			throw new IllegalArgumentException("Rates must be greater than 0");
+		}
+		this.bucket = new Bucket(permitsPerSecond, burst);
+		this.backgroundBucket = new Bucket(Math.min(permitsPerSecond, backgroundPermitsPerSecond), backgroundBurst);
+	}
+
+	/**
+	 * Runs {@code call} with every Cloud Controller request it makes on the calling thread rate limited as background
+	 * work.
+	 */
+	public static <T> T background(Supplier<T> call) {
+		return withPriority(Priority.BACKGROUND, call);
+	}
+
+	/**
+	 * Runs {@code call} with every Cloud Controller request it makes on the calling thread rate limited with the given
+	 * priority.
+	 */
+	public static <T> T withPriority(Priority priority, Supplier<T> call) {
+		final Priority previous = PRIORITY.get();
+		PRIORITY.set(priority);
+		try {
+			return call.get();
+		} finally {
+			PRIORITY.set(previous);
+		}
+	}
+
+	/**
+	 * Returns the priority of requests made on the calling thread.
+	 */
+	public static Priority currentPriority() {
+		return PRIORITY.get();
+	}
+
+	/**
+	 * Waits for a permit to make a request with the calling thread's priority.
+	 */
+	public void acquire() {
+		acquire(currentPriority());
+	}
+
+	public void acquire(Priority priority) {
+		final long start = System.nanoTime();
+		boolean throttled = false;
+		synchronized (this) {
+			final boolean interactive = priority == Priority.INTERACTIVE;
+			if (interactive) {
+				interactiveWaiting++;
+			}
+			try {
+				while (true) {
+					final long now = System.nanoTime();
+					bucket.refill(now);
+					long wait = bucket.timeToPermit();
+					if (!interactive) {
+						backgroundBucket.refill(now);
+						wait = Math.max(wait, backgroundBucket.timeToPermit());
+						if (interactiveWaiting > 0 && wait == 0) {
+							// Let the interactive requests go first, they'll notify us when they're done.
+							wait = bucket.permitInterval();
+						}
+					}
+					if (wait == 0) {
+						bucket.take();
+						if (!interactive) {
+							backgroundBucket.take();
+						}
+						break;
+					}
+					throttled = true;
+					TimeUnit.NANOSECONDS.timedWait(this, wait);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted waiting for rate limiter", e);
+			} finally {
+				if (interactive && --interactiveWaiting == 0) {
+					notifyAll();
+				}
+			}
+		}
+		if (throttled) {
+			throttledRequests[priority.ordinal()].incrementAndGet();
+			throttledNanos[priority.ordinal()].addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Returns the number of requests of the given priority that had to wait for a permit.
+	 */
+	public long getThrottledRequests(Priority priority) {
+		return throttledRequests[priority.ordinal()].get();
+	}
+
+	/**
+	 * Returns the total time requests of the given priority spent waiting for a permit.
+	 */
+	public long getThrottledTime(Priority priority, TimeUnit unit) {
+		return unit.convert(throttledNanos[priority.ordinal()].get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * A token bucket. Access needs to be done holding the rate limiter's monitor.
+	 */
+	private static class Bucket {
+		private final double permitsPerNano;
+		private final double capacity;
+
+		private double permits;
+		private long refilledAt = System.nanoTime();
+
+		private Bucket(double permitsPerSecond, int burst) {
+			this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+			this.capacity = Math.max(1, burst);
+			this.permits = capacity;
+		}
+
+		void refill(long now) {
+			permits = Math.min(capacity, permits + (now - refilledAt) * permitsPerNano);
+			refilledAt = now;
+		}
+
+		long timeToPermit() {
+			return permits >= 1 ? 0 : (long) Math.ceil((1 - permits) / permitsPerNano);
+		}
+
+		long permitInterval() {
+			return (long) Math.ceil(1 / permitsPerNano);
+		}
+
+		void take() {
+			permits -= 1;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A {@link TokenProvider} that caches a token and refreshes it in the background before it expires.
+ *
+ * <p>{@link #get()} is a volatile read of the cached token and never blocks while the token has at least
+ * {@link #setMinimumLifetime(long, TimeUnit) minimumLifetime} left. The token is refreshed on a background thread
+ * {@link #setRefreshAhead(long, TimeUnit) refreshAhead} before it expires, less a random jitter so that many processes
+ * started together don't all hit UAA at once. Only if there is no token yet, or the token is about to expire because
+ * background refreshes failed, does {@code get()} fetch a token itself. In that case a single caller fetches the token
+ * while any other callers wait for it.</p>
+ *
+ * <p>Tokens that are issued with a lifetime shorter than these settings, such as UAA's five minute tokens, are refreshed
+ * once half their lifetime has passed and returned by {@code get()} until a quarter of their lifetime is left, so a
+ * short lived token is never refreshed in a loop.</p>
+ */
+public class RefreshingTokenProvider implements TokenProvider, Closeable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingTokenProvider.class);
+
+	public static final long DEFAULT_REFRESH_AHEAD = TimeUnit.MINUTES.toMillis(15);
+	public static final long DEFAULT_MINIMUM_LIFETIME = TimeUnit.MINUTES.toMillis(10);
+	public static final long DEFAULT_JITTER = TimeUnit.MINUTES.toMillis(1);
+
+	private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+	private static final long MINIMUM_REFRESH_DELAY = TimeUnit.SECONDS.toMillis(1);
+
+	private final Supplier<Token> tokenSource;
+	private final ScheduledExecutorService scheduler;
+	private final boolean ownsScheduler;
+
+	// Guards fetching tokens and scheduledRefresh
+	private final Object fetchLock = new Object();
+	private ScheduledFuture<?> scheduledRefresh;
+
+	private volatile CachedToken token;
+	private volatile long refreshAhead = DEFAULT_REFRESH_AHEAD;
+	private volatile long minimumLifetime = DEFAULT_MINIMUM_LIFETIME;
+	private volatile long jitter = DEFAULT_JITTER;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a token provider that refreshes tokens on its own daemon thread.
+	 *
+	 * @param tokenSource fetches a new token from UAA.
+	 */
+	public RefreshingTokenProvider(Supplier<Token> tokenSource) {
+		this(tokenSource, Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "token-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}), true);
+	}
+
+	/**
+	 * @param tokenSource fetches a new token from UAA.
+	 * @param scheduler the executor background refreshes are scheduled on.
+	 */
+	public RefreshingTokenProvider(Supplier<Token> tokenSource, ScheduledExecutorService scheduler) {
+		this(tokenSource, scheduler, false);
+	}
+
+	private RefreshingTokenProvider(Supplier<Token> tokenSource, ScheduledExecutorService scheduler, boolean ownsScheduler) {
+		this.tokenSource = tokenSource;
+		this.scheduler = scheduler;
+		this.ownsScheduler = ownsScheduler;
+	}
+
+	/**
+	 * Sets how long before a token expires to start refreshing it in the background.
+	 */
+	public void setRefreshAhead(long refreshAhead, TimeUnit unit) {
+		this.refreshAhead = unit.toMillis(refreshAhead);
+	}
+
+	/**
+	 * Sets how much lifetime a token must have left for {@link #get()} to return it without fetching a new token.
+	 */
+	public void setMinimumLifetime(long minimumLifetime, TimeUnit unit) {
+		this.minimumLifetime = unit.toMillis(minimumLifetime);
+	}
+
+	/**
+	 * Sets the maximum random amount of time a background refresh is moved ahead by.
+	 */
+	public void setJitter(long jitter, TimeUnit unit) {
+		this.jitter = unit.toMillis(jitter);
+	}
+
+	@Override
+	public Token get() {
+		final CachedToken current = token;
+		if (current != null && current.isUsable()) {
+			return current.token;
+		}
+		synchronized (fetchLock) {
+			// Another caller may have fetched a token while we were waiting
+			final CachedToken fetched = token;
+			if (fetched != null && fetched != current && fetched.isUsable()) {
+				return fetched.token;
+			}
+			return fetch();
+		}
+	}
+
+	/**
+	 * Stops refreshing the token in the background.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (fetchLock) {
+			if (scheduledRefresh != null) {
+				scheduledRefresh.cancel(false);
+			}
+		}
+		if (ownsScheduler) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	// Must be called holding fetchLock
+	private Token fetch() {
+		final Token fetched = tokenSource.get();
+		final long now = System.currentTimeMillis();
+		if (fetched.getExpiration() == null) {
+			token = new CachedToken(fetched, Long.MAX_VALUE);
+			return fetched;
+		}
+		final long expiration = fetched.getExpiration().getTime();
+		final long lifetime = Math.max(0, expiration - now);
+		token = new CachedToken(fetched, expiration - Math.min(minimumLifetime, lifetime / 4));
+		scheduleRefresh(lifetime);
+		return fetched;
+	}
+
+	private void scheduleRefresh(long lifetime) {
+		final long refreshAhead = Math.min(this.refreshAhead, lifetime / 2);
+		final long jitter = Math.min(this.jitter, refreshAhead / 2);
+		final long delay = lifetime - refreshAhead - (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+		schedule(Math.max(MINIMUM_REFRESH_DELAY, delay));
+	}
+
+	private void schedule(long delay) {
+		if (closed) {
+			return;
+		}
+		if (scheduledRefresh != null) {
+			scheduledRefresh.cancel(false);
+		}
+		scheduledRefresh = scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void refresh() {
+		if (closed) {
+			return;
+		}
+		synchronized (fetchLock) {
+			try {
+				fetch();
+				LOGGER.debug("Refreshed token");
+			} catch (Exception e) {
+				LOGGER.warn("Failed to refresh token, retrying in " + RETRY_DELAY + "ms", e);
+				schedule(RETRY_DELAY);
+			}
+		}
+	}
+
+	private static class CachedToken {
+		private final Token token;
+		private final long usableUntil;
+
+		private CachedToken(Token token, long usableUntil) {
+			this.token = token;
+			this.usableUntil = usableUntil;
+		}
+
+		private boolean isUsable() {
+			return System.currentTimeMillis() < usableUntil;
+		}
+	}
+}
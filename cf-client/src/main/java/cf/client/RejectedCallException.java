@@ -0,0 +1,27 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+/**
+ * Thrown by a {@link ResiliencePolicy} when a call is rejected without being attempted, either because the circuit
+ * breaker for the endpoint is open or because too many calls are already in progress.
+ */
+public class RejectedCallException extends RuntimeException {
+	public RejectedCallException(String message) {
+		super(message);
+	}
+}
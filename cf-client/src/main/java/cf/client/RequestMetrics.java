@@ -0,0 +1,57 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+/**
+ * Receives measurements of the HTTP requests made by {@link DefaultCloudController} and {@link DefaultUaa}. Endpoints
+ * are reported as templates with the guids in the path replaced by {@code {guid}} and the query removed, such as
+ * {@code /v2/apps/{guid}/stats}, so measurements aggregate per endpoint rather than per resource.
+ *
+ * <p>Implementations are called on the threads making requests and must be thread safe and fast. See
+ * {@link RequestStatistics} for an implementation that keeps latency histograms and counters.</p>
+ */
+public interface RequestMetrics {
+
+	/**
+	 * Called when the response headers of a request have been received.
+	 *
+	 * @param method the HTTP method of the request.
+	 * @param endpoint the endpoint template of the request.
+	 * @param statusCode the status code of the response.
+	 * @param durationNanos the time from sending the request to receiving the response headers.
+	 */
+	void requestCompleted(String method, String endpoint, int statusCode, long durationNanos);
+
+	/**
+	 * Called when a request fails without a response, typically because of an I/O error.
+	 */
+	void requestFailed(String method, String endpoint, Exception cause, long durationNanos);
+
+	/**
+	 * Called when a response body has been read and closed.
+	 *
+	 * @param bytes the number of bytes of the body that were read.
+	 */
+	void bytesRead(String method, String endpoint, long bytes);
+
+	/**
+	 * Called when a query of a paginated collection has been iterated over completely.
+	 *
+	 * @param pages the number of pages fetched by the query.
+	 */
+	void pagesFetched(String endpoint, int pages);
+}
@@ -0,0 +1,200 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link RequestMetrics} that keeps a latency histogram, status code counters, failure counts, bytes read and pages
+ * fetched for each endpoint. {@link #getStatistics()} returns a snapshot suitable for publishing through {@code /varz}.
+ */
+public class RequestStatistics implements RequestMetrics {
+
+	private final ConcurrentMap<String, EndpointStatistics> endpoints = new ConcurrentHashMap<>();
+
+	@Override
+	public void requestCompleted(String method, String endpoint, int statusCode, long durationNanos) {
+		final EndpointStatistics statistics = endpoint(method, endpoint);
+		statistics.latency.record(durationNanos);
+		statistics.statusCodes.computeIfAbsent(statusCode, code -> new AtomicLong()).incrementAndGet();
+	}
+
+	@Override
+	public void requestFailed(String method, String endpoint, Exception cause, long durationNanos) {
+		final EndpointStatistics statistics = endpoint(method, endpoint);
+		statistics.latency.record(durationNanos);
+		statistics.failures.incrementAndGet();
+	}
+
+	@Override
+	public void bytesRead(String method, String endpoint, long bytes) {
+		endpoint(method, endpoint).bytesRead.addAndGet(bytes);
+	}
+
+	@Override
+	public void pagesFetched(String endpoint, int pages) {
+		final EndpointStatistics statistics = endpoint("GET", endpoint);
+		statistics.queries.incrementAndGet();
+		statistics.pages.addAndGet(pages);
+	}
+
+	/**
+	 * Returns the latency histogram of an endpoint or {@code null} if no requests have been made to the endpoint.
+	 *
+	 * @param method the HTTP method, {@code GET} for example.
+	 * @param endpoint the endpoint template, {@code /v2/apps/{guid}} for example.
+	 */
+	public LatencyHistogram getLatency(String method, String endpoint) {
+		final EndpointStatistics statistics = endpoints.get(method + " " + endpoint);
+		return statistics == null ? null : statistics.latency;
+	}
+
+	/**
+	 * Returns a snapshot of the statistics keyed by {@code "<method> <endpoint template>"}.
+	 */
+	public Map<String, Object> getStatistics() {
+		final Map<String, Object> snapshot = new TreeMap<>();
+		for (Map.Entry<String, EndpointStatistics> entry : endpoints.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Clears every statistic.
+	 */
+	public void reset() {
+		endpoints.clear();
+	}
+
+	private EndpointStatistics endpoint(String method, String endpoint) {
+		final String key = method + " " + endpoint;
+		EndpointStatistics statistics = endpoints.get(key);
+		if (statistics == null) {
+			statistics = endpoints.computeIfAbsent(key, k -> new EndpointStatistics());
+		}
+		return statistics;
+	}
+
+	private static class EndpointStatistics {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<>();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong bytesRead = new AtomicLong();
+		private final AtomicLong queries = new AtomicLong();
+		private final AtomicLong pages = new AtomicLong();
+
+		Map<String, Object> snapshot() {
+			final Map<String, Object> snapshot = new LinkedHashMap<>();
+			snapshot.put("requests", latency.getCount());
+			snapshot.put("failures", failures.get());
+			final Map<String, Long> codes = new TreeMap<>();
+			for (Map.Entry<Integer, AtomicLong> entry : statusCodes.entrySet()) {
+				codes.put(entry.getKey().toString(), entry.getValue().get());
+			}
+			snapshot.put("status_codes", codes);
+			snapshot.put("latency_ms", latency.snapshot());
+			snapshot.put("bytes_read", bytesRead.get());
+			if (queries.get() > 0) {
+				snapshot.put("queries", queries.get());
+				snapshot.put("pages", pages.get());
+			}
+			return snapshot;
+		}
+	}
+
+	/**
+	 * A latency histogram with fixed, roughly logarithmic buckets from 1ms to 10s.
+	 */
+	public static class LatencyHistogram {
+
+		private static final long[] BOUNDS_MS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+		// The last bucket counts everything above the largest bound.
+		private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MS.length + 1);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void record(long nanos) {
+			final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+			int bucket = 0;
+			while (bucket < BOUNDS_MS.length && millis >= BOUNDS_MS[bucket]) {
+				bucket++;
+			}
+			buckets.incrementAndGet(bucket);
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			long max;
+			while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+				// Retry until we've either set the max or another thread set a larger one
+			}
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public double getMean(TimeUnit unit) {
+			final long count = this.count.get();
+			return count == 0 ? 0 : (double) totalNanos.get() / count / unit.toNanos(1);
+		}
+
+		public long getMax(TimeUnit unit) {
+			return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Returns an upper bound, in milliseconds, of the given percentile. The estimate is the upper bound of the bucket
+		 * the percentile falls in, capped at the maximum latency recorded.
+		 *
+		 * @param percentile the percentile, between 0 and 100.
+		 */
+		public long getPercentile(double percentile) {
+			final long count = this.count.get();
+			if (count == 0) {
+				return 0;
+			}
+			final long rank = (long) Math.ceil(count * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < BOUNDS_MS.length; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					return Math.min(BOUNDS_MS[i], getMax(TimeUnit.MILLISECONDS));
+				}
+			}
+			return getMax(TimeUnit.MILLISECONDS);
+		}
+
+		Map<String, Object> snapshot() {
+			final Map<String, Object> snapshot = new LinkedHashMap<>();
+			snapshot.put("mean", getMean(TimeUnit.MILLISECONDS));
+			snapshot.put("p50", getPercentile(50));
+			snapshot.put("p90", getPercentile(90));
+			snapshot.put("p99", getPercentile(99));
+			snapshot.put("max", getMax(TimeUnit.MILLISECONDS));
+			return snapshot;
+		}
+	}
+}
@@ -0,0 +1,352 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.MalformedChunkCodingException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retries, circuit breakers and a concurrency limit for calls to the Cloud Controller and UAA, used by
+ * {@link ResilientCloudController} and {@link ResilientUaa}.
+ *
+ * <p>A failed call is retried when the failure is transient, a {@code 502}, {@code 503}, {@code 504} or {@code 429}
+ * response or a connection or socket failure, and repeating the call is safe. A response that can't be parsed is not
+ * retried. Idempotent calls are retried on any transient failure. Non-idempotent calls, such as creates, are only
+ * retried when the request never reached the server, a refused connection for example, or was rejected with a
+ * {@code 429}. Retries back off exponentially with full jitter. A {@code Retry-After} header on the response is
+ * honored unless it asks for a longer wait than {@link #setMaxRetryAfter(long, TimeUnit) maxRetryAfter}.</p>
+ *
+ * <p>Each endpoint has its own circuit breaker. After {@link #setCircuitBreaker(int, long, TimeUnit) failureThreshold}
+ * consecutive transient failures the circuit opens and calls to the endpoint fail immediately with a
+ * {@link RejectedCallException}. Once the open time has passed a single trial call is let through; if it succeeds the
+ * circuit closes, otherwise it opens again. A bulkhead limits the number of calls in progress at once so that threads
+ * don't pile up on a slow Cloud Controller.</p>
+ */
+public class ResiliencePolicy {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResiliencePolicy.class);
+
+	private volatile int maxAttempts = 3;
+	private volatile long initialBackoff = TimeUnit.MILLISECONDS.toNanos(100);
+	private volatile long maxBackoff = TimeUnit.SECONDS.toNanos(5);
+	private volatile long maxRetryAfter = TimeUnit.SECONDS.toNanos(30);
+
+	private volatile int failureThreshold = 5;
+	private volatile long openTime = TimeUnit.SECONDS.toNanos(30);
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+	private volatile Semaphore bulkhead;
+	private volatile long bulkheadWait;
+
+	/**
+	 * Sets the maximum number of times a call is attempted, including the first attempt. 1 disables retries.
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("Max attempts must be at least 1");
+		}
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Sets the backoff between retries. The n-th retry waits a random time between 0 and
+	 * {@code min(maxBackoff, initialBackoff * 2^n)}.
+	 */
+	public void setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+		this.initialBackoff = unit.toNanos(initialBackoff);
+		this.maxBackoff = unit.toNanos(maxBackoff);
+	}
+
+	/**
+	 * Sets the longest {@code Retry-After} that is waited for. A response asking for a longer wait is not retried.
+	 */
+	public void setMaxRetryAfter(long maxRetryAfter, TimeUnit unit) {
+		this.maxRetryAfter = unit.toNanos(maxRetryAfter);
+	}
+
+	/**
+	 * Configures the per endpoint circuit breakers.
+	 *
+	 * @param failureThreshold the number of consecutive failures that opens the circuit, 0 to disable circuit breakers.
+	 * @param openTime how long the circuit stays open before a trial call is let through.
+	 * @param unit the unit of {@code openTime}.
+	 */
+	public void setCircuitBreaker(int failureThreshold, long openTime, TimeUnit unit) {
+		this.failureThreshold = failureThreshold;
+		this.openTime = unit.toNanos(openTime);
+	}
+
+	/**
+	 * Limits the number of calls in progress at once.
+	 *
+	 * @param maxConcurrentCalls the maximum number of calls in progress, 0 for no limit.
+	 * @param maxWait how long a call waits for another call to finish before it's rejected.
+	 * @param unit the unit of {@code maxWait}.
+	 */
+	public void setBulkhead(int maxConcurrentCalls, long maxWait, TimeUnit unit) {
+		this.bulkhead = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+		this.bulkheadWait = unit.toNanos(maxWait);
+	}
+
+	/**
+	 * Returns {@code true} if the circuit breaker of the endpoint is currently rejecting calls.
+	 */
+	public boolean isCircuitOpen(String endpoint) {
+		final CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+		return circuitBreaker != null && circuitBreaker.isOpen();
+	}
+
+	/**
+	 * Makes a call, retrying transient failures.
+	 *
+	 * @param endpoint the name of the endpoint called, each endpoint has its own circuit breaker.
+	 * @param idempotent whether the call may safely be repeated after a failure part way through.
+	 * @param call the call.
+	 * @return the result of the call.
+	 * @throws RejectedCallException if the circuit for the endpoint is open or the bulkhead is full.
+	 */
+	public <T> T call(String endpoint, boolean idempotent, Supplier<T> call) {
+		final Semaphore bulkhead = this.bulkhead;
+		if (bulkhead != null) {
+			try {
+				if (!bulkhead.tryAcquire(bulkheadWait, TimeUnit.NANOSECONDS)) {
+					throw new RejectedCallException("Too many calls in progress, rejected call to " + endpoint);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedCallException("Interrupted waiting to call " + endpoint);
+			}
+		}
+		try {
+			return callWithRetries(endpoint, idempotent, call);
+		} finally {
+			if (bulkhead != null) {
+				bulkhead.release();
+			}
+		}
+	}
+
+	/**
+	 * Makes a call that has no result, retrying transient failures.
+	 *
+	 * @see #call(String, boolean, Supplier)
+	 */
+	public void run(String endpoint, boolean idempotent, Runnable call) {
+		call(endpoint, idempotent, () -> {
+			call.run();
+			return null;
+		});
+	}
+
+	private <T> T callWithRetries(String endpoint, boolean idempotent, Supplier<T> call) {
+		final CircuitBreaker circuitBreaker = failureThreshold > 0 ? circuitBreakers.computeIfAbsent(endpoint, CircuitBreaker::new) : null;
+		for (int attempt = 1; ; attempt++) {
+			final Admission admission = circuitBreaker == null ? Admission.ALLOWED : circuitBreaker.allowCall(openTime);
+			if (admission == Admission.REJECTED) {
+				throw new RejectedCallException("Circuit breaker is open, rejected call to " + endpoint);
+			}
+			boolean recorded = false;
+			try {
+				final T result = call.get();
+				if (circuitBreaker != null) {
+					circuitBreaker.onSuccess();
+				}
+				recorded = true;
+				return result;
+			} catch (RuntimeException e) {
+				if (!isTransient(e)) {
+					if (circuitBreaker != null) {
+						// The endpoint responded, it just didn't like the request
+						circuitBreaker.onSuccess();
+					}
+					recorded = true;
+					throw e;
+				}
+				if (circuitBreaker != null) {
+					circuitBreaker.onFailure(failureThreshold);
+				}
+				recorded = true;
+				if (attempt >= maxAttempts || !(idempotent || notProcessed(e))) {
+					throw e;
+				}
+				final long delay = retryDelay(e, attempt);
+				if (delay < 0) {
+					throw e;
+				}
+				LOGGER.debug("Call to {} failed on attempt {}, retrying in {}ms: {}", endpoint, attempt, TimeUnit.NANOSECONDS.toMillis(delay), e.getMessage());
+				try {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			} finally {
+				// An Error thrown by the call says nothing about the endpoint, but a trial call must still give up its
+				// place so that the next call can be the trial
+				if (!recorded && admission == Admission.TRIAL) {
+					circuitBreaker.abandonTrial();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the time to wait before the next attempt or -1 if the server asked for a longer wait than we're willing to
+	 * wait.
+	 */
+	private long retryDelay(RuntimeException e, int attempt) {
+		if (e instanceof UnexpectedResponseException) {
+			final long retryAfter = parseRetryAfter(((UnexpectedResponseException) e).getHeader("Retry-After"));
+			if (retryAfter >= 0) {
+				return retryAfter <= maxRetryAfter ? retryAfter : -1;
+			}
+		}
+		final long ceiling = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+		return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+	}
+
+	private static long parseRetryAfter(String retryAfter) {
+		if (retryAfter == null) {
+			return -1;
+		}
+		try {
+			return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter.trim())));
+		} catch (NumberFormatException e) {
+			final Date date = DateUtils.parseDate(retryAfter);
+			if (date == null) {
+				return -1;
+			}
+			return TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Returns {@code true} if the failure is likely to go away when the call is repeated, an overloaded or unavailable
+	 * server or a failed connection. A response that can't be parsed is not transient.
+	 */
+	static boolean isTransient(RuntimeException e) {
+		if (e instanceof UnexpectedResponseException) {
+			switch (((UnexpectedResponseException) e).getStatusCode()) {
+				case 429:
+				case 502:
+				case 503:
+				case 504:
+					return true;
+				default:
+					return false;
+			}
+		}
+		final Throwable cause = e.getCause();
+		if (cause instanceof JsonProcessingException) {
+			return false;
+		}
+		return cause instanceof SocketException
+				|| cause instanceof InterruptedIOException
+				|| cause instanceof UnknownHostException
+				|| cause instanceof NoHttpResponseException
+				|| cause instanceof ConnectionClosedException
+				|| cause instanceof MalformedChunkCodingException;
+	}
+
+	/**
+	 * Returns {@code true} if the failure guarantees the server did not act on the request.
+	 */
+	private static boolean notProcessed(RuntimeException e) {
+		if (e instanceof UnexpectedResponseException) {
+			return ((UnexpectedResponseException) e).getStatusCode() == 429;
+		}
+		final Throwable cause = e.getCause();
+		return cause instanceof ConnectException
+				|| cause instanceof ConnectTimeoutException
+				|| cause instanceof UnknownHostException;
+	}
+
+	private enum Admission {
+		ALLOWED,
+		TRIAL,
+		REJECTED
+	}
+
+	private static class CircuitBreaker {
+		private final String endpoint;
+
+		// Access to the following fields needs to be done holding this circuit breaker's monitor.
+		private int consecutiveFailures;
+		private long openedAt;
+		private boolean open;
+		private boolean trialInProgress;
+
+		private CircuitBreaker(String endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		synchronized boolean isOpen() {
+			return open;
+		}
+
+		synchronized Admission allowCall(long openTime) {
+			if (!open) {
+				return Admission.ALLOWED;
+			}
+			if (trialInProgress || System.nanoTime() - openedAt < openTime) {
+				return Admission.REJECTED;
+			}
+			trialInProgress = true;
+			return Admission.TRIAL;
+		}
+
+		synchronized void abandonTrial() {
+			trialInProgress = false;
+		}
+
+		synchronized void onSuccess() {
+			consecutiveFailures = 0;
+			open = false;
+			trialInProgress = false;
+		}
+
+		synchronized void onFailure(int failureThreshold) {
+			consecutiveFailures++;
+			if (trialInProgress || consecutiveFailures >= failureThreshold) {
+				if (!open) {
+					LOGGER.warn("Opening circuit breaker for {} after {} consecutive failures", endpoint, consecutiveFailures);
+				}
+				open = true;
+				openedAt = System.nanoTime();
+				trialInProgress = false;
+			}
+		}
+	}
+}
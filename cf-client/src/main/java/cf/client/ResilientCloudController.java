@@ -0,0 +1,482 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.AppUsageEvent;
+import cf.client.model.Application;
+import cf.client.model.ApplicationInstance;
+import cf.client.model.ApplicationInstanceStats;
+import cf.client.model.ApplicationStats;
+import cf.client.model.Event;
+import cf.client.model.Info;
+import cf.client.model.Organization;
+import cf.client.model.PrivateDomain;
+import cf.client.model.Route;
+import cf.client.model.SecurityGroup;
+import cf.client.model.Service;
+import cf.client.model.ServiceAuthToken;
+import cf.client.model.ServiceBinding;
+import cf.client.model.ServiceInstance;
+import cf.client.model.ServicePlan;
+import cf.client.model.SharedDomain;
+import cf.client.model.Space;
+import cf.client.model.User;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link CloudController} that makes every call through a {@link ResiliencePolicy}, retrying transient failures and
+ * failing fast while the Cloud Controller is unhealthy. Each method is its own endpoint with its own circuit breaker.
+ * Creates are treated as non-idempotent, every other call as idempotent. A delete that is retried after a failure may
+ * find that an earlier attempt already deleted the resource, so a {@code 404} on a retried delete counts as success.
+ *
+ * <p>Only the request made by each method is covered. Pages of a {@link RestCollection} after the first page and the
+ * contents of a {@link StreamingRestCollection} are fetched while iterating and are not retried.</p>
+ */
+public class ResilientCloudController extends DelegatingCloudController {
+
+	private final ResiliencePolicy policy;
+
+	public ResilientCloudController(CloudController delegate, ResiliencePolicy policy) {
+		super(delegate);
+		this.policy = policy;
+	}
+
+	public ResiliencePolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Returns the UAA of the Cloud Controller, decorated with the same {@link ResiliencePolicy}.
+	 */
+	@Override
+	public Uaa getUaa() {
+		final Uaa uaa = policy.call("getUaa", true, () -> super.getUaa());
+		return new ResilientUaa(uaa, policy);
+	}
+
+	@Override
+	public Info getInfo() {
+		return policy.call("getInfo", true, () -> super.getInfo());
+	}
+
+	@Override
+	public Map<String, ApplicationInstanceStats> getApplicationInstanceStats(Token token, UUID applicationGuid) {
+		return policy.call("getApplicationInstanceStats", true, () -> super.getApplicationInstanceStats(token, applicationGuid));
+	}
+
+	@Override
+	public Map<String, ApplicationInstance> getApplicationInstances(Token token, UUID applicationGuid) {
+		return policy.call("getApplicationInstances", true, () -> super.getApplicationInstances(token, applicationGuid));
+	}
+
+	@Override
+	public ApplicationStats getApplicationStats(Token token, UUID applicationGuid) {
+		return policy.call("getApplicationStats", true, () -> super.getApplicationStats(token, applicationGuid));
+	}
+
+	/**
+	 * Fetches the stats of every application through the delegate, then retries each application whose request failed
+	 * with a transient error on its own through the policy, so that one failing application is retried by itself
+	 * rather than retrying the whole batch. Failures of the first request for each application don't count towards
+	 * the circuit breaker, the retries do.
+	 */
+	@Override
+	public PartialResults<UUID, Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, Collection<UUID> applicationGuids) {
+		return super.getApplicationInstanceStats(token, applicationGuids)
+				.retry(ResiliencePolicy::isTransient, applicationGuid -> getApplicationInstanceStats(token, applicationGuid));
+	}
+
+	@Override
+	public Application getApplication(Token token, UUID applicationGuid) {
+		return policy.call("getApplication", true, () -> super.getApplication(token, applicationGuid));
+	}
+
+	@Override
+	public RestCollection<Application> getApplications(Token token) {
+		return policy.call("getApplications", true, () -> super.getApplications(token));
+	}
+
+	@Override
+	public Map<UUID, Resource<Application>> getApplications(Token token, Collection<UUID> applicationGuids) {
+		return policy.call("getApplications", true, () -> super.getApplications(token, applicationGuids));
+	}
+
+	@Override
+	public RestCollection<Application> getApplication(Token token, ApplicationQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getApplication", true, () -> super.getApplication(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public Application updateApplication(Token token, UUID applicationGuid, Application application) {
+		return policy.call("updateApplication", true, () -> super.updateApplication(token, applicationGuid, application));
+	}
+
+	@Override
+	public RestCollection<Event> getEvents(Token token, EventQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getEvents", true, () -> super.getEvents(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public RestCollection<Event> getEvents(Token token, String url) {
+		return policy.call("getEvents", true, () -> super.getEvents(token, url));
+	}
+
+	@Override
+	public RestCollection<Event> getEvents(Token token) {
+		return policy.call("getEvents", true, () -> super.getEvents(token));
+	}
+
+	@Override
+	public RestCollection<AppUsageEvent> getAppUsageEvents(Token token, String url) {
+		return policy.call("getAppUsageEvents", true, () -> super.getAppUsageEvents(token, url));
+	}
+
+	@Override
+	public RestCollection<AppUsageEvent> getAppUsageEvents(Token token) {
+		return policy.call("getAppUsageEvents", true, () -> super.getAppUsageEvents(token));
+	}
+
+	@Override
+	public UUID createService(Token token, Service service) {
+		return policy.call("createService", false, () -> super.createService(token, service));
+	}
+
+	@Override
+	public RestCollection<Service> getServices(Token token) {
+		return policy.call("getServices", true, () -> super.getServices(token));
+	}
+
+	@Override
+	public RestCollection<Service> getServices(Token token, UUID servicePlanGuid) {
+		return policy.call("getServices", true, () -> super.getServices(token, servicePlanGuid));
+	}
+
+	@Override
+	public RestCollection<Service> getServices(Token token, ServiceQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getServices", true, () -> super.getServices(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public Service getService(Token token, UUID serviceGuid) {
+		return policy.call("getService", true, () -> super.getService(token, serviceGuid));
+	}
+
+	@Override
+	public void deleteService(Token token, UUID serviceGuid) {
+		delete("deleteService", () -> super.deleteService(token, serviceGuid));
+	}
+
+	@Override
+	public Service updateService(Token token, UUID serviceGuid, Service service) {
+		return policy.call("updateService", true, () -> super.updateService(token, serviceGuid, service));
+	}
+
+	@Override
+	public ServicePlan getServicePlan(Token token, UUID servicePlanGuid) {
+		return policy.call("getServicePlan", true, () -> super.getServicePlan(token, servicePlanGuid));
+	}
+
+	@Override
+	public RestCollection<ServicePlan> getServicePlans(Token token) {
+		return policy.call("getServicePlans", true, () -> super.getServicePlans(token));
+	}
+
+	@Override
+	public UUID createServicePlan(Token token, ServicePlan servicePlan) {
+		return policy.call("createServicePlan", false, () -> super.createServicePlan(token, servicePlan));
+	}
+
+	@Override
+	public ServicePlan updateServicePlan(Token token, UUID servicePlanGuid, ServicePlan servicePlan) {
+		return policy.call("updateServicePlan", true, () -> super.updateServicePlan(token, servicePlanGuid, servicePlan));
+	}
+
+	@Override
+	public RestCollection<ServicePlan> getServicePlans(Token token, ServicePlanQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getServicePlans", true, () -> super.getServicePlans(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public ServiceInstance getServiceInstance(Token token, UUID instanceGuid) {
+		return policy.call("getServiceInstance", true, () -> super.getServiceInstance(token, instanceGuid));
+	}
+
+	@Override
+	public RestCollection<Route> getServiceInstanceRoutes(Token token, UUID instanceGuid) {
+		return policy.call("getServiceInstanceRoutes", true, () -> super.getServiceInstanceRoutes(token, instanceGuid));
+	}
+
+	@Override
+	public Space getSpace(Token token, UUID spaceGuid) {
+		return policy.call("getSpace", true, () -> super.getSpace(token, spaceGuid));
+	}
+
+	@Override
+	public RestCollection<Space> getSpace(Token token, SpaceQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getSpace", true, () -> super.getSpace(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public RestCollection<Space> getSpaces(Token token) {
+		return policy.call("getSpaces", true, () -> super.getSpaces(token));
+	}
+
+	@Override
+	public Map<UUID, Resource<Space>> getSpaces(Token token, Collection<UUID> spaceGuids) {
+		return policy.call("getSpaces", true, () -> super.getSpaces(token, spaceGuids));
+	}
+
+	@Override
+	public RestCollection<User> getManagersInOrg(Token token, UUID orgGuid) {
+		return policy.call("getManagersInOrg", true, () -> super.getManagersInOrg(token, orgGuid));
+	}
+
+	@Override
+	public RestCollection<User> getAuditorsInOrg(Token token, UUID orgGuid) {
+		return policy.call("getAuditorsInOrg", true, () -> super.getAuditorsInOrg(token, orgGuid));
+	}
+
+	@Override
+	public RestCollection<User> getUsersInOrg(Token token, UUID orgGuid) {
+		return policy.call("getUsersInOrg", true, () -> super.getUsersInOrg(token, orgGuid));
+	}
+
+	@Override
+	public RestCollection<User> getManagersInSpace(Token token, UUID spaceGuid) {
+		return policy.call("getManagersInSpace", true, () -> super.getManagersInSpace(token, spaceGuid));
+	}
+
+	@Override
+	public RestCollection<User> getAuditorsInSpace(Token token, UUID spaceGuid) {
+		return policy.call("getAuditorsInSpace", true, () -> super.getAuditorsInSpace(token, spaceGuid));
+	}
+
+	@Override
+	public RestCollection<User> getDevelopersInSpace(Token token, UUID spaceGuid) {
+		return policy.call("getDevelopersInSpace", true, () -> super.getDevelopersInSpace(token, spaceGuid));
+	}
+
+	@Override
+	public RestCollection<SecurityGroup> getSecurityGroupsForSpace(Token token, UUID spaceGuid) {
+		return policy.call("getSecurityGroupsForSpace", true, () -> super.getSecurityGroupsForSpace(token, spaceGuid));
+	}
+
+	@Override
+	public SecurityGroup updateSecurityGroup(Token token, UUID securityGroupGuid, SecurityGroup securityGroup) {
+		return policy.call("updateSecurityGroup", true, () -> super.updateSecurityGroup(token, securityGroupGuid, securityGroup));
+	}
+
+	@Override
+	public SecurityGroup bindSecurityGroup(Token token, UUID securityGroupGuid, UUID spaceGuid) {
+		return policy.call("bindSecurityGroup", true, () -> super.bindSecurityGroup(token, securityGroupGuid, spaceGuid));
+	}
+
+	@Override
+	public void unbindSecurityGroup(Token token, UUID securityGroupGuid, UUID spaceGuid) {
+		delete("unbindSecurityGroup", () -> super.unbindSecurityGroup(token, securityGroupGuid, spaceGuid));
+	}
+
+	@Override
+	public RestCollection<Space> getSpacesForSecurityGroup(Token token, UUID securityGroupGuid) {
+		return policy.call("getSpacesForSecurityGroup", true, () -> super.getSpacesForSecurityGroup(token, securityGroupGuid));
+	}
+
+	@Override
+	public Organization getOrganization(Token token, UUID organizationGuid) {
+		return policy.call("getOrganization", true, () -> super.getOrganization(token, organizationGuid));
+	}
+
+	@Override
+	public RestCollection<Organization> getOrganizations(Token token) {
+		return policy.call("getOrganizations", true, () -> super.getOrganizations(token));
+	}
+
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token) {
+		return policy.call("getServiceInstances", true, () -> super.getServiceInstances(token));
+	}
+
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getServiceInstances", true, () -> super.getServiceInstances(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public RestCollection<ServiceInstance> getServiceInstances(Token token, ServiceInstanceQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return policy.call("getServiceInstances", true, () -> super.getServiceInstances(token, queryAttribute, queryValue, inlineRelations));
+	}
+
+	@Override
+	public Map<UUID, Resource<ServiceInstance>> getServiceInstances(Token token, Collection<UUID> instanceGuids) {
+		return policy.call("getServiceInstances", true, () -> super.getServiceInstances(token, instanceGuids));
+	}
+
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token) {
+		return policy.call("getServiceBindings", true, () -> super.getServiceBindings(token));
+	}
+
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getServiceBindings", true, () -> super.getServiceBindings(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public RestCollection<ServiceBinding> getServiceBindings(Token token, ServiceBindingQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return policy.call("getServiceBindings", true, () -> super.getServiceBindings(token, queryAttribute, queryValue, inlineRelations));
+	}
+
+	@Override
+	public Map<UUID, Resource<ServiceBinding>> getServiceBindings(Token token, Collection<UUID> serviceBindingGuids) {
+		return policy.call("getServiceBindings", true, () -> super.getServiceBindings(token, serviceBindingGuids));
+	}
+
+	@Override
+	public ServiceBinding getServiceBinding(Token token, UUID serviceBindingGuid) {
+		return policy.call("getServiceBinding", true, () -> super.getServiceBinding(token, serviceBindingGuid));
+	}
+
+	@Override
+	public void deleteServiceBinding(Token token, UUID serviceBindingGuid) {
+		delete("deleteServiceBinding", () -> super.deleteServiceBinding(token, serviceBindingGuid));
+	}
+
+	@Override
+	public UUID createServiceBinding(Token token, UUID appGuid, UUID serviceInstanceGuid) {
+		return policy.call("createServiceBinding", false, () -> super.createServiceBinding(token, appGuid, serviceInstanceGuid));
+	}
+
+	@Override
+	public RestCollection<ServiceAuthToken> getAuthTokens(Token token) {
+		return policy.call("getAuthTokens", true, () -> super.getAuthTokens(token));
+	}
+
+	@Override
+	public UUID createAuthToken(Token token, ServiceAuthToken serviceAuthToken) {
+		return policy.call("createAuthToken", false, () -> super.createAuthToken(token, serviceAuthToken));
+	}
+
+	@Override
+	public void deleteServiceAuthToken(Token token, UUID authTokenGuid) {
+		delete("deleteServiceAuthToken", () -> super.deleteServiceAuthToken(token, authTokenGuid));
+	}
+
+	@Override
+	public UUID createServiceInstance(Token token, String name, UUID planGuid, UUID spaceGuid) {
+		return policy.call("createServiceInstance", false, () -> super.createServiceInstance(token, name, planGuid, spaceGuid));
+	}
+
+	@Override
+	public UUID createServiceInstance(Token token, String name, UUID planGuid, UUID spaceGuid, ObjectNode params) {
+		return policy.call("createServiceInstance", false, () -> super.createServiceInstance(token, name, planGuid, spaceGuid, params));
+	}
+
+	@Override
+	public User getUser(Token token, UUID userId) {
+		return policy.call("getUser", true, () -> super.getUser(token, userId));
+	}
+
+	@Override
+	public UUID createUser(Token token, UUID uaaUserGuid) {
+		return policy.call("createUser", false, () -> super.createUser(token, uaaUserGuid));
+	}
+
+	@Override
+	public UUID createUserProvidedServiceInstance(Token token, String name, UUID spaceGuid, ObjectNode params) {
+		return policy.call("createUserProvidedServiceInstance", false, () -> super.createUserProvidedServiceInstance(token, name, spaceGuid, params));
+	}
+
+	@Override
+	public ServiceInstance updateServiceInstance(Token token, UUID serviceInstanceGuid, ServiceInstance serviceInstance) {
+		return policy.call("updateServiceInstance", true, () -> super.updateServiceInstance(token, serviceInstanceGuid, serviceInstance));
+	}
+
+	@Override
+	public void deleteServiceInstance(Token token, UUID instanceGuid) {
+		delete("deleteServiceInstance", () -> super.deleteServiceInstance(token, instanceGuid));
+	}
+
+	@Override
+	public void purgeServiceInstance(Token token, UUID instanceGuid) {
+		delete("purgeServiceInstance", () -> super.purgeServiceInstance(token, instanceGuid));
+	}
+
+	@Override
+	public RestCollection<PrivateDomain> getPrivateDomains(Token token) {
+		return policy.call("getPrivateDomains", true, () -> super.getPrivateDomains(token));
+	}
+
+	@Override
+	public PrivateDomain getPrivateDomain(Token token, UUID privateDomainGuid) {
+		return policy.call("getPrivateDomain", true, () -> super.getPrivateDomain(token, privateDomainGuid));
+	}
+
+	@Override
+	public SharedDomain getSharedDomain(Token token, UUID sharedDomainGuid) {
+		return policy.call("getSharedDomain", true, () -> super.getSharedDomain(token, sharedDomainGuid));
+	}
+
+	@Override
+	public RestCollection<SharedDomain> getSharedDomains(Token token) {
+		return policy.call("getSharedDomains", true, () -> super.getSharedDomains(token));
+	}
+
+	@Override
+	public RestCollection<Route> getRoutes(Token token) {
+		return policy.call("getRoutes", true, () -> super.getRoutes(token));
+	}
+
+	@Override
+	public RestCollection<Route> getRoutesForApp(Token token, UUID appGuid) {
+		return policy.call("getRoutesForApp", true, () -> super.getRoutesForApp(token, appGuid));
+	}
+
+	@Override
+	public RestCollection<Application> getAppsForRoute(Token token, UUID routeGuid) {
+		return policy.call("getAppsForRoute", true, () -> super.getAppsForRoute(token, routeGuid));
+	}
+
+	@Override
+	public RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue) {
+		return policy.call("getRoutes", true, () -> super.getRoutes(token, queryAttribute, queryValue));
+	}
+
+	@Override
+	public RestCollection<Route> getRoutes(Token token, RouteQueryAttribute queryAttribute, String queryValue, InlineRelations inlineRelations) {
+		return policy.call("getRoutes", true, () -> super.getRoutes(token, queryAttribute, queryValue, inlineRelations));
+	}
+
+	private void delete(String endpoint, Runnable delete) {
+		final AtomicInteger attempts = new AtomicInteger();
+		policy.run(endpoint, true, () -> {
+			final boolean retry = attempts.getAndIncrement() > 0;
+			try {
+				delete.run();
+			} catch (UnexpectedResponseException e) {
+				if (!retry || e.getStatusCode() != 404) {
+					throw e;
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.UaaUser;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A {@link Uaa} that makes every call through a {@link ResiliencePolicy}. Token requests are safe to repeat and are
+ * retried like any other idempotent call; creating a user is not.
+ */
+public class ResilientUaa implements Uaa {
+
+	private final Uaa delegate;
+	private final ResiliencePolicy policy;
+
+	public ResilientUaa(Uaa delegate, ResiliencePolicy policy) {
+		this.delegate = delegate;
+		this.policy = policy;
+	}
+
+	public Uaa getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public Token getUserToken(String client, String username, String password) {
+		return policy.call("uaa.getUserToken", true, () -> delegate.getUserToken(client, username, password));
+	}
+
+	@Override
+	public Token getClientToken(String client, String clientSecret) {
+		return policy.call("uaa.getClientToken", true, () -> delegate.getClientToken(client, clientSecret));
+	}
+
+	@Override
+	public TokenContents checkToken(String client, String clientSecret, Token token) {
+		return policy.call("uaa.checkToken", true, () -> delegate.checkToken(client, clientSecret, token));
+	}
+
+	@Override
+	public UUID createUser(Token token, String username, String password, String origin) {
+		return policy.call("uaa.createUser", false, () -> delegate.createUser(token, username, password, origin));
+	}
+
+	@Override
+	public UaaUser getUser(Token token, String username) {
+		return policy.call("uaa.getUser", true, () -> delegate.getUser(token, username));
+	}
+
+	@Override
+	public Map<String, UaaUser> getUsers(Token token, Collection<String> usernames) {
+		return policy.call("uaa.getUsers", true, () -> delegate.getUsers(token, usernames));
+	}
+}
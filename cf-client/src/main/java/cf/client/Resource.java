@@ -16,9 +16,18 @@
  */
 package cf.client;
 
+import org.apache.http.HttpStatus;
+
 import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
 * @author Mike Heath
@@ -27,15 +36,57 @@ public class Resource<T> {
 	private final T entity;
 	private final String guidString;
 	private final URI uri;
-	private final Date created;
-	private final Date updated;
+	// Milliseconds since the epoch or Timestamps.INVALID
+	private final long created;
+	private final long updated;
+	// Inlined related resources keyed by relation name, either a Resource or a List of Resources.
+	private final Map<String, Object> relations;
 
 	public Resource(T entity, String guidString, URI uri, Date created, Date updated) {
+		this(entity, guidString, uri, created, updated, Collections.<String, Object>emptyMap());
+	}
+
+	Resource(T entity, String guidString, URI uri, Date created, Date updated, Map<String, Object> relations) {
+		this(entity, guidString, uri,
+				created == null ? Timestamps.INVALID : created.getTime(),
+				updated == null ? Timestamps.INVALID : updated.getTime(),
+				relations);
+	}
+
+	/**
+	 * Looks up each guid in turn, for implementations that can't look them up in batches. A guid whose lookup returns
+	 * {@code null} or fails with {@code 404 Not Found} is left out of the map.
+	 *
+	 * @param guids the guids to look up.
+	 * @param uri the uri of the collection the resources are in, such as {@code /v2/apps}.
+	 * @param lookup looks up the entity of a single guid.
+	 */
+	static <T> Map<UUID, Resource<T>> lookupEach(Collection<UUID> guids, String uri, Function<UUID, T> lookup) {
+		final Map<UUID, Resource<T>> resources = new HashMap<>();
+		for (UUID guid : new LinkedHashSet<>(guids)) {
+			final T entity;
+			try {
+				entity = lookup.apply(guid);
+			} catch (UnexpectedResponseException e) {
+				if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+					continue;
+				}
+				throw e;
+			}
+			if (entity != null) {
+				resources.put(guid, new Resource<>(entity, guid.toString(), URI.create(uri + "/" + guid), null, null));
+			}
+		}
+		return resources;
+	}
+
+	Resource(T entity, String guidString, URI uri, long created, long updated, Map<String, Object> relations) {
 		this.entity = entity;
 		this.guidString = guidString;
 		this.uri = uri;
 		this.created = created;
 		this.updated = updated;
+		this.relations = relations;
 	}
 
 	public T getEntity() {
@@ -55,10 +106,82 @@ public class Resource<T> {
 	}
 
 	public Date getCreated() {
-		return created;
+		return created == Timestamps.INVALID ? null : new Date(created);
 	}
 
 	public Date getUpdated() {
+		return updated == Timestamps.INVALID ? null : new Date(updated);
+	}
+
+	/**
+	 * Returns when the resource was created in milliseconds since the epoch, without allocating a {@link Date}.
+	 *
+	 * @return the creation time or {@link Long#MIN_VALUE} if the Cloud Controller didn't provide one.
+	 */
+	public long getCreatedMillis() {
+		return created;
+	}
+
+	/**
+	 * Returns when the resource was last updated in milliseconds since the epoch, without allocating a {@link Date}.
+	 *
+	 * @return the update time or {@link Long#MIN_VALUE} if the resource has never been updated.
+	 */
+	public long getUpdatedMillis() {
 		return updated;
 	}
+
+	/**
+	 * Returns a related resource that was inlined using {@link InlineRelations}, such as the {@code space} of a service
+	 * instance.
+	 *
+	 * @param name the name of the relation.
+	 * @param type the model class the related resource is bound to.
+	 * @return the related resource or {@code null} if the relation was not inlined.
+	 * @throws IllegalArgumentException if the relation is a to-many relation or is not bound to {@code type}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> Resource<R> getRelated(String name, Class<R> type) {
+		final Object related = relations.get(name);
+		if (related == null) {
+			return null;
+		}
+		if (!(related instanceof Resource)) {
+			throw new IllegalArgumentException("Relation '" + name + "' is a to-many relation");
+		}
+		final Resource<R> resource = (Resource<R>) related;
+		checkType(name, resource, type);
+		return resource;
+	}
+
+	/**
+	 * Returns the related resources of a to-many relation that was inlined using {@link InlineRelations}, such as the
+	 * {@code apps} of a route.
+	 *
+	 * @param name the name of the relation.
+	 * @param type the model class the related resources are bound to.
+	 * @return the related resources or an empty list if the relation was not inlined.
+	 * @throws IllegalArgumentException if the relation is a to-one relation or is not bound to {@code type}.
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> List<Resource<R>> getRelatedList(String name, Class<R> type) {
+		final Object related = relations.get(name);
+		if (related == null) {
+			return Collections.emptyList();
+		}
+		if (!(related instanceof List)) {
+			throw new IllegalArgumentException("Relation '" + name + "' is a to-one relation");
+		}
+		final List<Resource<R>> resources = (List<Resource<R>>) related;
+		for (Resource<R> resource : resources) {
+			checkType(name, resource, type);
+		}
+		return resources;
+	}
+
+	private static void checkType(String name, Resource<?> resource, Class<?> type) {
+		if (resource.getEntity() != null && !type.isInstance(resource.getEntity())) {
+			throw new IllegalArgumentException("Relation '" + name + "' is bound to " + resource.getEntity().getClass().getName() + " not " + type.getName());
+		}
+	}
 }
@@ -0,0 +1,295 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.Domain;
+import cf.client.model.Organization;
+import cf.client.model.Route;
+import cf.client.model.Service;
+import cf.client.model.ServiceBinding;
+import cf.client.model.ServiceInstance;
+import cf.client.model.ServicePlan;
+import cf.client.model.Space;
+import cf.client.model.User;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes Cloud Controller resources straight off a {@link JsonParser}, binding each resource's {@code metadata} and
+ * {@code entity} into a {@link Resource} without building an intermediate {@link com.fasterxml.jackson.databind.JsonNode}
+ * tree.
+ *
+ * <p>A decoder created with {@code inlineRelations} set also picks up related resources that were inlined into an
+ * entity using {@link InlineRelations}, binding the relations it knows to their model classes and any other relation
+ * to a {@link JsonNode}. This requires reading each entity into a tree first so it's only done for queries that ask
+ * for inlined relations.</p>
+ */
+class ResourceDecoder {
+
+	private static final Map<String, Class<?>> RELATION_TYPES = new HashMap<>();
+	static {
+		relation(Application.class, "app", "apps");
+		relation(Domain.class, "domain", "domains");
+		relation(Organization.class, "organization", "organizations");
+		relation(Route.class, "route", "routes");
+		relation(Service.class, "service", "services");
+		relation(ServiceBinding.class, "service_binding", "service_bindings");
+		relation(ServiceInstance.class, "service_instance", "service_instances");
+		relation(ServicePlan.class, "service_plan", "service_plans");
+		relation(Space.class, "space", "spaces");
+		relation(User.class, "user", "users", "developers", "managers", "auditors");
+	}
+
+	private static void relation(Class<?> type, String... names) {
+		for (String name : names) {
+			RELATION_TYPES.put(name, type);
+		}
+	}
+
+	private final boolean inlineRelations;
+
+	ResourceDecoder() {
+		this(false);
+	}
+
+	ResourceDecoder(boolean inlineRelations) {
+		this.inlineRelations = inlineRelations;
+	}
+
+	/**
+	 * Reads a complete page of results, such as the response of {@code GET /v2/apps}.
+	 */
+	<T> Page<T> readPage(InputStream content, Class<T> type) throws IOException {
+		try (JsonParser parser = createParser(content)) {
+			final PageFields fields = new PageFields();
+			List<Resource<T>> resources = Collections.emptyList();
+			while (readPageFields(parser, fields)) {
+				resources = new ArrayList<>();
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					resources.add(readResource(parser, type));
+				}
+			}
+			return new Page<>(fields.totalResults, fields.totalPages, fields.nextUri, resources);
+		}
+	}
+
+	/**
+	 * Creates a parser for a page of results and positions it on the page's {@code START_OBJECT} token.
+	 */
+	JsonParser createParser(InputStream content) throws IOException {
+		final JsonParser parser = JsonCodec.mapper().getFactory().createParser(content);
+		expect(parser.nextToken(), JsonToken.START_OBJECT);
+		return parser;
+	}
+
+	/**
+	 * Reads the fields of a page into {@code fields} until the page's {@code resources} array is reached. Returns
+	 * {@code true} with the parser positioned on the {@code START_ARRAY} token of the resources or {@code false} once
+	 * the end of the page has been reached. Fields that follow the resources are picked up by calling this method again
+	 * after the resources have been read.
+	 */
+	boolean readPageFields(JsonParser parser, PageFields fields) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			final JsonToken value = parser.nextToken();
+			switch (field) {
+				case "total_results":
+					fields.totalResults = parser.getValueAsInt();
+					break;
+				case "total_pages":
+					fields.totalPages = value == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+					break;
+				case "next_url":
+					fields.nextUri = value == JsonToken.VALUE_NULL ? null : parser.getText();
+					break;
+				case "resources":
+					expect(value, JsonToken.START_ARRAY);
+					return true;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads a single resource. The parser must be positioned on the {@code START_OBJECT} token of the resource and is
+	 * left on the matching {@code END_OBJECT} token.
+	 */
+	<T> Resource<T> readResource(JsonParser parser, Class<T> type) throws IOException {
+		expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+		String guid = null;
+		URI uri = null;
+		long created = Timestamps.INVALID;
+		long updated = Timestamps.INVALID;
+		T entity = null;
+		Map<String, Object> relations = Collections.emptyMap();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String field = parser.getCurrentName();
+			final JsonToken value = parser.nextToken();
+			if ("metadata".equals(field)) {
+				expect(value, JsonToken.START_OBJECT);
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					final String metadataField = parser.getCurrentName();
+					final JsonToken metadataValue = parser.nextToken();
+					if (metadataValue == JsonToken.VALUE_NULL) {
+						continue;
+					}
+					switch (metadataField) {
+						case "guid":
+							guid = parser.getText();
+							break;
+						case "url":
+							uri = URI.create(parser.getText());
+							break;
+						case "created_at":
+							created = Timestamps.parse(parser.getText());
+							break;
+						case "updated_at":
+							updated = Timestamps.parse(parser.getText());
+							break;
+						default:
+							parser.skipChildren();
+					}
+				}
+			} else if ("entity".equals(field)) {
+				if (inlineRelations && value == JsonToken.START_OBJECT) {
+					final ObjectNode node = JsonCodec.mapper().readTree(parser);
+					relations = readRelations(node);
+					entity = JsonCodec.read(node, type);
+				} else {
+					entity = JsonCodec.read(parser, type);
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return new Resource<>(entity, guid, uri, created, updated, relations);
+	}
+
+	/**
+	 * Removes the inlined relations from an entity and decodes them into resources. Relations inlined more than one
+	 * level deep are decoded recursively.
+	 */
+	private Map<String, Object> readRelations(ObjectNode entity) throws IOException {
+		Map<String, Object> relations = null;
+		for (Iterator<Map.Entry<String, JsonNode>> i = entity.fields(); i.hasNext(); ) {
+			final Map.Entry<String, JsonNode> field = i.next();
+			final Class<?> type = RELATION_TYPES.containsKey(field.getKey()) ? RELATION_TYPES.get(field.getKey()) : JsonNode.class;
+			final Object related;
+			if (isResource(field.getValue())) {
+				related = readResource(field.getValue(), type);
+			} else if (field.getValue().isArray() && field.getValue().size() > 0 && allResources(field.getValue())) {
+				final List<Resource<?>> resources = new ArrayList<>(field.getValue().size());
+				for (JsonNode resource : field.getValue()) {
+					resources.add(readResource(resource, type));
+				}
+				related = Collections.unmodifiableList(resources);
+			} else {
+				continue;
+			}
+			if (relations == null) {
+				relations = new LinkedHashMap<>();
+			}
+			relations.put(field.getKey(), related);
+			i.remove();
+		}
+		return relations == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(relations);
+	}
+
+	private Resource<?> readResource(JsonNode node, Class<?> type) throws IOException {
+		try (JsonParser parser = node.traverse(JsonCodec.mapper())) {
+			parser.nextToken();
+			return readResource(parser, type);
+		}
+	}
+
+	private static boolean isResource(JsonNode node) {
+		return node.isObject() && node.path("metadata").isObject() && node.path("entity").isObject();
+	}
+
+	private static boolean allResources(JsonNode array) {
+		for (JsonNode element : array) {
+			if (!isResource(element)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+		if (actual != expected) {
+			throw new IOException("Unexpected JSON token, expected " + expected + " but found " + actual);
+		}
+	}
+
+	/**
+	 * The paging fields of a Cloud Controller result page.
+	 */
+	static class PageFields {
+		int totalResults;
+		Integer totalPages;
+		String nextUri;
+	}
+
+	/**
+	 * A single page of a paginated Cloud Controller result.
+	 */
+	static class Page<T> {
+		private final int totalResults;
+		private final Integer totalPages;
+		private final String nextUri;
+		private final List<Resource<T>> resources;
+
+		Page(int totalResults, Integer totalPages, String nextUri, List<Resource<T>> resources) {
+			this.totalResults = totalResults;
+			this.totalPages = totalPages;
+			this.nextUri = nextUri;
+			this.resources = resources;
+		}
+
+		int getTotalResults() {
+			return totalResults;
+		}
+
+		Integer getTotalPages() {
+			return totalPages;
+		}
+
+		String getNextUri() {
+			return nextUri;
+		}
+
+		List<Resource<T>> getResources() {
+			return resources;
+		}
+	}
+}
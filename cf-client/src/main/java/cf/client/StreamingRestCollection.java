@@ -0,0 +1,243 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import java.io.Closeable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A {@link RestCollection} variant that decodes resources one at a time straight off the HTTP response instead of
+ * materializing whole pages, so only a single resource is held in memory at a time regardless of the size of the result.
+ *
+ * <p>Every call to {@link #iterator()} or {@link #stream()} re-issues the query, so the collection may be iterated more
+ * than once. Each iteration holds an HTTP connection until it has been exhausted or closed. Prefer {@link #stream()}
+ * in a try-with-resources block, or close the {@link ResourceIterator}, when a result may not be fully consumed.</p>
+ *
+ * <p>The {@link java.util.Collection} methods that search or copy the collection, such as {@link #contains(Object)}
+ * and {@link #toArray()}, each issue the query and always close the iterator they use. {@link #size()} and
+ * {@link #isEmpty()} use the number of results reported the last time the collection was queried. The collection is
+ * read only.</p>
+ */
+public class StreamingRestCollection<T> extends AbstractCollection<Resource<T>> {
+
+	private final String uri;
+	private final Supplier<ResourceIterator<T>> query;
+
+	private volatile int totalResults = -1;
+
+	public StreamingRestCollection(Supplier<ResourceIterator<T>> query) {
+		this(null, query);
+	}
+
+	/**
+	 * @param uri the uri of the query, used to describe the collection in {@link #toString()}.
+	 * @param query issues the query each time the collection is iterated.
+	 */
+	public StreamingRestCollection(String uri, Supplier<ResourceIterator<T>> query) {
+		this.uri = uri;
+		this.query = query;
+	}
+
+	/**
+	 * Adapts a paged query to a streaming collection for clients that can't decode results off the wire. The results
+	 * are read a page at a time rather than one resource at a time.
+	 */
+	static <T> StreamingRestCollection<T> paged(String uri, Supplier<RestCollection<T>> query) {
+		return new StreamingRestCollection<>(uri, () -> {
+			final RestCollection<T> results = query.get();
+			final Iterator<Resource<T>> iterator = results.iterator();
+			return new ResourceIterator<T>() {
+				@Override
+				public int getTotalResults() {
+					return results.size();
+				}
+
+				@Override
+				public void close() {
+				}
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public Resource<T> next() {
+					return iterator.next();
+				}
+			};
+		});
+	}
+
+	/**
+	 * Issues the query and returns an iterator over its results.
+	 */
+	@Override
+	public ResourceIterator<T> iterator() {
+		final ResourceIterator<T> iterator = query.get();
+		totalResults = iterator.getTotalResults();
+		return iterator;
+	}
+
+	/**
+	 * Issues the query and returns a sequential stream over its results. Closing the stream releases the underlying
+	 * HTTP connection.
+	 */
+	@Override
+	public Stream<Resource<T>> stream() {
+		final ResourceIterator<T> iterator = iterator();
+		final Spliterator<Resource<T>> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+	}
+
+	@Override
+	public Stream<Resource<T>> parallelStream() {
+		return stream().parallel();
+	}
+
+	/**
+	 * Returns the total number of results reported by the Cloud Controller the last time this collection was queried.
+	 * If the collection has not been queried yet, the query is issued to find the number of results.
+	 */
+	@Override
+	public int size() {
+		if (totalResults < 0) {
+			iterator().close();
+		}
+		return totalResults;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public void forEach(Consumer<? super Resource<T>> action) {
+		try (ResourceIterator<T> iterator = iterator()) {
+			iterator.forEachRemaining(action);
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		try (ResourceIterator<T> iterator = iterator()) {
+			while (iterator.hasNext()) {
+				if (iterator.next().equals(o)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		final Set<Object> remaining = new HashSet<>(c);
+		if (remaining.isEmpty()) {
+			return true;
+		}
+		try (ResourceIterator<T> iterator = iterator()) {
+			while (iterator.hasNext()) {
+				remaining.remove(iterator.next());
+				if (remaining.isEmpty()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	@Override
+	public Object[] toArray() {
+		return toList().toArray();
+	}
+
+	@Override
+	public <A> A[] toArray(A[] a) {
+		return toList().toArray(a);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super Resource<T>> filter) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Describes the query without issuing it, so logging the collection doesn't read the whole result.
+	 */
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + (uri == null ? "" : uri) + "]";
+	}
+
+	private List<Resource<T>> toList() {
+		final List<Resource<T>> resources = new ArrayList<>(Math.max(totalResults, 0));
+		forEach(resources::add);
+		return resources;
+	}
+
+	/**
+	 * An iterator over the results of a query that holds on to an HTTP connection until it's exhausted or closed.
+	 */
+	public interface ResourceIterator<T> extends Iterator<Resource<T>>, Closeable {
+
+		/**
+		 * Returns the total number of results as reported by the first page of the query.
+		 */
+		int getTotalResults();
+
+		/**
+		 * Releases the HTTP connection held by this iterator without reading the rest of the response.
+		 */
+		@Override
+		void close();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+/**
+ * Parses the {@code created_at} and {@code updated_at} timestamps of Cloud Controller resource metadata into
+ * milliseconds since the epoch without allocating or throwing on the way.
+ *
+ * <p>Both ISO-8601 timestamps such as {@code 2014-02-20T17:29:29Z} or {@code 2014-02-20T17:29:29.123+00:00} and the
+ * {@code 2014-02-20 17:29:29 +0000} form older Cloud Controllers use for {@code updated_at} are accepted. The date and
+ * time may be separated by a {@code T} or a space, fractional seconds are truncated to milliseconds and the offset may
+ * be {@code Z}, {@code UTC}, {@code +/-HH}, {@code +/-HHMM} or {@code +/-HH:MM}, optionally preceded by a space.</p>
+ */
+final class Timestamps {
+
+	/**
+	 * Returned for a missing or malformed timestamp.
+	 */
+	static final long INVALID = Long.MIN_VALUE;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private Timestamps() {
+	}
+
+	/**
+	 * Parses a timestamp into milliseconds since the epoch.
+	 *
+	 * @return the timestamp in milliseconds since the epoch or {@link #INVALID} if the timestamp is {@code null} or
+	 *         malformed.
+	 */
+	static long parse(CharSequence timestamp) {
+		if (timestamp == null || timestamp.length() < 19) {
+			return INVALID;
+		}
+		final int year = digits(timestamp, 0, 4);
+		final int month = digits(timestamp, 5, 2);
+		final int day = digits(timestamp, 8, 2);
+		final int hour = digits(timestamp, 11, 2);
+		final int minute = digits(timestamp, 14, 2);
+		final int second = digits(timestamp, 17, 2);
+		if (year < 1 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+				|| timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+				|| (timestamp.charAt(10) != 'T' && timestamp.charAt(10) != ' ')
+				|| timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':') {
+			return INVALID;
+		}
+		int position = 19;
+		int millis = 0;
+		if (position < timestamp.length() && timestamp.charAt(position) == '.') {
+			position++;
+			final int start = position;
+			while (position < timestamp.length() && isDigit(timestamp.charAt(position))) {
+				if (position - start < 3) {
+					millis = millis * 10 + (timestamp.charAt(position) - '0');
+				}
+				position++;
+			}
+			if (position == start) {
+				return INVALID;
+			}
+			for (int i = position - start; i < 3; i++) {
+				millis *= 10;
+			}
+		}
+		final int offsetMinutes = offset(timestamp, position);
+		if (offsetMinutes == Integer.MIN_VALUE) {
+			return INVALID;
+		}
+		final long epochDay = epochDay(year, month, day);
+		return epochDay * MILLIS_PER_DAY + ((hour * 60L + minute - offsetMinutes) * 60 + second) * 1000 + millis;
+	}
+
+	/**
+	 * Parses the offset starting at {@code position} into minutes east of UTC, or {@link Integer#MIN_VALUE} if the
+	 * offset is malformed. A missing offset is treated as UTC.
+	 */
+	private static int offset(CharSequence timestamp, int position) {
+		final int length = timestamp.length();
+		if (position < length && timestamp.charAt(position) == ' ') {
+			position++;
+		}
+		final int remaining = length - position;
+		if (remaining == 0) {
+			return 0;
+		}
+		final char sign = timestamp.charAt(position);
+		if (sign == 'Z' && remaining == 1) {
+			return 0;
+		}
+		if (remaining == 3 && sign == 'U' && timestamp.charAt(position + 1) == 'T' && timestamp.charAt(position + 2) == 'C') {
+			return 0;
+		}
+		if (sign != '+' && sign != '-') {
+			return Integer.MIN_VALUE;
+		}
+		final int hours;
+		final int minutes;
+		switch (remaining) {
+			case 3: // +HH
+				hours = digits(timestamp, position + 1, 2);
+				minutes = 0;
+				break;
+			case 5: // +HHMM
+				hours = digits(timestamp, position + 1, 2);
+				minutes = digits(timestamp, position + 3, 2);
+				break;
+			case 6: // +HH:MM
+				hours = digits(timestamp, position + 1, 2);
+				minutes = timestamp.charAt(position + 3) == ':' ? digits(timestamp, position + 4, 2) : -1;
+				break;
+			default:
+				return Integer.MIN_VALUE;
+		}
+		if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59) {
+			return Integer.MIN_VALUE;
+		}
+		final int offset = hours * 60 + minutes;
+		return sign == '-' ? -offset : offset;
+	}
+
+	/**
+	 * Parses {@code count} decimal digits starting at {@code start}, returning -1 if any of them isn't a digit.
+	 */
+	private static int digits(CharSequence value, int start, int count) {
+		int result = 0;
+		for (int i = start; i < start + count; i++) {
+			final char c = value.charAt(i);
+			if (!isDigit(c)) {
+				return -1;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * Returns the number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar.
+	 */
+	private static long epochDay(int year, int month, int day) {
+		// Count years from March so the leap day falls at the end of the year
+		final long y = month <= 2 ? year - 1 : year;
+		final long era = y / 400;
+		final long yearOfEra = y - era * 400;
+		final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
@@ -17,7 +17,6 @@
 package cf.client;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.Header;
 import org.apache.http.message.BasicHeader;
 
@@ -62,7 +61,7 @@ public class Token {
 
 	public static Token parseJson(InputStream json) {
 		try {
-			final JsonNode node = new ObjectMapper().readTree(json);
+			final JsonNode node = JsonCodec.readTree(json);
 			final String accessToken = node.get("access_token").asText();
 			final Type type = Type.getType(node.get("token_type").asText());
 			final Date expiration = new Date(System.currentTimeMillis() + node.get("expires_in").asLong() * 1000);
@@ -107,7 +106,7 @@ public class Token {
 	}
 
 	public Date getExpiration() {
-		return new Date(expiration.getTime());
+		return expiration == null ? null : new Date(expiration.getTime());
 	}
 
 	public List<String> getScopes() {
@@ -90,11 +90,11 @@ public class TokenContents extends JsonObject {
 	}
 
 	public Date getIssuedAt() {
-		return new Date(issuedAt * 1000);
+		return issuedAt == null ? null : new Date(issuedAt * 1000);
 	}
 
 	public Date getExpires() {
-		return new Date(expires * 1000);
+		return expires == null ? null : new Date(expires * 1000);
 	}
 
 	public URI getIssuer() {
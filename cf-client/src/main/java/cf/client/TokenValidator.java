@@ -0,0 +1,279 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Validates UAA issued JWT access tokens locally rather than calling {@link Uaa#checkToken(String, String, Token)}.
+ *
+ * <p>The verification keys are fetched from UAA's {@code /token_keys} endpoint the first time a token is validated and
+ * cached by key id. When a token is signed with a key id that isn't in the cache, because UAA has rotated its keys, the
+ * keys are fetched again, at most once every {@link #setMinKeyRefreshInterval(long, TimeUnit) minKeyRefreshInterval}.
+ * Tokens signed with {@code RS256} and {@code HS256} are supported.</p>
+ */
+public class TokenValidator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TokenValidator.class);
+
+	private static final String TOKEN_KEYS = "/token_keys";
+
+	private final Supplier<JsonNode> keySource;
+
+	private volatile Map<String, Key> keys;
+	private volatile long keysFetchedAt;
+	private volatile long minKeyRefreshInterval = TimeUnit.SECONDS.toMillis(30);
+	private volatile long clockSkew = TimeUnit.SECONDS.toMillis(30);
+
+	public TokenValidator(HttpClient httpClient, String uaaUri) {
+		this(httpClient, URI.create(uaaUri));
+	}
+
+	public TokenValidator(final HttpClient httpClient, URI uaa) {
+		this(new Supplier<JsonNode>() {
+			private final URI tokenKeysUri = uaa.resolve(TOKEN_KEYS);
+
+			@Override
+			public JsonNode get() {
+				try {
+					final HttpGet get = new HttpGet(tokenKeysUri);
+					get.setHeader("Accept", "application/json");
+					final HttpResponse response = httpClient.execute(get);
+					try {
+						if (response.getStatusLine().getStatusCode() != 200) {
+							throw new UnexpectedResponseException(response);
+						}
+						return JsonCodec.readTree(response.getEntity().getContent());
+					} finally {
+						HttpClientUtils.closeQuietly(response);
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param keySource provides the response of UAA's {@code /token_keys} endpoint.
+	 */
+	TokenValidator(Supplier<JsonNode> keySource) {
+		this.keySource = keySource;
+	}
+
+	/**
+	 * Sets the minimum amount of time between fetches of the verification keys when tokens with unknown key ids are
+	 * encountered.
+	 */
+	public void setMinKeyRefreshInterval(long interval, TimeUnit unit) {
+		this.minKeyRefreshInterval = unit.toMillis(interval);
+	}
+
+	/**
+	 * Sets how long after its expiration a token is still accepted to allow for clock differences with UAA.
+	 */
+	public void setClockSkew(long clockSkew, TimeUnit unit) {
+		this.clockSkew = unit.toMillis(clockSkew);
+	}
+
+	/**
+	 * Validates the token's signature and expiration and that it holds the required scopes.
+	 *
+	 * @param token the token to validate.
+	 * @param requiredScopes the scopes the token must have.
+	 * @return the contents of the token.
+	 * @throws InvalidTokenException if the token is not valid.
+	 */
+	public TokenContents validate(Token token, String... requiredScopes) {
+		return validate(token.getAccessToken(), Arrays.asList(requiredScopes));
+	}
+
+	/**
+	 * Validates the access token's signature and expiration and that it holds the required scopes.
+	 *
+	 * @param accessToken the encoded JWT.
+	 * @param requiredScopes the scopes the token must have.
+	 * @return the contents of the token.
+	 * @throws InvalidTokenException if the token is not valid.
+	 */
+	public TokenContents validate(String accessToken, Collection<String> requiredScopes) {
+		final String[] parts = accessToken.split("\\.");
+		if (parts.length != 3) {
+			throw new InvalidTokenException("Token is not a signed JWT");
+		}
+		final JsonNode header;
+		final TokenContents contents;
+		try {
+			header = JsonCodec.read(Base64.decodeBase64(parts[0]), JsonNode.class);
+			contents = JsonCodec.read(Base64.decodeBase64(parts[1]), TokenContents.class);
+		} catch (IOException e) {
+			throw new InvalidTokenException("Token could not be decoded", e);
+		}
+
+		final String algorithm = header.path("alg").asText();
+		final byte[] signed = (parts[0] + '.' + parts[1]).getBytes(StandardCharsets.US_ASCII);
+		final byte[] signature = Base64.decodeBase64(parts[2]);
+		final String keyId = header.hasNonNull("kid") ? header.get("kid").asText() : null;
+		if (!verify(algorithm, keyId, signed, signature)) {
+			throw new InvalidTokenException("Token signature is not valid");
+		}
+
+		if (contents.getExpires() == null || contents.getExpires().getTime() + clockSkew < System.currentTimeMillis()) {
+			throw new InvalidTokenException("Token has expired");
+		}
+		final Collection<String> scopes = contents.getScope() == null ? Collections.<String>emptyList() : contents.getScope();
+		for (String requiredScope : requiredScopes) {
+			if (!scopes.contains(requiredScope)) {
+				throw new InvalidTokenException("Token is missing required scope " + requiredScope);
+			}
+		}
+		return contents;
+	}
+
+	private boolean verify(String algorithm, String keyId, byte[] signed, byte[] signature) {
+		Map<String, Key> keys = this.keys;
+		if (keys == null || (keyId != null && !keys.containsKey(keyId))) {
+			keys = refreshKeys(keys);
+		}
+		if (keyId != null) {
+			final Key key = keys.get(keyId);
+			if (key == null) {
+				throw new InvalidTokenException("Token is signed with unknown key " + keyId);
+			}
+			return verify(algorithm, key, signed, signature);
+		}
+		// Tokens without a key id are checked against every key
+		for (Key key : keys.values()) {
+			if (verify(algorithm, key, signed, signature)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean verify(String algorithm, Key key, byte[] signed, byte[] signature) {
+		try {
+			switch (algorithm) {
+				case "RS256":
+					if (!(key instanceof PublicKey)) {
+						return false;
+					}
+					final Signature rsa = Signature.getInstance("SHA256withRSA");
+					rsa.initVerify((PublicKey) key);
+					rsa.update(signed);
+					return rsa.verify(signature);
+				case "HS256":
+					if (!"HmacSHA256".equals(key.getAlgorithm())) {
+						return false;
+					}
+					final Mac mac = Mac.getInstance("HmacSHA256");
+					mac.init(key);
+					return MessageDigest.isEqual(mac.doFinal(signed), signature);
+				default:
+					throw new InvalidTokenException("Unsupported token signing algorithm " + algorithm);
+			}
+		} catch (GeneralSecurityException e) {
+			throw new InvalidTokenException("Error verifying token signature", e);
+		}
+	}
+
+	/**
+	 * Fetches the verification keys unless another thread has already replaced {@code current} or the keys were
+	 * fetched too recently.
+	 */
+	private synchronized Map<String, Key> refreshKeys(Map<String, Key> current) {
+		if (keys != current || (current != null && System.currentTimeMillis() - keysFetchedAt < minKeyRefreshInterval)) {
+			return keys;
+		}
+		LOGGER.debug("Fetching token verification keys");
+		final Map<String, Key> fetched = parseKeys(keySource.get());
+		keys = fetched;
+		keysFetchedAt = System.currentTimeMillis();
+		return fetched;
+	}
+
+	static Map<String, Key> parseKeys(JsonNode tokenKeys) {
+		final Map<String, Key> keys = new LinkedHashMap<>();
+		// /token_keys returns a JWK set, the older /token_key endpoint a single key
+		final Iterable<JsonNode> keyNodes = tokenKeys.has("keys") ? tokenKeys.get("keys") : Collections.singletonList(tokenKeys);
+		int index = 0;
+		for (JsonNode keyNode : keyNodes) {
+			final String keyId = keyNode.hasNonNull("kid") ? keyNode.get("kid").asText() : "key-" + index;
+			index++;
+			try {
+				final Key key = parseKey(keyNode);
+				if (key != null) {
+					keys.put(keyId, key);
+				}
+			} catch (GeneralSecurityException e) {
+				LOGGER.warn("Ignoring invalid token verification key " + keyId, e);
+			}
+		}
+		return Collections.unmodifiableMap(keys);
+	}
+
+	private static Key parseKey(JsonNode keyNode) throws GeneralSecurityException {
+		final String type = keyNode.path("kty").asText();
+		final String value = keyNode.path("value").asText();
+		if ("MAC".equals(type) || "oct".equals(type) || "HMACSHA256".equalsIgnoreCase(keyNode.path("alg").asText())) {
+			return new SecretKeySpec(value.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+		}
+		final KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+		if (keyNode.hasNonNull("n") && keyNode.hasNonNull("e")) {
+			final BigInteger modulus = new BigInteger(1, Base64.decodeBase64(keyNode.get("n").asText()));
+			final BigInteger exponent = new BigInteger(1, Base64.decodeBase64(keyNode.get("e").asText()));
+			return keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent));
+		}
+		if (value.contains("-----BEGIN PUBLIC KEY-----")) {
+			final String encoded = value
+					.replace("-----BEGIN PUBLIC KEY-----", "")
+					.replace("-----END PUBLIC KEY-----", "")
+					.replaceAll("\\s", "");
+			return keyFactory.generatePublic(new X509EncodedKeySpec(Base64.decodeBase64(encoded)));
+		}
+		return null;
+	}
+}
@@ -18,6 +18,10 @@ package cf.client;
 
 import cf.client.model.UaaUser;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -33,4 +37,27 @@ public interface Uaa {
 	UUID createUser(Token token, String username, String password, String origin);
 
 	UaaUser getUser(Token token, String username);
+
+	/**
+	 * Looks up several users at once using {@code userName eq ... or ...} filters rather than one request per user.
+	 * The default implementation looks up one user name at a time with {@link #getUser(Token, String)}.
+	 *
+	 * @param token the token used to authenticate the request.
+	 * @param usernames the names of the users to look up.
+	 * @return the users found keyed by the requested user name. User names are matched case insensitively, so a user
+	 *         requested with several spellings of its name is in the map once for each spelling. Users that weren't
+	 *         found are not in the map.
+	 * @throws RuntimeException if more than one user, in different origins, has one of the names, as with
+	 *         {@link #getUser(Token, String)}.
+	 */
+	default Map<String, UaaUser> getUsers(Token token, Collection<String> usernames) {
+		final Map<String, UaaUser> users = new HashMap<>();
+		for (String username : new LinkedHashSet<>(usernames)) {
+			final UaaUser user = getUser(token, username);
+			if (user != null) {
+				users.put(username, user);
+			}
+		}
+		return users;
+	}
 }
@@ -16,6 +16,7 @@
  */
 package cf.client;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
@@ -28,14 +29,66 @@ import java.io.InputStream;
  * @author Mike Heath
  */
 public class UnexpectedResponseException extends RuntimeException {
+
+	private final int statusCode;
+	private final Header[] headers;
+	private final String responseBody;
+
 	public UnexpectedResponseException(HttpResponse response) {
-		super(buildMessage(response));
+		this(response, readResponseBody(response));
+	}
+
+	private UnexpectedResponseException(HttpResponse response, String responseBody) {
+		super(buildMessage(response, responseBody));
+		this.statusCode = response.getStatusLine().getStatusCode();
+		this.headers = response.getAllHeaders();
+		this.responseBody = responseBody;
+	}
+
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the value of the first response header with the given name or {@code null} if the response didn't have the
+	 * header.
+	 */
+	public String getHeader(String name) {
+		if (headers != null) {
+			for (Header header : headers) {
+				if (header.getName().equalsIgnoreCase(name)) {
+					return header.getValue();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the body of the response or {@code null} if the response didn't have a body.
+	 */
+	public String getResponseBody() {
+		return responseBody;
+	}
+
+	/**
+	 * Returns the Cloud Controller's {@code error_code}, {@code CF-ServiceInstanceNameTaken} for example, or
+	 * {@code null} if the response body isn't a Cloud Controller error.
+	 */
+	public String getErrorCode() {
+		if (responseBody == null) {
+			return null;
+		}
+		try {
+			return JsonCodec.mapper().readTree(responseBody).path("error_code").textValue();
+		} catch (IOException e) {
+			return null;
+		}
 	}
 
-	private static String buildMessage(HttpResponse response) {
+	private static String buildMessage(HttpResponse response, String body) {
 		final StatusLine statusLine = response.getStatusLine();
 		final String reasonPhrase = statusLine.getReasonPhrase();
-		final String body = readResponseBody(response);
 
 
 		final StringBuilder builder = new StringBuilder();
@@ -0,0 +1,48 @@
+/*
+ *   Copyright (c) 2013 Intellectual Reserve, Inc.  All rights reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ */
+package cf.client.model;
+
+import java.util.Map;
+
+/**
+ * The instances of an application along with the stats of each instance, decoded from a single response of
+ * {@code /v2/apps/{guid}/stats}.
+ */
+public class ApplicationStats {
+
+	private final Map<String, ApplicationInstance> instances;
+	private final Map<String, ApplicationInstanceStats> instanceStats;
+
+	public ApplicationStats(Map<String, ApplicationInstance> instances, Map<String, ApplicationInstanceStats> instanceStats) {
+		this.instances = instances;
+		this.instanceStats = instanceStats;
+	}
+
+	/**
+	 * Returns the application's instances keyed by instance index.
+	 */
+	public Map<String, ApplicationInstance> getInstances() {
+		return instances;
+	}
+
+	/**
+	 * Returns the stats of the application's instances keyed by instance index.
+	 */
+	public Map<String, ApplicationInstanceStats> getInstanceStats() {
+		return instanceStats;
+	}
+}
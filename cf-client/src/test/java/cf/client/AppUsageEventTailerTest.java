@@ -0,0 +1,83 @@
+package cf.client;
+
+import cf.client.model.AppUsageEvent;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class AppUsageEventTailerTest {
+
+	@Test
+	public void cursorFailureDoesNotHideListenerFailure() throws Exception {
+		// The cursor can't be written because its directory doesn't exist
+		final Path cursorFile = Files.createTempDirectory("tailer").resolve("missing").resolve("cursor");
+		final AppUsageEventTailer tailer = new AppUsageEventTailer(new FakeCloudController(2), () -> null, cursorFile, event -> {
+			if (event.getGuidString().endsWith("1")) {
+				throw new IllegalStateException("listener failed");
+			}
+		});
+		try {
+			tailer.poll();
+			fail("Expected the listener failure to be thrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException, "Unexpected failure " + e);
+			assertEquals(e.getSuppressed().length, 1);
+		}
+		assertEquals(tailer.getCursor(), new UUID(0, 0).toString());
+	}
+
+	@Test
+	public void closeDoesNotWaitForPoll() throws Exception {
+		final Path cursorFile = Files.createTempDirectory("tailer").resolve("cursor");
+		final CountDownLatch delivering = new CountDownLatch(1);
+		final CountDownLatch closed = new CountDownLatch(1);
+		final AppUsageEventTailer tailer = new AppUsageEventTailer(new FakeCloudController(1), () -> null, cursorFile, event -> {
+			delivering.countDown();
+			assertTrue(closed.await(5, TimeUnit.SECONDS));
+		});
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Integer> poll = executor.submit(tailer::poll);
+			assertTrue(delivering.await(5, TimeUnit.SECONDS));
+			tailer.close();
+			closed.countDown();
+			assertEquals(poll.get(5, TimeUnit.SECONDS).intValue(), 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the given number of events, whose guids count up from zero, on a single page.
+	 */
+	private static class FakeCloudController extends DelegatingCloudController {
+		private final int events;
+
+		FakeCloudController(int events) {
+			super(new DefaultCloudController(null, "http://localhost"));
+			this.events = events;
+		}
+
+		@Override
+		public StreamingRestCollection<AppUsageEvent> streamAppUsageEvents(Token token, String url) {
+			final List<Resource<AppUsageEvent>> resources = new ArrayList<>();
+			for (int i = 0; i < events; i++) {
+				final UUID guid = new UUID(0, i);
+				resources.add(new Resource<>(null, guid.toString(), URI.create("/v2/app_usage_events/" + guid), null, null));
+			}
+			return StreamingRestCollection.paged(url, () -> new RestCollection<>(resources.size(), resources.iterator()));
+		}
+	}
+}
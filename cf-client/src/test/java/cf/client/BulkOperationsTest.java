@@ -0,0 +1,127 @@
+package cf.client;
+
+import cf.client.model.ServicePlan;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class BulkOperationsTest {
+
+	private static final Token TOKEN = Token.parseAuthorization("bearer test");
+
+	private ExecutorService executor;
+	private FakeCloudController fake;
+
+	@BeforeMethod
+	public void createExecutor() {
+		executor = Executors.newFixedThreadPool(8);
+		fake = new FakeCloudController();
+	}
+
+	@AfterMethod
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void reportsEachFailureWithoutStoppingTheOthers() {
+		final List<UUID> guids = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			guids.add(new UUID(0, i));
+		}
+		fake.failures.put(guids.get(3), response(404, null));
+		fake.failures.put(guids.get(7), response(500, null));
+		final BulkOperations bulkOperations = new BulkOperations(fake, executor);
+		bulkOperations.setMaxConcurrentRequests(3);
+
+		final PartialResults<UUID, Void> deleted = bulkOperations.deleteServiceBindings(TOKEN, guids);
+		assertFalse(deleted.isComplete());
+		assertEquals(deleted.getResults().size(), 18);
+		assertTrue(deleted.getResults().containsKey(guids.get(0)));
+		assertEquals(new ArrayList<>(deleted.getErrors().keySet()), Arrays.asList(guids.get(3), guids.get(7)));
+		assertTrue(BulkOperations.isNotFound(deleted.getErrors().get(guids.get(3))));
+		assertFalse(BulkOperations.isNotFound(deleted.getErrors().get(guids.get(7))));
+		assertEquals(fake.requests.get(), 20);
+		assertTrue(fake.maxInFlight.get() <= 3, "At most 3 requests in flight but saw " + fake.maxInFlight.get());
+	}
+
+	@Test
+	public void reportsNameTakenAsConflict() {
+		final ServicePlan taken = new ServicePlan("taken", "", new UUID(0, 1), true, "taken", true);
+		final ServicePlan created = new ServicePlan("created", "", new UUID(0, 1), true, "created", true);
+		fake.failures.put(taken.getName(), response(400, "{\"code\":110,\"error_code\":\"CF-ServicePlanNameTaken\"}"));
+
+		final PartialResults<ServicePlan, UUID> plans = new BulkOperations(fake, null).createServicePlans(TOKEN, Arrays.asList(taken, created));
+		assertEquals(plans.getResults().keySet(), Collections.singleton(created));
+		assertTrue(BulkOperations.isConflict(plans.getErrors().get(taken)));
+		assertTrue(BulkOperations.isConflict(response(409, null)));
+		assertFalse(BulkOperations.isConflict(response(400, "{\"code\":1000,\"error_code\":\"CF-InvalidAuthToken\"}")));
+	}
+
+	private static UnexpectedResponseException response(int statusCode, String body) {
+		final BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "Status " + statusCode);
+		if (body != null) {
+			response.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+		}
+		return new UnexpectedResponseException(response);
+	}
+
+	/**
+	 * Fails the requests for the queued keys and records how many requests are in flight at once.
+	 */
+	private static class FakeCloudController extends DelegatingCloudController {
+		final Map<Object, RuntimeException> failures = new ConcurrentHashMap<>();
+		final AtomicInteger requests = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		FakeCloudController() {
+			super(new DefaultCloudController(null, "http://localhost"));
+		}
+
+		private void request(Object key) {
+			requests.incrementAndGet();
+			final int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			final RuntimeException failure = failures.get(key);
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
+		@Override
+		public void deleteServiceBinding(Token token, UUID serviceBindingGuid) {
+			request(serviceBindingGuid);
+		}
+
+		@Override
+		public UUID createServicePlan(Token token, ServicePlan servicePlan) {
+			request(servicePlan.getName());
+			return UUID.randomUUID();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.ServiceInstance;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class CachingCloudControllerTest {
+
+	private static final Token TOKEN = Token.parseAuthorization("bearer test");
+	private static final UUID GUID = UUID.fromString("2f4d9a3e-2b43-4c6f-8a8e-5d0b8f7e4c11");
+
+	@Test
+	public void callersCannotChangeTheCachedResource() {
+		final FakeCloudController fake = new FakeCloudController();
+		final CachingCloudController cloudController = new CachingCloudController(fake, 10, 1, TimeUnit.MINUTES);
+
+		final Application loaded = cloudController.getApplication(TOKEN, GUID);
+		loaded.setName("changed");
+		loaded.set("buildpack", "changed");
+		final Application cached = cloudController.getApplication(TOKEN, GUID);
+		assertEquals(cached.getName(), "app");
+		assertEquals(cached.any().get("buildpack"), "java");
+		assertEquals(cached.getSpaceGuid(), GUID);
+		cached.setMemory(1);
+		assertEquals(cloudController.getApplication(TOKEN, GUID).getMemory(), Integer.valueOf(256));
+		assertEquals(fake.applicationRequests.get(), 1);
+
+		final ServiceInstance instance = cloudController.getServiceInstance(TOKEN, GUID);
+		((ObjectNode) instance.getCredentials()).put("password", "changed");
+		assertEquals(cloudController.getServiceInstance(TOKEN, GUID).getCredentials().get("password").asText(), "secret");
+	}
+
+	@Test
+	public void lookupRacingAnUpdateDoesNotCacheTheOldResource() throws Exception {
+		final FakeCloudController fake = new FakeCloudController();
+		final CachingCloudController cloudController = new CachingCloudController(fake, 10, 1, TimeUnit.MINUTES);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// The lookup reads the application before the update but finishes after it
+			fake.lookupRead = new CountDownLatch(1);
+			fake.lookupReturns = new CountDownLatch(1);
+			final Future<Application> lookup = executor.submit(() -> cloudController.getApplication(TOKEN, GUID));
+			assertTrue(fake.lookupRead.await(5, TimeUnit.SECONDS));
+			cloudController.updateApplication(TOKEN, GUID, new Application("renamed", GUID, 256, 1, 1024, "STARTED"));
+			fake.lookupReturns.countDown();
+			assertEquals(lookup.get(5, TimeUnit.SECONDS).getName(), "app");
+
+			fake.lookupRead = null;
+			fake.lookupReturns = null;
+			assertEquals(cloudController.getApplication(TOKEN, GUID).getName(), "renamed");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class FakeCloudController extends DelegatingCloudController {
+		final AtomicInteger applicationRequests = new AtomicInteger();
+		volatile Application application = application("app");
+		volatile CountDownLatch lookupRead;
+		volatile CountDownLatch lookupReturns;
+
+		FakeCloudController() {
+			super(new DefaultCloudController(null, "http://localhost"));
+		}
+
+		private static Application application(String name) {
+			final Application application = new Application(name, GUID, 256, 1, 1024, "STARTED");
+			application.set("buildpack", "java");
+			return application;
+		}
+
+		@Override
+		public Application getApplication(Token token, UUID applicationGuid) {
+			applicationRequests.incrementAndGet();
+			final Application read = application(application.getName());
+			final CountDownLatch lookupRead = this.lookupRead;
+			if (lookupRead != null) {
+				lookupRead.countDown();
+				try {
+					lookupReturns.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return read;
+		}
+
+		@Override
+		public Application updateApplication(Token token, UUID applicationGuid, Application application) {
+			this.application = application;
+			return application;
+		}
+
+		@Override
+		public ServiceInstance getServiceInstance(Token token, UUID instanceGuid) {
+			final ObjectNode credentials = JsonNodeFactory.instance.objectNode();
+			credentials.put("password", "secret");
+			return new ServiceInstance("db", credentials, GUID, GUID, null);
+		}
+	}
+}
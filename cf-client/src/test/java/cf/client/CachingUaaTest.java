@@ -0,0 +1,107 @@
+package cf.client;
+
+import cf.client.model.UaaUser;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class CachingUaaTest {
+
+	private static final Token TOKEN = Token.parseAuthorization("bearer test");
+
+	@Test
+	public void cachesFoundAndNotFoundUsersIgnoringCase() {
+		final FakeUaa fake = new FakeUaa();
+		fake.createUser(TOKEN, "Bob", "secret", "uaa");
+		final CachingUaa uaa = new CachingUaa(fake, 10, 1, 1, TimeUnit.MINUTES);
+
+		assertEquals(uaa.getUser(TOKEN, "bob").getUsername(), "Bob");
+		assertEquals(uaa.getUser(TOKEN, "BOB").getUsername(), "Bob");
+		assertNull(uaa.getUser(TOKEN, "alice"));
+		assertNull(uaa.getUser(TOKEN, "alice"));
+		assertEquals(fake.lookups.get(), 2);
+
+		final Map<String, UaaUser> users = uaa.getUsers(TOKEN, Arrays.asList("bOb", "alice", "carol"));
+		assertEquals(users.keySet(), Collections.singleton("bOb"));
+		assertEquals(fake.lookups.get(), 3);
+	}
+
+	@Test
+	public void lookupRacingCreateUserDoesNotCacheNotFound() throws Exception {
+		final FakeUaa fake = new FakeUaa();
+		final CachingUaa uaa = new CachingUaa(fake, 10, 1, 1, TimeUnit.MINUTES);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// The lookup misses the user but only returns once the user has been created
+			fake.lookupRead = new CountDownLatch(1);
+			fake.lookupReturns = new CountDownLatch(1);
+			final Future<UaaUser> lookup = executor.submit(() -> uaa.getUser(TOKEN, "bob"));
+			assertTrue(fake.lookupRead.await(5, TimeUnit.SECONDS));
+			uaa.createUser(TOKEN, "bob", "secret", "uaa");
+			fake.lookupReturns.countDown();
+			assertNull(lookup.get(5, TimeUnit.SECONDS));
+
+			fake.lookupRead = null;
+			assertNotNull(uaa.getUser(TOKEN, "bob"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class FakeUaa implements Uaa {
+		final Map<String, UaaUser> users = new ConcurrentHashMap<>();
+		final AtomicInteger lookups = new AtomicInteger();
+		volatile CountDownLatch lookupRead;
+		volatile CountDownLatch lookupReturns;
+
+		@Override
+		public UaaUser getUser(Token token, String username) {
+			lookups.incrementAndGet();
+			final UaaUser user = users.get(username.toLowerCase());
+			final CountDownLatch lookupRead = this.lookupRead;
+			if (lookupRead != null) {
+				lookupRead.countDown();
+				try {
+					lookupReturns.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return user;
+		}
+
+		@Override
+		public UUID createUser(Token token, String username, String password, String origin) {
+			final UUID id = UUID.randomUUID();
+			users.put(username.toLowerCase(), new UaaUser(true, id, origin, username));
+			return id;
+		}
+
+		@Override
+		public Token getUserToken(String client, String username, String password) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Token getClientToken(String client, String clientSecret) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public TokenContents checkToken(String client, String clientSecret, Token token) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
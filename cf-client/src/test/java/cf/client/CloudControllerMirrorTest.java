@@ -0,0 +1,280 @@
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.Event;
+import cf.client.model.Organization;
+import cf.client.model.ServiceInstance;
+import cf.client.model.Space;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.*;
+
+public class CloudControllerMirrorTest {
+
+	private static final String QUERY_FROM = "q=timestamp%3E%3D";
+
+	private static final UUID ORGANIZATION = UUID.fromString("4f2ac0b5-5ff8-4bfa-a2d8-b6d4a1b4ab2b");
+	private static final UUID SPACE = UUID.fromString("b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d");
+	private static final UUID OTHER_SPACE = UUID.fromString("0e4b4c64-1ea1-4d5c-9bc0-2d6e8bcd7d6f");
+	private static final UUID APPLICATION = UUID.fromString("2f4d9a3e-2b43-4c6f-8a8e-5d0b8f7e4c11");
+	private static final UUID OTHER_APPLICATION = UUID.fromString("9c1b7e4a-6d2f-4f3a-b5c8-1e0a2d3c4b5f");
+	private static final UUID SERVICE_INSTANCE = UUID.fromString("7a6b5c4d-3e2f-4a1b-9c8d-7e6f5a4b3c2d");
+	private static final UUID SERVICE_PLAN = UUID.fromString("1d2c3b4a-5f6e-4d7c-8b9a-0f1e2d3c4b5a");
+
+	private FakeCloudController cloudController;
+	private CloudControllerMirror mirror;
+
+	@BeforeMethod
+	public void createMirror() {
+		cloudController = new FakeCloudController();
+		cloudController.organizations.put(ORGANIZATION, resource(ORGANIZATION, new Organization("org")));
+		cloudController.spaces.put(SPACE, resource(SPACE, new Space("development", ORGANIZATION)));
+		cloudController.spaces.put(OTHER_SPACE, resource(OTHER_SPACE, new Space("production", ORGANIZATION)));
+		cloudController.applications.put(APPLICATION, resource(APPLICATION, application("app", SPACE)));
+		cloudController.applications.put(OTHER_APPLICATION, resource(OTHER_APPLICATION, application("other-app", SPACE)));
+		cloudController.serviceInstances.put(SERVICE_INSTANCE, resource(SERVICE_INSTANCE, new ServiceInstance("db", null, SERVICE_PLAN, SPACE, null)));
+		mirror = new CloudControllerMirror(cloudController, () -> null);
+	}
+
+	@Test
+	public void sync() {
+		cloudController.event("2014-05-01T12:00:00Z", "app", APPLICATION);
+		mirror.sync();
+
+		assertEquals(mirror.getOrganizations().size(), 1);
+		assertEquals(mirror.getSpaces(ORGANIZATION).size(), 2);
+		assertEquals(mirror.getApplications(SPACE).size(), 2);
+		assertEquals(mirror.getServiceInstances(SPACE, SERVICE_PLAN).size(), 1);
+		assertEquals(mirror.getServiceInstancesOfPlan(SERVICE_PLAN).get(0).getGuid(), SERVICE_INSTANCE);
+		// The newest event is read from a single streamed page
+		assertEquals(cloudController.streamedEventUrls, Collections.singletonList("/v2/events?order-direction=desc&results-per-page=1"));
+		assertTrue(cloudController.eventUrls.isEmpty());
+	}
+
+	@Test
+	public void pollSkipsEventsAlreadySeenAtTheCursor() {
+		cloudController.event("2014-05-01T12:00:00Z", "app", APPLICATION);
+		mirror.sync();
+
+		cloudController.event("2014-05-01T12:00:00Z", "app", APPLICATION);
+		cloudController.event("2014-05-01T12:00:01Z", "app", OTHER_APPLICATION);
+		assertEquals(mirror.poll(), 2);
+		assertTrue(cloudController.lastEventUrl().endsWith(QUERY_FROM + "2014-05-01T12:00:00Z"));
+
+		// The second is asked for again, but the event in it has been applied already
+		assertEquals(mirror.poll(), 0);
+		assertTrue(cloudController.lastEventUrl().endsWith(QUERY_FROM + "2014-05-01T12:00:01Z"));
+
+		cloudController.event("2014-05-01T12:00:01Z", "app", APPLICATION);
+		assertEquals(mirror.poll(), 1);
+	}
+
+	@Test
+	public void pollReconcilesChangedResources() {
+		mirror.sync();
+
+		cloudController.applications.remove(APPLICATION);
+		cloudController.applications.put(OTHER_APPLICATION, resource(OTHER_APPLICATION, application("moved", OTHER_SPACE)));
+		cloudController.event("2014-05-01T12:00:00Z", "app", APPLICATION);
+		cloudController.event("2014-05-01T12:00:00Z", "app", OTHER_APPLICATION);
+		assertEquals(mirror.poll(), 2);
+
+		assertNull(mirror.getApplication(APPLICATION));
+		assertEquals(mirror.getApplication(OTHER_APPLICATION).getEntity().getName(), "moved");
+		assertTrue(mirror.getApplications(SPACE).isEmpty());
+		assertEquals(mirror.getApplications(OTHER_SPACE).size(), 1);
+		assertEquals(cloudController.bulkApplicationRequests, 1);
+	}
+
+	@Test
+	public void removingAnOrganizationRemovesItsChildren() {
+		mirror.sync();
+
+		cloudController.organizations.clear();
+		cloudController.event("2014-05-01T12:00:00Z", "organization", ORGANIZATION);
+		assertEquals(mirror.poll(), 1);
+
+		assertNull(mirror.getOrganization(ORGANIZATION));
+		assertNull(mirror.getSpace(SPACE));
+		assertNull(mirror.getSpace(OTHER_SPACE));
+		assertTrue(mirror.getSpaces(ORGANIZATION).isEmpty());
+		assertTrue(mirror.getApplications().isEmpty());
+		assertTrue(mirror.getApplications(SPACE).isEmpty());
+		assertTrue(mirror.getServiceInstances().isEmpty());
+		assertTrue(mirror.getServiceInstancesOfPlan(SERVICE_PLAN).isEmpty());
+	}
+
+	@Test
+	public void removingASpaceRemovesItsChildren() {
+		mirror.sync();
+
+		cloudController.spaces.remove(SPACE);
+		cloudController.event("2014-05-01T12:00:00Z", "space", SPACE);
+		assertEquals(mirror.poll(), 1);
+
+		assertNull(mirror.getSpace(SPACE));
+		assertNotNull(mirror.getSpace(OTHER_SPACE));
+		assertEquals(mirror.getSpaces(ORGANIZATION).size(), 1);
+		assertNull(mirror.getApplication(APPLICATION));
+		assertNull(mirror.getServiceInstance(SERVICE_INSTANCE));
+	}
+
+	@Test
+	public void rejectsTheCloudControllersExecutor() {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			((DefaultCloudController) cloudController.getDelegate()).setExecutor(executor);
+			try {
+				mirror.setExecutor(executor);
+				fail("Expected the cloud controller's executor to be rejected");
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Application application(String name, UUID spaceGuid) {
+		return new Application(name, spaceGuid, 256, 1, 1024, "STARTED");
+	}
+
+	private static <T> Resource<T> resource(UUID guid, T entity) {
+		return new Resource<>(entity, guid.toString(), URI.create("/v2/resources/" + guid), null, null);
+	}
+
+	/**
+	 * Answers the queries made by the mirror from maps of resources and a list of events.
+	 */
+	private static class FakeCloudController extends DelegatingCloudController {
+		final Map<UUID, Resource<Organization>> organizations = new LinkedHashMap<>();
+		final Map<UUID, Resource<Space>> spaces = new LinkedHashMap<>();
+		final Map<UUID, Resource<Application>> applications = new LinkedHashMap<>();
+		final Map<UUID, Resource<ServiceInstance>> serviceInstances = new LinkedHashMap<>();
+		final List<Resource<Event>> events = new ArrayList<>();
+		final List<String> eventUrls = new ArrayList<>();
+		final List<String> streamedEventUrls = new ArrayList<>();
+		int bulkApplicationRequests;
+
+		FakeCloudController() {
+			super(new DefaultCloudController(null, "http://localhost"));
+		}
+
+		void event(String timestamp, String acteeType, UUID actee) {
+			final UUID guid = UUID.randomUUID();
+			events.add(resource(guid, new Event("audit." + acteeType + ".update", null, "user", null, actee.toString(), acteeType, null, timestamp, null, null, null)));
+		}
+
+		String lastEventUrl() {
+			return eventUrls.get(eventUrls.size() - 1);
+		}
+
+		@Override
+		public RestCollection<Organization> getOrganizations(Token token) {
+			return collection(organizations.values());
+		}
+
+		@Override
+		public RestCollection<Space> getSpaces(Token token) {
+			return collection(spaces.values());
+		}
+
+		@Override
+		public Map<UUID, Resource<Space>> getSpaces(Token token, Collection<UUID> spaceGuids) {
+			return find(spaces, spaceGuids);
+		}
+
+		@Override
+		public RestCollection<Application> getApplications(Token token) {
+			return collection(applications.values());
+		}
+
+		@Override
+		public Map<UUID, Resource<Application>> getApplications(Token token, Collection<UUID> applicationGuids) {
+			bulkApplicationRequests++;
+			return find(applications, applicationGuids);
+		}
+
+		@Override
+		public RestCollection<ServiceInstance> getServiceInstances(Token token) {
+			return collection(serviceInstances.values());
+		}
+
+		@Override
+		public Map<UUID, Resource<ServiceInstance>> getServiceInstances(Token token, Collection<UUID> instanceGuids) {
+			return find(serviceInstances, instanceGuids);
+		}
+
+		@Override
+		public RestCollection<Event> getEvents(Token token, String url) {
+			eventUrls.add(url);
+			final int query = url.indexOf(QUERY_FROM);
+			final String from = query < 0 ? null : url.substring(query + QUERY_FROM.length());
+			final List<Resource<Event>> found = new ArrayList<>();
+			for (Resource<Event> event : events) {
+				if (from == null || event.getEntity().getTimestamp().compareTo(from) >= 0) {
+					found.add(event);
+				}
+			}
+			return collection(found);
+		}
+
+		@Override
+		public StreamingRestCollection<Event> streamEvents(Token token, String url) {
+			streamedEventUrls.add(url);
+			final List<Resource<Event>> newest = events.isEmpty() ? Collections.<Resource<Event>>emptyList() : Collections.singletonList(events.get(events.size() - 1));
+			return new StreamingRestCollection<>(() -> {
+				final Iterator<Resource<Event>> iterator = newest.iterator();
+				return new StreamingRestCollection.ResourceIterator<Event>() {
+					@Override
+					public int getTotalResults() {
+						return events.size();
+					}
+
+					@Override
+					public void close() {
+					}
+
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Resource<Event> next() {
+						return iterator.next();
+					}
+				};
+			});
+		}
+
+		private static <T> RestCollection<T> collection(Collection<Resource<T>> resources) {
+			return new RestCollection<>(resources.size(), new ArrayList<>(resources).iterator());
+		}
+
+		private static <T> Map<UUID, Resource<T>> find(Map<UUID, Resource<T>> resources, Collection<UUID> guids) {
+			final Map<UUID, Resource<T>> found = new HashMap<>();
+			for (UUID guid : guids) {
+				final Resource<T> resource = resources.get(guid);
+				if (resource != null) {
+					found.put(guid, resource);
+				}
+			}
+			return found;
+		}
+	}
+}
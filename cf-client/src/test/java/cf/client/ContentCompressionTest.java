@@ -0,0 +1,117 @@
+package cf.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.testng.Assert.*;
+
+public class ContentCompressionTest {
+
+	private static final byte[] BODY;
+
+	static {
+		final StringBuilder body = new StringBuilder("{\"resources\":[");
+		for (int i = 0; i < 100; i++) {
+			body.append(i > 0 ? "," : "").append("{\"entity\":{\"name\":\"space-").append(i).append("\"}}");
+		}
+		BODY = body.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void countsGzipBytes() throws Exception {
+		assertCounted("gzip", gzip(BODY));
+	}
+
+	@Test
+	public void countsZlibDeflateBytes() throws Exception {
+		assertCounted("deflate", deflate(BODY, false));
+	}
+
+	@Test
+	public void countsRawDeflateBytes() throws Exception {
+		assertCounted("deflate", deflate(BODY, true));
+	}
+
+	@Test
+	public void countsUncompressedBytes() throws Exception {
+		final CompressionStatistics statistics = new CompressionStatistics();
+		final HttpResponse response = ContentCompression.decompress(response(BODY, null), statistics);
+		assertEquals(EntityUtils.toByteArray(response.getEntity()), BODY);
+		assertEquals(statistics.getResponses(), 1);
+		assertEquals(statistics.getCompressedResponses(), 0);
+		assertEquals(statistics.getCompressedBytes(), BODY.length);
+		assertEquals(statistics.getUncompressedBytes(), BODY.length);
+	}
+
+	@Test
+	public void leavesResponsesDecompressedByTheClientAlone() throws Exception {
+		final CompressionStatistics statistics = new CompressionStatistics();
+		final HttpResponse response = response(gzip(BODY), "gzip");
+		final HttpEntity decompressing = new GzipDecompressingEntity(response.getEntity());
+		response.setEntity(decompressing);
+
+		assertSame(ContentCompression.decompress(response, statistics).getEntity(), decompressing);
+		assertEquals(EntityUtils.toByteArray(response.getEntity()), BODY);
+		assertEquals(statistics.getResponses(), 0);
+		assertEquals(statistics.getClientDecompressedResponses(), 1);
+	}
+
+	private static void assertCounted(String encoding, byte[] compressed) throws IOException {
+		final CompressionStatistics statistics = new CompressionStatistics();
+		final HttpResponse response = ContentCompression.decompress(response(compressed, encoding), statistics);
+		assertNull(response.getEntity().getContentEncoding());
+		assertNull(response.getFirstHeader("Content-Encoding"));
+		assertEquals(EntityUtils.toByteArray(response.getEntity()), BODY);
+		// Closing the content again, as releasing the connection does, must not count the response twice
+		response.getEntity().getContent().close();
+
+		assertEquals(statistics.getResponses(), 1);
+		assertEquals(statistics.getCompressedResponses(), 1);
+		assertEquals(statistics.getCompressedBytes(), compressed.length);
+		assertEquals(statistics.getUncompressedBytes(), BODY.length);
+	}
+
+	private static HttpResponse response(byte[] body, String encoding) {
+		final BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		final ByteArrayEntity entity = new ByteArrayEntity(body);
+		if (encoding != null) {
+			entity.setContentEncoding(encoding);
+			response.setHeader("Content-Encoding", encoding);
+		}
+		response.setEntity(entity);
+		return response;
+	}
+
+	private static byte[] gzip(byte[] body) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (OutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] body, boolean raw) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+		try (OutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+			deflate.write(body);
+		} finally {
+			deflater.end();
+		}
+		return out.toByteArray();
+	}
+}
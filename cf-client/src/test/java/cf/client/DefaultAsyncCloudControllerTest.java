@@ -0,0 +1,56 @@
+package cf.client;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class DefaultAsyncCloudControllerTest {
+
+	@Test
+	public void rejectsTheExecutorOfADecoratedCloudController() {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final DefaultCloudController cloudController = new DefaultCloudController(null, "http://localhost");
+			cloudController.setExecutor(executor);
+			final CloudController decorated = new ResilientCloudController(cloudController, new ResiliencePolicy());
+			try {
+				new DefaultAsyncCloudController(decorated, executor);
+				fail("Expected the shared executor to be rejected");
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void requestsFailAsynchronously() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final DefaultCloudController cloudController = new DefaultCloudController(null, "http://localhost");
+		final AsyncCloudController asyncCloudController = new DefaultAsyncCloudController(cloudController, executor);
+
+		cloudController.setExecutor(executor);
+		assertFailure(asyncCloudController.getInfo(), IllegalStateException.class);
+
+		cloudController.setExecutor(null);
+		executor.shutdown();
+		assertFailure(asyncCloudController.getInfo(), RejectedExecutionException.class);
+	}
+
+	private static void assertFailure(CompletableFuture<?> future, Class<? extends Throwable> type) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected the request to fail");
+		} catch (ExecutionException e) {
+			assertTrue(type.isInstance(e.getCause()), "Unexpected failure " + e.getCause());
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.Space;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.testng.Assert.*;
+
+public class DefaultCloudControllerTest {
+
+	private static final Token TOKEN = Token.parseAuthorization("bearer test");
+	private static final UUID APPLICATION = UUID.fromString("2f4d9a3e-2b43-4c6f-8a8e-5d0b8f7e4c11");
+	private static final String ENTITY_TAG = "\"1\"";
+
+	@Test
+	public void notModifiedReturnsThePreviousResource() {
+		final FakeHttpClient httpClient = new FakeHttpClient();
+		final DefaultCloudController cloudController = new DefaultCloudController(httpClient, "http://localhost");
+		cloudController.setConditionalRequestCacheSize(10);
+
+		final Application application = cloudController.getApplication(TOKEN, APPLICATION);
+		assertEquals(application.getName(), "app");
+		assertSame(cloudController.getApplication(TOKEN, APPLICATION), application);
+		assertEquals(httpClient.entityTags, Arrays.asList(null, ENTITY_TAG));
+	}
+
+	@Test
+	public void conditionalRequestsAreDisabledByDefault() {
+		final FakeHttpClient httpClient = new FakeHttpClient();
+		final DefaultCloudController cloudController = new DefaultCloudController(httpClient, "http://localhost");
+
+		final Application application = cloudController.getApplication(TOKEN, APPLICATION);
+		assertNotSame(cloudController.getApplication(TOKEN, APPLICATION), application);
+		assertEquals(httpClient.entityTags, Arrays.asList(null, null));
+	}
+
+	@Test
+	public void guidLookupsAreBatched() {
+		final FakeHttpClient httpClient = new FakeHttpClient();
+		final DefaultCloudController cloudController = new DefaultCloudController(httpClient, "http://localhost");
+		final List<UUID> guids = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			guids.add(new UUID(1, i));
+		}
+		// A guid the Cloud Controller doesn't know is left out
+		guids.add(new UUID(2, 0));
+		guids.add(new UUID(1, 0));
+
+		final Map<UUID, Resource<Space>> spaces = cloudController.getSpaces(TOKEN, guids);
+		assertEquals(spaces.size(), 100);
+		assertEquals(spaces.get(new UUID(1, 42)).getEntity().getName(), "space-" + new UUID(1, 42));
+		assertFalse(spaces.containsKey(new UUID(2, 0)));
+		assertTrue(httpClient.queries.size() > 1, "Expected the guids to be split over several queries");
+		for (String query : httpClient.queries) {
+			assertTrue(query.length() <= 1800, "Query too long: " + query.length());
+		}
+		assertEquals(cloudController.getSpaces(TOKEN, Collections.<UUID>emptyList()).size(), 0);
+	}
+
+	/**
+	 * Serves an application that carries an entity tag, and the spaces whose guids have a most significant bits of 1.
+	 */
+	private static class FakeHttpClient extends CloseableHttpClient {
+		final List<String> entityTags = new CopyOnWriteArrayList<>();
+		final List<String> queries = new CopyOnWriteArrayList<>();
+
+		@Override
+		protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) {
+			final String uri = ((HttpUriRequest) request).getURI().toString();
+			final FakeResponse response;
+			if (uri.contains("/v2/apps/")) {
+				final Header ifNoneMatch = request.getFirstHeader(HttpHeaders.IF_NONE_MATCH);
+				entityTags.add(ifNoneMatch == null ? null : ifNoneMatch.getValue());
+				if (ifNoneMatch != null && ifNoneMatch.getValue().equals(ENTITY_TAG)) {
+					return new FakeResponse(HttpStatus.SC_NOT_MODIFIED, null);
+				}
+				response = new FakeResponse(HttpStatus.SC_OK, "{\"metadata\":{\"guid\":\"" + APPLICATION + "\",\"url\":\"/v2/apps/" + APPLICATION
+						+ "\"},\"entity\":{\"name\":\"app\",\"space_guid\":\"" + new UUID(1, 0) + "\",\"memory\":256,\"instances\":1}}");
+				response.setHeader(HttpHeaders.ETAG, ENTITY_TAG);
+			} else {
+				queries.add(uri.substring("http://localhost".length()));
+				response = new FakeResponse(HttpStatus.SC_OK, spaces(uri));
+			}
+			return response;
+		}
+
+		private static String spaces(String uri) {
+			final String list = uri.substring(uri.indexOf("IN%20") + "IN%20".length()).split("&")[0];
+			final Set<UUID> known = new HashSet<>();
+			for (String guid : list.split(",")) {
+				final UUID uuid = UUID.fromString(guid);
+				if (uuid.getMostSignificantBits() == 1) {
+					known.add(uuid);
+				}
+			}
+			final StringBuilder body = new StringBuilder("{\"total_results\":").append(known.size())
+					.append(",\"total_pages\":1,\"prev_url\":null,\"next_url\":null,\"resources\":[");
+			boolean first = true;
+			for (UUID guid : known) {
+				body.append(first ? "" : ",").append("{\"metadata\":{\"guid\":\"").append(guid).append("\",\"url\":\"/v2/spaces/").append(guid)
+						.append("\",\"created_at\":\"2014-05-01T12:00:00Z\",\"updated_at\":null},")
+						.append("\"entity\":{\"name\":\"space-").append(guid).append("\",\"organization_guid\":\"").append(new UUID(0, 0)).append("\"}}");
+				first = false;
+			}
+			return body.append("]}").toString();
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public org.apache.http.params.HttpParams getParams() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public org.apache.http.conn.ClientConnectionManager getConnectionManager() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class FakeResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+		FakeResponse(int statusCode, String body) {
+			super(HttpVersion.HTTP_1_1, statusCode, "Status " + statusCode);
+			if (body != null) {
+				setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
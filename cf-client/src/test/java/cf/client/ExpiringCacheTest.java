@@ -0,0 +1,62 @@
+package cf.client;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class ExpiringCacheTest {
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		final ExpiringCache<String, String> cache = new ExpiringCache<>(2);
+		cache.put("a", "A", 1, TimeUnit.MINUTES);
+		cache.put("b", "B", 1, TimeUnit.MINUTES);
+		assertEquals(cache.get("a"), "A");
+		cache.put("c", "C", 1, TimeUnit.MINUTES);
+
+		assertNull(cache.get("b"));
+		assertEquals(cache.get("a"), "A");
+		assertEquals(cache.get("c"), "C");
+		assertEquals(cache.size(), 2);
+		assertEquals(cache.getEvictions(), 1);
+		assertEquals(cache.getHits(), 3);
+		assertEquals(cache.getMisses(), 1);
+	}
+
+	@Test
+	public void expiresEntries() throws Exception {
+		final ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+		cache.put("a", "A", 1, TimeUnit.MILLISECONDS);
+		cache.put("b", "B", 1, TimeUnit.MINUTES);
+		Thread.sleep(5);
+		assertNull(cache.get("a"));
+		assertEquals(cache.get("b"), "B");
+		assertEquals(cache.size(), 1);
+	}
+
+	@Test
+	public void invalidate() {
+		final ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+		cache.put("a", "A", 1, TimeUnit.MINUTES);
+		cache.put("b", "B", 1, TimeUnit.MINUTES);
+		cache.invalidate("a");
+		assertNull(cache.get("a"));
+		assertEquals(cache.get("b"), "B");
+		cache.invalidateAll();
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void doesNotStoreValuesLoadedBeforeAnInvalidation() {
+		final ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+		final long generation = cache.generation();
+		cache.invalidate("a");
+		cache.putUnlessInvalidated("a", "stale", 1, TimeUnit.MINUTES, generation);
+		assertNull(cache.get("a"));
+
+		cache.putUnlessInvalidated("a", "A", 1, TimeUnit.MINUTES, cache.generation());
+		assertEquals(cache.get("a"), "A");
+	}
+}
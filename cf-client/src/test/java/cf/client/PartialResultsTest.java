@@ -0,0 +1,96 @@
+package cf.client;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class PartialResultsTest {
+
+	@Test
+	public void failuresDoNotFailTheOtherRequests() {
+		final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+		final PartialResults<String, Integer> results = PartialResults.collect(Arrays.asList("a", "b", "c", "a"), key -> {
+			requests.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+			if (key.equals("b")) {
+				throw new IllegalStateException(key);
+			}
+			return key.length();
+		});
+		assertFalse(results.isComplete());
+		assertEquals(new ArrayList<>(results.getResults().keySet()), Arrays.asList("a", "c"));
+		assertEquals(results.getErrors().keySet(), Collections.singleton("b"));
+		assertTrue(results.getErrors().get("b") instanceof IllegalStateException);
+		// Duplicate keys are requested once
+		assertEquals(requests.get("a").get(), 1);
+	}
+
+	@Test
+	public void collectsConcurrentlyInKeyOrder() {
+		final List<Integer> keys = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			keys.add(i);
+		}
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final PartialResults<Integer, Integer> results = PartialResults.collect(keys, key -> {
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} finally {
+					inFlight.decrementAndGet();
+				}
+				if (key % 10 == 0) {
+					throw new IllegalStateException();
+				}
+				return key * 2;
+			}, executor, 4);
+			assertEquals(results.getResults().size(), 45);
+			assertEquals(results.getErrors().size(), 5);
+			assertEquals(new ArrayList<>(results.getErrors().keySet()), Arrays.asList(0, 10, 20, 30, 40));
+			assertEquals(results.getResults().values().iterator().next(), Integer.valueOf(2));
+			assertTrue(maxInFlight.get() <= 4, "At most 4 requests in flight but saw " + maxInFlight.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void keepsNullResults() {
+		final PartialResults<String, Void> results = PartialResults.collect(Collections.singleton("delete"), key -> null);
+		assertTrue(results.isComplete());
+		assertTrue(results.getResults().containsKey("delete"));
+	}
+
+	@Test
+	public void retriesOnlyAcceptedErrors() {
+		final AtomicInteger attempts = new AtomicInteger();
+		final PartialResults<String, String> first = PartialResults.collect(Arrays.asList("transient", "permanent", "ok"), key -> {
+			if (!key.equals("ok")) {
+				throw new IllegalStateException(key);
+			}
+			return key;
+		});
+		final PartialResults<String, String> retried = first.retry(e -> e.getMessage().equals("transient"), key -> {
+			attempts.incrementAndGet();
+			return key;
+		});
+		assertEquals(attempts.get(), 1);
+		assertEquals(retried.getResults().keySet(), new HashSet<>(Arrays.asList("transient", "ok")));
+		assertEquals(retried.getErrors().keySet(), Collections.singleton("permanent"));
+	}
+}
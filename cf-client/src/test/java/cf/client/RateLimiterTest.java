@@ -0,0 +1,90 @@
+package cf.client;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class RateLimiterTest {
+
+	@Test
+	public void throttlesOnceTheBurstIsUsed() {
+		final RateLimiter rateLimiter = new RateLimiter(20, 5, 20, 5);
+		for (int i = 0; i < 5; i++) {
+			rateLimiter.acquire(RateLimiter.Priority.INTERACTIVE);
+		}
+		assertEquals(rateLimiter.getThrottledRequests(RateLimiter.Priority.INTERACTIVE), 0);
+
+		final long start = System.nanoTime();
+		rateLimiter.acquire(RateLimiter.Priority.INTERACTIVE);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30), "Expected to wait for a permit");
+		assertEquals(rateLimiter.getThrottledRequests(RateLimiter.Priority.INTERACTIVE), 1);
+		assertTrue(rateLimiter.getThrottledTime(RateLimiter.Priority.INTERACTIVE, TimeUnit.MILLISECONDS) >= 30);
+	}
+
+	@Test
+	public void backgroundRequestsAreLimitedToTheirOwnRate() {
+		final RateLimiter rateLimiter = new RateLimiter(1000, 100, 10, 2);
+		for (int i = 0; i < 2; i++) {
+			rateLimiter.acquire(RateLimiter.Priority.BACKGROUND);
+		}
+		assertEquals(rateLimiter.getThrottledRequests(RateLimiter.Priority.BACKGROUND), 0);
+
+		// Interactive requests still have the rest of the shared bucket
+		for (int i = 0; i < 50; i++) {
+			rateLimiter.acquire(RateLimiter.Priority.INTERACTIVE);
+		}
+		assertEquals(rateLimiter.getThrottledRequests(RateLimiter.Priority.INTERACTIVE), 0);
+
+		final long start = System.nanoTime();
+		RateLimiter.background(() -> {
+			rateLimiter.acquire();
+			return null;
+		});
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50), "Expected to wait for a background permit");
+		assertEquals(rateLimiter.getThrottledRequests(RateLimiter.Priority.BACKGROUND), 1);
+	}
+
+	@Test
+	public void backgroundRequestsWaitForInteractiveRequests() throws Exception {
+		final RateLimiter rateLimiter = new RateLimiter(10, 1, 10, 10);
+		rateLimiter.acquire(RateLimiter.Priority.INTERACTIVE);
+
+		final List<RateLimiter.Priority> order = new CopyOnWriteArrayList<>();
+		final Thread interactive = new Thread(() -> {
+			rateLimiter.acquire(RateLimiter.Priority.INTERACTIVE);
+			order.add(RateLimiter.Priority.INTERACTIVE);
+		});
+		interactive.start();
+		Thread.sleep(20);
+		final Thread background = new Thread(() -> {
+			rateLimiter.acquire(RateLimiter.Priority.BACKGROUND);
+			order.add(RateLimiter.Priority.BACKGROUND);
+		});
+		background.start();
+		interactive.join(5000);
+		background.join(5000);
+		assertEquals(order, Arrays.asList(RateLimiter.Priority.INTERACTIVE, RateLimiter.Priority.BACKGROUND));
+	}
+
+	@Test
+	public void priorityIsRestored() {
+		assertEquals(RateLimiter.currentPriority(), RateLimiter.Priority.INTERACTIVE);
+		final RateLimiter.Priority inside = RateLimiter.background(RateLimiter::currentPriority);
+		assertEquals(inside, RateLimiter.Priority.BACKGROUND);
+		assertEquals(RateLimiter.currentPriority(), RateLimiter.Priority.INTERACTIVE);
+		try {
+			RateLimiter.background(() -> {
+				throw new IllegalStateException();
+			});
+			fail("Expected the exception to be thrown");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertEquals(RateLimiter.currentPriority(), RateLimiter.Priority.INTERACTIVE);
+	}
+}
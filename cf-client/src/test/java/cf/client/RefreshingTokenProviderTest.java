@@ -0,0 +1,137 @@
+package cf.client;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class RefreshingTokenProviderTest {
+
+	private RecordingScheduler scheduler;
+	private AtomicInteger fetches;
+	private Deque<RuntimeException> failures;
+	private volatile long expiresIn;
+
+	@BeforeMethod
+	public void createScheduler() {
+		scheduler = new RecordingScheduler();
+		fetches = new AtomicInteger();
+		failures = new ArrayDeque<>();
+	}
+
+	@AfterMethod
+	public void shutdownScheduler() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void refreshesShortLivedTokenAtHalfItsLifetime() {
+		expiresIn = 300;
+		final RefreshingTokenProvider provider = provider();
+		final Token token = provider.get();
+		assertSame(provider.get(), token);
+		assertEquals(fetches.get(), 1);
+
+		// Refreshed at half the lifetime, moved ahead by at most the one minute jitter
+		assertBetween(scheduler.lastDelay, TimeUnit.SECONDS.toMillis(90), TimeUnit.SECONDS.toMillis(150));
+
+		scheduler.runLast();
+		assertEquals(fetches.get(), 2);
+		assertNotSame(provider.get(), token);
+	}
+
+	@Test
+	public void refreshesLongLivedTokenAheadOfExpiry() {
+		expiresIn = TimeUnit.HOURS.toSeconds(12);
+		provider().get();
+		final long lifetime = TimeUnit.HOURS.toMillis(12);
+		assertBetween(scheduler.lastDelay, lifetime - TimeUnit.MINUTES.toMillis(16) - 1000, lifetime - TimeUnit.MINUTES.toMillis(15));
+	}
+
+	@Test
+	public void failedRefreshIsRetriedAndKeepsTheCurrentToken() {
+		expiresIn = 300;
+		final RefreshingTokenProvider provider = provider();
+		final Token token = provider.get();
+
+		failures.add(new RuntimeException("UAA unavailable"));
+		scheduler.runLast();
+		assertEquals(scheduler.lastDelay, TimeUnit.SECONDS.toMillis(30));
+		assertSame(provider.get(), token);
+		assertEquals(fetches.get(), 2);
+	}
+
+	@Test
+	public void expiredTokenIsFetchedByTheCaller() {
+		// A token with less than a quarter of its lifetime left isn't usable
+		expiresIn = 0;
+		final RefreshingTokenProvider provider = provider();
+		final Token token = provider.get();
+		assertNotSame(provider.get(), token);
+		assertEquals(fetches.get(), 2);
+	}
+
+	@Test
+	public void closeStopsRefreshing() {
+		expiresIn = 300;
+		final RefreshingTokenProvider provider = provider();
+		provider.get();
+		final ScheduledFuture<?> refresh = scheduler.lastFuture;
+		provider.close();
+		assertTrue(refresh.isCancelled());
+		scheduler.runLast();
+		assertEquals(fetches.get(), 1);
+	}
+
+	private RefreshingTokenProvider provider() {
+		return new RefreshingTokenProvider(() -> {
+			final int fetch = fetches.incrementAndGet();
+			final RuntimeException failure = failures.poll();
+			if (failure != null) {
+				throw failure;
+			}
+			final String json = "{\"access_token\":\"token-" + fetch + "\",\"token_type\":\"bearer\",\"expires_in\":" + expiresIn
+					+ ",\"scope\":\"cloud_controller.admin\",\"jti\":\"" + fetch + "\"}";
+			return Token.parseJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+		}, scheduler);
+	}
+
+	private static void assertBetween(long actual, long min, long max) {
+		assertTrue(actual >= min && actual <= max, actual + " not between " + min + " and " + max);
+	}
+
+	/**
+	 * Records the refreshes scheduled rather than running them, so the test can run them at once.
+	 */
+	private static class RecordingScheduler extends ScheduledThreadPoolExecutor {
+		private volatile Runnable lastCommand;
+		private volatile long lastDelay = -1;
+		private volatile ScheduledFuture<?> lastFuture;
+
+		RecordingScheduler() {
+			super(1);
+		}
+
+		@Override
+		public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+			lastCommand = command;
+			lastDelay = unit.toMillis(delay);
+			lastFuture = super.schedule(command, 1, TimeUnit.DAYS);
+			return lastFuture;
+		}
+
+		void runLast() {
+			lastCommand.run();
+		}
+	}
+}
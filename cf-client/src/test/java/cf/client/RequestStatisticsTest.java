@@ -0,0 +1,87 @@
+package cf.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class RequestStatisticsTest {
+
+	private static final String APP = "/v2/apps/2f4d9a3e-2b43-4c6f-8a8e-5d0b8f7e4c11";
+
+	@Test
+	public void guidsAreReplacedInEndpoints() {
+		assertEquals(InstrumentedRequests.endpointTemplate(APP + "/stats?inline-relations-depth=1"), "/v2/apps/{guid}/stats");
+		assertEquals(InstrumentedRequests.endpointTemplate("/v2/apps?q=name:app"), "/v2/apps");
+	}
+
+	@Test
+	public void recordsRequestsFailuresAndBytesPerEndpoint() throws Exception {
+		final RequestStatistics statistics = new RequestStatistics();
+		final HttpResponse response = InstrumentedRequests.execute(httpClient(null), new HttpGet("http://localhost" + APP), statistics);
+		assertEquals(EntityUtils.toByteArray(response.getEntity()).length, 42);
+		try {
+			InstrumentedRequests.execute(httpClient(new ConnectException()), new HttpGet("http://localhost" + APP), statistics);
+			fail("Expected the failure to be thrown");
+		} catch (ConnectException e) {
+			// Expected
+		}
+
+		@SuppressWarnings("unchecked")
+		final Map<String, Object> app = (Map<String, Object>) statistics.getStatistics().get("GET /v2/apps/{guid}");
+		assertEquals(app.get("requests"), 2L);
+		assertEquals(app.get("failures"), 1L);
+		assertEquals(((Map<?, ?>) app.get("status_codes")).get("200"), 1L);
+		assertEquals(app.get("bytes_read"), 42L);
+	}
+
+	@Test
+	public void percentilesAreBucketUpperBounds() {
+		final RequestStatistics statistics = new RequestStatistics();
+		for (int i = 0; i < 90; i++) {
+			statistics.requestCompleted("GET", "/v2/info", 200, TimeUnit.MILLISECONDS.toNanos(3));
+		}
+		for (int i = 0; i < 10; i++) {
+			statistics.requestCompleted("GET", "/v2/info", 200, TimeUnit.MILLISECONDS.toNanos(700));
+		}
+		final RequestStatistics.LatencyHistogram latency = statistics.getLatency("GET", "/v2/info");
+		assertEquals(latency.getCount(), 100);
+		assertEquals(latency.getPercentile(50), 5);
+		assertEquals(latency.getPercentile(90), 5);
+		assertEquals(latency.getPercentile(99), 700);
+		assertEquals(latency.getMax(TimeUnit.MILLISECONDS), 700);
+		assertNull(statistics.getLatency("GET", "/v2/apps"));
+
+		statistics.reset();
+		assertTrue(statistics.getStatistics().isEmpty());
+	}
+
+	/**
+	 * Returns an HTTP client that responds with 42 bytes or fails with the given exception.
+	 */
+	private static HttpClient httpClient(IOException failure) {
+		return (HttpClient) Proxy.newProxyInstance(HttpClient.class.getClassLoader(), new Class<?>[] {HttpClient.class}, (proxy, method, args) -> {
+			if (!method.getName().equals("execute")) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			final BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+			response.setEntity(new ByteArrayEntity(new byte[42]));
+			return response;
+		});
+	}
+}
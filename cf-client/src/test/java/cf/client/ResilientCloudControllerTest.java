@@ -0,0 +1,250 @@
+package cf.client;
+
+import cf.client.model.ApplicationInstanceStats;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class ResilientCloudControllerTest {
+
+	private static final Token TOKEN = Token.parseAuthorization("bearer test");
+
+	private ResiliencePolicy policy;
+
+	@BeforeMethod
+	public void createPolicy() {
+		policy = new ResiliencePolicy();
+		policy.setMaxAttempts(3);
+		policy.setBackoff(0, 0, TimeUnit.MILLISECONDS);
+		policy.setCircuitBreaker(0, 0, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	public void retriesTransientFailures() {
+		final AtomicInteger calls = new AtomicInteger();
+		final String result = policy.call("endpoint", true, () -> {
+			if (calls.incrementAndGet() < 3) {
+				throw response(503);
+			}
+			return "ok";
+		});
+		assertEquals(result, "ok");
+		assertEquals(calls.get(), 3);
+	}
+
+	@Test
+	public void givesUpAfterMaxAttempts() {
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			policy.run("endpoint", true, () -> {
+				calls.incrementAndGet();
+				throw new RuntimeException(new SocketTimeoutException());
+			});
+			fail("Expected the last failure to be thrown");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof SocketTimeoutException);
+		}
+		assertEquals(calls.get(), 3);
+	}
+
+	@Test
+	public void doesNotRetryClientErrorsOrUnparseableResponses() {
+		assertAttempts(response(400), true, 1);
+		assertAttempts(new RuntimeException(new JsonParseException("Unexpected end-of-input", null)), true, 1);
+		assertAttempts(new RuntimeException(new IOException("Stream closed")), true, 1);
+	}
+
+	@Test
+	public void retriesNonIdempotentCallsOnlyWhenNotProcessed() {
+		assertAttempts(new RuntimeException(new SocketTimeoutException()), false, 1);
+		assertAttempts(new RuntimeException(new ConnectException()), false, 3);
+		assertAttempts(response(429), false, 3);
+	}
+
+	@Test
+	public void circuitOpensAfterConsecutiveFailuresAndClosesAfterTrial() throws Exception {
+		policy.setMaxAttempts(1);
+		policy.setCircuitBreaker(2, 50, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 2; i++) {
+			assertAttempts(response(503), true, 1);
+		}
+		assertTrue(policy.isCircuitOpen("endpoint"));
+		try {
+			policy.call("endpoint", true, () -> "ok");
+			fail("Expected the call to be rejected while the circuit is open");
+		} catch (RejectedCallException e) {
+			// Expected
+		}
+		assertFalse(policy.isCircuitOpen("other"));
+
+		Thread.sleep(100);
+		assertEquals(policy.call("endpoint", true, () -> "ok"), "ok");
+		assertFalse(policy.isCircuitOpen("endpoint"));
+	}
+
+	@Test
+	public void failedTrialReopensCircuit() throws Exception {
+		policy.setMaxAttempts(1);
+		policy.setCircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+		assertAttempts(response(503), true, 1);
+		Thread.sleep(100);
+		assertAttempts(response(503), true, 1);
+		assertTrue(policy.isCircuitOpen("endpoint"));
+	}
+
+	@Test
+	public void errorInTrialReleasesIt() throws Exception {
+		policy.setMaxAttempts(1);
+		policy.setCircuitBreaker(1, 50, TimeUnit.MILLISECONDS);
+		assertAttempts(response(503), true, 1);
+		Thread.sleep(100);
+		try {
+			policy.run("endpoint", true, () -> {
+				throw new AssertionError();
+			});
+			fail("Expected the error to be thrown");
+		} catch (AssertionError e) {
+			// Expected
+		}
+		assertEquals(policy.call("endpoint", true, () -> "ok"), "ok");
+	}
+
+	@Test
+	public void notFoundOnRetriedDeleteIsSuccess() {
+		final FakeCloudController fake = new FakeCloudController();
+		final CloudController cloudController = new ResilientCloudController(fake, policy);
+		final UUID guid = UUID.randomUUID();
+
+		// The first attempt deletes the resource but its response is lost
+		fake.failures(new RuntimeException(new SocketTimeoutException()), response(404));
+		cloudController.deleteServiceInstance(TOKEN, guid);
+		fake.failures(new RuntimeException(new SocketTimeoutException()), response(404));
+		cloudController.purgeServiceInstance(TOKEN, guid);
+		fake.failures(new RuntimeException(new SocketTimeoutException()), response(404));
+		cloudController.unbindSecurityGroup(TOKEN, guid, guid);
+
+		fake.failures(response(404));
+		try {
+			cloudController.deleteServiceInstance(TOKEN, guid);
+			fail("Expected a 404 on the first attempt to be thrown");
+		} catch (UnexpectedResponseException e) {
+			assertEquals(e.getStatusCode(), 404);
+		}
+	}
+
+	@Test
+	public void bulkStatsRetriesOnlyTransientFailures() {
+		final UUID stopped = new UUID(0, 1);
+		final UUID flaky = new UUID(0, 2);
+		final UUID running = new UUID(0, 3);
+		final FakeCloudController fake = new FakeCloudController();
+		fake.failStats(stopped, response(400), Integer.MAX_VALUE);
+		fake.failStats(flaky, response(503), 1);
+		final CloudController cloudController = new ResilientCloudController(fake, policy);
+
+		final PartialResults<UUID, Map<String, ApplicationInstanceStats>> stats = cloudController.getApplicationInstanceStats(TOKEN, Arrays.asList(stopped, flaky, running));
+		assertEquals(stats.getResults().keySet(), new HashSet<>(Arrays.asList(flaky, running)));
+		assertEquals(stats.getErrors().keySet(), Collections.singleton(stopped));
+		assertEquals(fake.statsRequests.get(stopped).get(), 1);
+		assertEquals(fake.statsRequests.get(flaky).get(), 2);
+		assertEquals(fake.statsRequests.get(running).get(), 1);
+	}
+
+	private void assertAttempts(RuntimeException failure, boolean idempotent, int expectedAttempts) {
+		final AtomicInteger calls = new AtomicInteger();
+		try {
+			policy.run("endpoint", idempotent, () -> {
+				calls.incrementAndGet();
+				throw failure;
+			});
+			fail("Expected the failure to be thrown");
+		} catch (RuntimeException e) {
+			assertSame(e, failure);
+		}
+		assertEquals(calls.get(), expectedAttempts, "Attempts for " + failure);
+	}
+
+	private static UnexpectedResponseException response(int statusCode) {
+		return new UnexpectedResponseException(new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, "Status " + statusCode));
+	}
+
+	/**
+	 * Fails each delete with the queued failures in turn, then succeeds, and fails the stats requests of an
+	 * application a given number of times.
+	 */
+	private static class FakeCloudController extends DelegatingCloudController {
+		private final Deque<RuntimeException> failures = new ArrayDeque<>();
+		private final Map<UUID, RuntimeException> statsFailures = new ConcurrentHashMap<>();
+		private final Map<UUID, Integer> statsFailureCounts = new ConcurrentHashMap<>();
+		final Map<UUID, AtomicInteger> statsRequests = new ConcurrentHashMap<>();
+
+		FakeCloudController() {
+			super(new DefaultCloudController(null, "http://localhost"));
+		}
+
+		void failures(RuntimeException... failures) {
+			this.failures.clear();
+			this.failures.addAll(Arrays.asList(failures));
+		}
+
+		void failStats(UUID applicationGuid, RuntimeException failure, int times) {
+			statsFailures.put(applicationGuid, failure);
+			statsFailureCounts.put(applicationGuid, times);
+		}
+
+		private void delete() {
+			final RuntimeException failure = failures.poll();
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
+		@Override
+		public void deleteServiceInstance(Token token, UUID instanceGuid) {
+			delete();
+		}
+
+		@Override
+		public void purgeServiceInstance(Token token, UUID instanceGuid) {
+			delete();
+		}
+
+		@Override
+		public void unbindSecurityGroup(Token token, UUID securityGroupGuid, UUID spaceGuid) {
+			delete();
+		}
+
+		@Override
+		public Map<String, ApplicationInstanceStats> getApplicationInstanceStats(Token token, UUID applicationGuid) {
+			final int request = statsRequests.computeIfAbsent(applicationGuid, guid -> new AtomicInteger()).incrementAndGet();
+			if (request <= statsFailureCounts.getOrDefault(applicationGuid, 0)) {
+				throw statsFailures.get(applicationGuid);
+			}
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public PartialResults<UUID, Map<String, ApplicationInstanceStats>> getApplicationInstanceStats(Token token, Collection<UUID> applicationGuids) {
+			return PartialResults.collect(applicationGuids, applicationGuid -> getApplicationInstanceStats(token, applicationGuid));
+		}
+	}
+}
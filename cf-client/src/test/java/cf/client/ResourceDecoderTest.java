@@ -0,0 +1,104 @@
+package cf.client;
+
+import cf.client.model.Application;
+import cf.client.model.Route;
+import cf.client.model.Space;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+public class ResourceDecoderTest {
+
+	private static final String SPACES_PAGE = "{\n" +
+			"  \"total_results\": 3,\n" +
+			"  \"total_pages\": 2,\n" +
+			"  \"prev_url\": null,\n" +
+			"  \"next_url\": \"/v2/spaces?order-direction=asc&page=2&results-per-page=2\",\n" +
+			"  \"resources\": [\n" +
+			"    {\n" +
+			"      \"metadata\": {\n" +
+			"        \"guid\": \"b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d\",\n" +
+			"        \"url\": \"/v2/spaces/b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d\",\n" +
+			"        \"created_at\": \"2014-02-20T17:29:29Z\",\n" +
+			"        \"updated_at\": null\n" +
+			"      },\n" +
+			"      \"entity\": {\n" +
+			"        \"name\": \"development\",\n" +
+			"        \"organization_guid\": \"4f2ac0b5-5ff8-4bfa-a2d8-b6d4a1b4ab2b\",\n" +
+			"        \"developers_url\": \"/v2/spaces/b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d/developers\"\n" +
+			"      }\n" +
+			"    },\n" +
+			"    {\n" +
+			"      \"entity\": {\n" +
+			"        \"name\": \"production\",\n" +
+			"        \"organization_guid\": \"4f2ac0b5-5ff8-4bfa-a2d8-b6d4a1b4ab2b\"\n" +
+			"      },\n" +
+			"      \"metadata\": {\n" +
+			"        \"guid\": \"0e4b4c64-1ea1-4d5c-9bc0-2d6e8bcd7d6f\",\n" +
+			"        \"url\": \"/v2/spaces/0e4b4c64-1ea1-4d5c-9bc0-2d6e8bcd7d6f\",\n" +
+			"        \"created_at\": \"2014-02-21T09:00:00Z\"\n" +
+			"      }\n" +
+			"    }\n" +
+			"  ]\n" +
+			"}";
+
+	@Test
+	public void readPage() throws Exception {
+		final ResourceDecoder.Page<Space> page = new ResourceDecoder().readPage(new ByteArrayInputStream(SPACES_PAGE.getBytes(StandardCharsets.UTF_8)), Space.class);
+		assertEquals(page.getTotalResults(), 3);
+		assertEquals(page.getTotalPages(), Integer.valueOf(2));
+		assertEquals(page.getNextUri(), "/v2/spaces?order-direction=asc&page=2&results-per-page=2");
+		assertEquals(page.getResources().size(), 2);
+
+		final Resource<Space> development = page.getResources().get(0);
+		assertEquals(development.getGuid(), UUID.fromString("b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d"));
+		assertEquals(development.getUri().toString(), "/v2/spaces/b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d");
+		assertEquals(development.getCreated().getTime(), 1392917369000L);
+		assertNull(development.getUpdated());
+		assertEquals(development.getEntity().getName(), "development");
+		assertEquals(development.getEntity().getOrganizationGuid(), UUID.fromString("4f2ac0b5-5ff8-4bfa-a2d8-b6d4a1b4ab2b"));
+
+		// Entity before metadata
+		final Resource<Space> production = page.getResources().get(1);
+		assertEquals(production.getGuidString(), "0e4b4c64-1ea1-4d5c-9bc0-2d6e8bcd7d6f");
+		assertEquals(production.getEntity().getName(), "production");
+	}
+
+	@Test
+	public void readLastPage() throws Exception {
+		final String json = "{\"total_results\":0,\"total_pages\":0,\"prev_url\":null,\"next_url\":null,\"resources\":[]}";
+		final ResourceDecoder.Page<Space> page = new ResourceDecoder().readPage(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), Space.class);
+		assertEquals(page.getTotalResults(), 0);
+		assertNull(page.getNextUri());
+		assertTrue(page.getResources().isEmpty());
+	}
+
+	@Test
+	public void readInlinedRelations() throws Exception {
+		final String json = "{\"total_results\":1,\"total_pages\":1,\"next_url\":null,\"resources\":[{" +
+				"\"metadata\":{\"guid\":\"6b3a2f9e-5bd5-4b2b-9d71-1d0d3f0bde6a\"}," +
+				"\"entity\":{\"host\":\"www\",\"space_guid\":\"b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d\"," +
+				"\"space\":{\"metadata\":{\"guid\":\"b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d\"},\"entity\":{\"name\":\"development\"}}," +
+				"\"apps_url\":\"/v2/routes/6b3a2f9e-5bd5-4b2b-9d71-1d0d3f0bde6a/apps\"," +
+				"\"apps\":[{\"metadata\":{\"guid\":\"0e4b4c64-1ea1-4d5c-9bc0-2d6e8bcd7d6f\"},\"entity\":{\"name\":\"web\",\"instances\":2}}]" +
+				"}}]}";
+		final ResourceDecoder.Page<Route> page = new ResourceDecoder(true).readPage(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), Route.class);
+		final Resource<Route> route = page.getResources().get(0);
+		assertEquals(route.getEntity().getHost(), "www");
+		assertFalse(route.getEntity().any().containsKey("space"));
+
+		final Resource<Space> space = route.getRelated("space", Space.class);
+		assertEquals(space.getGuidString(), "b8b8ecb6-3e6a-4a30-8b2b-cfbb7c6d3a0d");
+		assertEquals(space.getEntity().getName(), "development");
+
+		final List<Resource<Application>> apps = route.getRelatedList("apps", Application.class);
+		assertEquals(apps.size(), 1);
+		assertEquals(apps.get(0).getEntity().getName(), "web");
+		assertNull(route.getRelated("domain", Space.class));
+	}
+}
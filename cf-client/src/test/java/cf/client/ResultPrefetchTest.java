@@ -0,0 +1,154 @@
+package cf.client;
+
+import cf.client.model.Space;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.*;
+
+/**
+ * Iterates over a paged result many times with prefetching enabled and checks that no pages are lost.
+ */
+public class ResultPrefetchTest {
+
+	private static final int PAGES = 20;
+	private static final int RESULTS_PER_PAGE = 2;
+	private static final int RUNS = 1000;
+
+	private ExecutorService executor;
+
+	@BeforeClass
+	public void startExecutor() {
+		executor = Executors.newFixedThreadPool(8);
+	}
+
+	@AfterClass
+	public void stopExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void sequentialPrefetchReturnsEveryPage() {
+		assertEveryResultReturned(cloudController(1, false));
+		assertEveryResultReturned(cloudController(4, false));
+	}
+
+	@Test
+	public void parallelPagingReturnsEveryPage() {
+		assertEveryResultReturned(cloudController(0, true));
+	}
+
+	private DefaultCloudController cloudController(int prefetchDepth, boolean parallelPaging) {
+		final DefaultCloudController cloudController = new DefaultCloudController(new PagingHttpClient(), "http://localhost");
+		cloudController.setExecutor(executor);
+		cloudController.setPrefetchDepth(prefetchDepth);
+		cloudController.setParallelPaging(parallelPaging);
+		return cloudController;
+	}
+
+	private void assertEveryResultReturned(CloudController cloudController) {
+		final Token token = Token.parseAuthorization("bearer test");
+		for (int run = 0; run < RUNS; run++) {
+			int count = 0;
+			for (Resource<Space> space : cloudController.getSpaces(token)) {
+				assertEquals(space.getGuid(), new UUID(count / RESULTS_PER_PAGE + 1, count % RESULTS_PER_PAGE));
+				count++;
+			}
+			assertEquals(count, PAGES * RESULTS_PER_PAGE, "Results returned on run " + run);
+		}
+	}
+
+	private static int page(URI uri) {
+		final String query = uri.getQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (parameter.startsWith("page=")) {
+					return Integer.parseInt(parameter.substring("page=".length()));
+				}
+			}
+		}
+		return 1;
+	}
+
+	private static String page(int page) {
+		final StringBuilder body = new StringBuilder()
+				.append("{\"total_results\":").append(PAGES * RESULTS_PER_PAGE)
+				.append(",\"total_pages\":").append(PAGES)
+				.append(",\"prev_url\":null,\"next_url\":");
+		if (page < PAGES) {
+			body.append("\"/v2/spaces?order-direction=asc&page=").append(page + 1).append("&results-per-page=").append(RESULTS_PER_PAGE).append('"');
+		} else {
+			body.append("null");
+		}
+		body.append(",\"resources\":[");
+		for (int i = 0; i < RESULTS_PER_PAGE; i++) {
+			final UUID guid = new UUID(page, i);
+			if (i > 0) {
+				body.append(',');
+			}
+			body.append("{\"metadata\":{\"guid\":\"").append(guid).append("\",\"url\":\"/v2/spaces/").append(guid)
+					.append("\",\"created_at\":\"2014-05-01T12:00:00Z\",\"updated_at\":null},")
+					.append("\"entity\":{\"name\":\"space-").append(guid).append("\",\"organization_guid\":\"").append(new UUID(0, 0)).append("\"}}");
+		}
+		return body.append("]}").toString();
+	}
+
+	/**
+	 * Serves the pages of {@code /v2/spaces} from memory so that the timing of the page fetches is decided by the
+	 * prefetching executor rather than the network.
+	 */
+	private static class PagingHttpClient extends CloseableHttpClient {
+
+		@Override
+		protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) {
+			final PageResponse response = new PageResponse();
+			response.setEntity(new StringEntity(page(page(((HttpUriRequest) request).getURI())), ContentType.APPLICATION_JSON));
+			return response;
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public org.apache.http.params.HttpParams getParams() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		public org.apache.http.conn.ClientConnectionManager getConnectionManager() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class PageResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+		PageResponse() {
+			super(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+package cf.client;
+
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+
+import static org.testng.Assert.*;
+
+public class TimestampsTest {
+
+	@Test
+	public void parseIso8601() {
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29Z"), 1392917369000L);
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29+00:00"), 1392917369000L);
+		assertEquals(Timestamps.parse("2014-02-20T10:29:29-07:00"), 1392917369000L);
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29.5Z"), 1392917369500L);
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29.123456Z"), 1392917369123L);
+		assertEquals(Timestamps.parse("1970-01-01T00:00:00Z"), 0L);
+	}
+
+	@Test
+	public void parseUpdatedAtFormat() {
+		assertEquals(Timestamps.parse("2014-02-20 17:29:29 +0000"), 1392917369000L);
+		assertEquals(Timestamps.parse("2014-02-21 03:29:29 +1000"), 1392917369000L);
+		assertEquals(Timestamps.parse("2014-02-20 17:29:29 UTC"), 1392917369000L);
+	}
+
+	@Test
+	public void matchesJavaTime() {
+		for (String timestamp : new String[] {"2000-02-29T23:59:59Z", "2100-03-01T00:00:00Z", "1999-12-31T23:59:59.999Z", "2038-01-19T03:14:08Z"}) {
+			assertEquals(Timestamps.parse(timestamp), Instant.parse(timestamp).toEpochMilli(), timestamp);
+		}
+	}
+
+	@Test
+	public void rejectMalformed() {
+		assertEquals(Timestamps.parse(null), Timestamps.INVALID);
+		assertEquals(Timestamps.parse(""), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014-02-20"), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014-02-30T00:00:00Z"), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014-02-20T24:00:00Z"), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29."), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29+0"), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014-02-20T17:29:29 junk"), Timestamps.INVALID);
+		assertEquals(Timestamps.parse("2014/02/20T17:29:29Z"), Timestamps.INVALID);
+	}
+}
@@ -0,0 +1,125 @@
+package cf.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Base64;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.*;
+
+public class TokenValidatorTest {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private KeyPair key1;
+	private KeyPair key2;
+
+	@BeforeClass
+	public void generateKeys() throws Exception {
+		final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		key1 = generator.generateKeyPair();
+		key2 = generator.generateKeyPair();
+	}
+
+	@Test
+	public void validToken() throws Exception {
+		final TokenValidator validator = new TokenValidator(keys(new AtomicInteger(), "key-1", key1));
+		final TokenContents contents = validator.validate(Token.parseAuthorization("bearer " + sign("key-1", key1, expiresIn(60))), "cloud_controller.read");
+		assertEquals(contents.getClientId(), "cf");
+		assertEquals(contents.getScope(), Arrays.asList("cloud_controller.read", "openid"));
+	}
+
+	@Test(expectedExceptions = InvalidTokenException.class, expectedExceptionsMessageRegExp = ".*signature.*")
+	public void tamperedToken() throws Exception {
+		final TokenValidator validator = new TokenValidator(keys(new AtomicInteger(), "key-1", key1));
+		final String[] parts = sign("key-1", key1, expiresIn(60)).split("\\.");
+		final String payload = Base64.encodeBase64URLSafeString(claims(expiresIn(60)).replace("\"cf\"", "\"admin\"").getBytes(StandardCharsets.UTF_8));
+		validator.validate(parts[0] + "." + payload + "." + parts[2], Collections.<String>emptyList());
+	}
+
+	@Test(expectedExceptions = InvalidTokenException.class, expectedExceptionsMessageRegExp = ".*expired.*")
+	public void expiredToken() throws Exception {
+		final TokenValidator validator = new TokenValidator(keys(new AtomicInteger(), "key-1", key1));
+		validator.setClockSkew(0, TimeUnit.SECONDS);
+		validator.validate(sign("key-1", key1, expiresIn(-1)), Collections.<String>emptyList());
+	}
+
+	@Test(expectedExceptions = InvalidTokenException.class, expectedExceptionsMessageRegExp = ".*scope cloud_controller.admin")
+	public void missingScope() throws Exception {
+		final TokenValidator validator = new TokenValidator(keys(new AtomicInteger(), "key-1", key1));
+		validator.validate(Token.parseAuthorization("bearer " + sign("key-1", key1, expiresIn(60))), "cloud_controller.admin");
+	}
+
+	@Test
+	public void keyRotation() throws Exception {
+		final AtomicInteger fetches = new AtomicInteger();
+		final KeyPair[] current = {key1};
+		final TokenValidator validator = new TokenValidator(new Supplier<JsonNode>() {
+			@Override
+			public JsonNode get() {
+				fetches.incrementAndGet();
+				return current[0] == key1 ? jwks("key-1", key1) : jwks("key-2", key2);
+			}
+		});
+		validator.setMinKeyRefreshInterval(0, TimeUnit.SECONDS);
+		validator.validate(sign("key-1", key1, expiresIn(60)), Collections.<String>emptyList());
+		validator.validate(sign("key-1", key1, expiresIn(60)), Collections.<String>emptyList());
+		assertEquals(fetches.get(), 1);
+
+		current[0] = key2;
+		validator.validate(sign("key-2", key2, expiresIn(60)), Collections.<String>emptyList());
+		assertEquals(fetches.get(), 2);
+	}
+
+	private Supplier<JsonNode> keys(final AtomicInteger fetches, final String keyId, final KeyPair key) {
+		return new Supplier<JsonNode>() {
+			@Override
+			public JsonNode get() {
+				fetches.incrementAndGet();
+				return jwks(keyId, key);
+			}
+		};
+	}
+
+	private JsonNode jwks(String keyId, KeyPair key) {
+		final RSAPublicKey publicKey = (RSAPublicKey) key.getPublic();
+		try {
+			return mapper.readTree("{\"keys\":[{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"" + keyId + "\"," +
+					"\"n\":\"" + Base64.encodeBase64URLSafeString(publicKey.getModulus().toByteArray()) + "\"," +
+					"\"e\":\"" + Base64.encodeBase64URLSafeString(publicKey.getPublicExponent().toByteArray()) + "\"}]}");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static long expiresIn(long seconds) {
+		return System.currentTimeMillis() / 1000 + seconds;
+	}
+
+	private static String claims(long expires) {
+		return "{\"jti\":\"abc\",\"client_id\":\"cf\",\"scope\":[\"cloud_controller.read\",\"openid\"],\"exp\":" + expires + "}";
+	}
+
+	private static String sign(String keyId, KeyPair key, long expires) throws Exception {
+		final String header = Base64.encodeBase64URLSafeString(("{\"alg\":\"RS256\",\"kid\":\"" + keyId + "\"}").getBytes(StandardCharsets.UTF_8));
+		final String payload = Base64.encodeBase64URLSafeString(claims(expires).getBytes(StandardCharsets.UTF_8));
+		final Signature signature = Signature.getInstance("SHA256withRSA");
+		signature.initSign(key.getPrivate());
+		signature.update((header + "." + payload).getBytes(StandardCharsets.US_ASCII));
+		return header + "." + payload + "." + Base64.encodeBase64URLSafeString(signature.sign());
+	}
+}
@@ -1,49 +1,35 @@
 package cf.spring;
 
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 
 import cf.client.CloudController;
+import cf.client.RefreshingTokenProvider;
 import cf.client.Token;
 import cf.client.TokenProvider;
 import cf.client.Uaa;
 
 /**
  * Does a client authentication with UAA to get a valid token. The token should be used with the
- * {@link javax.inject.Provider} interface so that a fresh token gets fetched after the token expires.
+ * {@link javax.inject.Provider} interface so that a fresh token gets fetched after the token expires. The token is
+ * refreshed in the background before it expires, see {@link RefreshingTokenProvider}.
  *
  * @author Mike Heath
  */
-public class ClientTokenProviderFactoryBean implements FactoryBean<TokenProvider> {
+public class ClientTokenProviderFactoryBean implements FactoryBean<TokenProvider>, DisposableBean {
 
-	private final CloudController cloudController;
-	private final String client;
-	private final String clientSecret;
+	private final RefreshingTokenProvider tokenProvider;
 
-	private final TokenProvider tokenProvider = new TokenProvider() {
-		@Override
-		public Token get() {
-			return fetchToken();
-		}
-	};
-
-	private Token token;
-
-	private Token fetchToken() {
-		synchronized (this) {
-			if (token == null || token.getExpiration().getTime() - TimeUnit.MINUTES.toMillis(10) < System.currentTimeMillis()) {
+	public ClientTokenProviderFactoryBean(final CloudController cloudController, final String client, final String clientSecret) {
+		tokenProvider = new RefreshingTokenProvider(new Supplier<Token>() {
+			@Override
+			public Token get() {
 				final Uaa uaa = cloudController.getUaa();
-				token = uaa.getClientToken(client, clientSecret);
+				return uaa.getClientToken(client, clientSecret);
 			}
-			return token;
-		}
-	}
-
-	public ClientTokenProviderFactoryBean(CloudController cloudController, String client, String clientSecret) {
-		this.cloudController = cloudController;
-		this.client = client;
-		this.clientSecret = clientSecret;
+		});
 	}
 
 	@Override
@@ -61,4 +47,9 @@ public class ClientTokenProviderFactoryBean implements FactoryBean<TokenProvider
 		return true;
 	}
 
+	@Override
+	public void destroy() throws Exception {
+		tokenProvider.close();
+	}
+
 }
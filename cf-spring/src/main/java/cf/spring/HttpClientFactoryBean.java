@@ -1,31 +1,145 @@
 package cf.spring;
 
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
 /**
+ * Creates a pooling {@link HttpClient} to be shared by the Cloud Controller and UAA clients.
+ *
+ * <p>Idle and expired connections are evicted from the pool on a background thread so the client doesn't hand out
+ * connections that a load balancer has already dropped. Connections are kept alive for as long as the server's
+ * {@code Keep-Alive} header allows or, if the server doesn't say, for {@link #setKeepAlive(long) keepAlive}
+ * milliseconds. The pool must be configured before the client is first requested.</p>
+ *
+ * <p>By default the client transparently decompresses gzip and deflate responses, as clients built by
+ * {@link HttpClients} do. The Cloud Controller and UAA clients ask for compressed responses and decompress them
+ * themselves so they can count the bytes received; when the client is only used by them, set
+ * {@link #setDecompressResponses(boolean) decompressResponses} to {@code false}. Otherwise this client decompresses
+ * the responses first and they're left out of the Cloud Controller's compression statistics.</p>
+ *
  * @author Mike Heath
  */
 public class HttpClientFactoryBean implements FactoryBean<HttpClient>, DisposableBean {
 
-	private final HttpClient httpClient = new DefaultHttpClient(new PoolingClientConnectionManager());
+	public static final int DEFAULT_MAX_TOTAL = 200;
+	public static final int DEFAULT_MAX_PER_ROUTE = 50;
+	public static final long DEFAULT_KEEP_ALIVE = TimeUnit.SECONDS.toMillis(30);
+	public static final long DEFAULT_MAX_IDLE_TIME = TimeUnit.SECONDS.toMillis(30);
+	public static final long DEFAULT_EVICTION_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+	private int maxTotal = DEFAULT_MAX_TOTAL;
+	private int maxPerRoute = DEFAULT_MAX_PER_ROUTE;
+	private long keepAlive = DEFAULT_KEEP_ALIVE;
+	private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+	private long evictionInterval = DEFAULT_EVICTION_INTERVAL;
+	private int connectionRequestTimeout = -1;
+	private boolean tcpNoDelay = true;
+	private boolean decompressResponses = true;
+
+	private PoolingHttpClientConnectionManager connectionManager;
+	private CloseableHttpClient httpClient;
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Sets the maximum number of connections in the pool.
+	 */
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	/**
+	 * Sets the maximum number of connections to a single host.
+	 */
+	public void setMaxPerRoute(int maxPerRoute) {
+		this.maxPerRoute = maxPerRoute;
+	}
+
+	/**
+	 * Sets how long, in milliseconds, to keep a connection alive when the server doesn't send a {@code Keep-Alive}
+	 * header.
+	 */
+	public void setKeepAlive(long keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Sets how long, in milliseconds, a connection may sit idle in the pool before it's closed.
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Sets how often, in milliseconds, idle and expired connections are evicted from the pool. Set to 0 to disable
+	 * eviction.
+	 */
+	public void setEvictionInterval(long evictionInterval) {
+		this.evictionInterval = evictionInterval;
+	}
+
+	/**
+	 * Sets how long, in milliseconds, a request waits for a connection from the pool before failing. A negative value
+	 * waits indefinitely.
+	 */
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	/**
+	 * Sets whether the client asks for and transparently decompresses compressed responses. Defaults to {@code true}.
+	 * Set to {@code false} when every user of the client decompresses responses itself.
+	 */
+	public void setDecompressResponses(boolean decompressResponses) {
+		this.decompressResponses = decompressResponses;
+	}
+
+	/**
+	 * Returns the number of leased, pending and available connections across the whole pool.
+	 */
+	public PoolStats getPoolStats() {
+		return getConnectionManager().getTotalStats();
+	}
 
 	@Override
-	public void destroy() throws Exception {
-		httpClient.getConnectionManager().shutdown();
+	public synchronized void destroy() throws Exception {
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+		if (httpClient != null) {
+			httpClient.close();
+		}
 	}
 
 	@Override
-	public HttpClient getObject() throws Exception {
+	public synchronized HttpClient getObject() throws Exception {
+		getConnectionManager();
 		return httpClient;
 	}
 
 	@Override
 	public Class<?> getObjectType() {
-		return httpClient.getClass();
+		return CloseableHttpClient.class;
 	}
 
 	@Override
@@ -33,4 +147,64 @@ public class HttpClientFactoryBean implements FactoryBean<HttpClient>, Disposabl
 		return true;
 	}
 
+	private synchronized PoolingHttpClientConnectionManager getConnectionManager() {
+		if (connectionManager == null) {
+			connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setMaxTotal(maxTotal);
+			connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+			connectionManager.setDefaultSocketConfig(SocketConfig.custom()
+					.setTcpNoDelay(tcpNoDelay)
+					.setSoKeepAlive(true)
+					.build());
+			final HttpClientBuilder builder = HttpClients.custom()
+					.setConnectionManager(connectionManager)
+					.setKeepAliveStrategy(new KeepAliveStrategy(keepAlive))
+					.setDefaultRequestConfig(RequestConfig.custom()
+							.setConnectionRequestTimeout(connectionRequestTimeout)
+							.setStaleConnectionCheckEnabled(true)
+							.build());
+			if (!decompressResponses) {
+				builder.disableContentCompression();
+			}
+			httpClient = builder.build();
+			if (evictionInterval > 0) {
+				evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread thread = new Thread(r, "http-connection-evictor");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				final PoolingHttpClientConnectionManager pool = connectionManager;
+				final long maxIdleTime = this.maxIdleTime;
+				evictor.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						pool.closeExpiredConnections();
+						pool.closeIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+					}
+				}, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+			}
+		}
+		return connectionManager;
+	}
+
+	/**
+	 * Honors the server's {@code Keep-Alive} header, falling back to a fixed duration instead of keeping connections
+	 * alive indefinitely.
+	 */
+	static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+		private final long keepAlive;
+
+		KeepAliveStrategy(long keepAlive) {
+			this.keepAlive = keepAlive;
+		}
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			final long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : keepAlive;
+		}
+	}
 }
@@ -0,0 +1,33 @@
+package cf.spring;
+
+import cf.client.RequestStatistics;
+import cf.component.VarzProducer;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Publishes the {@link RequestStatistics} of a Cloud Controller or UAA client under a single {@code /varz} key. Define
+ * one as a bean alongside a {@link CfComponent} and it's picked up with the other {@link VarzProducer}s.
+ */
+public class RequestStatisticsVarzProducer implements VarzProducer {
+
+	private final String name;
+	private final RequestStatistics statistics;
+
+	/**
+	 * @param name the {@code /varz} key the statistics are published under, {@code cloud_controller_requests} for
+	 *             example.
+	 * @param statistics the statistics to publish.
+	 */
+	public RequestStatisticsVarzProducer(String name, RequestStatistics statistics) {
+		this.name = name;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public Map<String, ?> produceVarz() {
+		return Collections.singletonMap(name, statistics.getStatistics());
+	}
+
+}
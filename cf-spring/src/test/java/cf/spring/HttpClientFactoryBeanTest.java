@@ -0,0 +1,38 @@
+package cf.spring;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class HttpClientFactoryBeanTest {
+
+	@Test
+	public void poolIsConfiguredBeforeTheClientIsCreated() throws Exception {
+		final HttpClientFactoryBean factoryBean = new HttpClientFactoryBean();
+		factoryBean.setMaxTotal(20);
+		factoryBean.setMaxPerRoute(5);
+		try {
+			final HttpClient httpClient = factoryBean.getObject();
+			assertSame(factoryBean.getObject(), httpClient);
+			assertEquals(factoryBean.getPoolStats().getMax(), 20);
+			assertEquals(factoryBean.getPoolStats().getLeased(), 0);
+		} finally {
+			factoryBean.destroy();
+		}
+	}
+
+	@Test
+	public void keepAliveHonorsTheServerOrFallsBack() {
+		final HttpClientFactoryBean.KeepAliveStrategy strategy = new HttpClientFactoryBean.KeepAliveStrategy(30000);
+
+		final BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		assertEquals(strategy.getKeepAliveDuration(response, new BasicHttpContext()), 30000);
+
+		response.setHeader("Keep-Alive", "timeout=5, max=100");
+		assertEquals(strategy.getKeepAliveDuration(response, new BasicHttpContext()), 5000);
+	}
+}